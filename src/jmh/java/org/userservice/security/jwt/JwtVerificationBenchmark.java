@@ -0,0 +1,65 @@
+package org.userservice.security.jwt;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение проверки access токена в фильтре: прежний путь из трёх разборов,
+ * однократный разбор и разбор через {@link VerifiedTokenCache}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+    private JwtService jwtService;
+    private VerifiedTokenCache verifiedTokenCache;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        JwtProperties properties = new JwtProperties();
+        properties.getAccess().setSecret("benchmark-secret-benchmark-secret-0123456789");
+        jwtService = new JwtService(properties);
+        jwtService.init();
+        verifiedTokenCache = new VerifiedTokenCache(jwtService, properties, new SimpleMeterRegistry());
+        token = jwtService.generateAccessToken(new UsernamePasswordAuthenticationToken(
+                "benchmark-user", null, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+    }
+
+    @Benchmark
+    public void threeParses(Blackhole blackhole) {
+        if (jwtService.validate(token, true)) {
+            blackhole.consume(jwtService.extractUsername(token, true));
+            blackhole.consume(jwtService.extractAuthorities(token, true));
+        }
+    }
+
+    @Benchmark
+    public JwtPrincipal singleParse() {
+        return jwtService.parseAccessToken(token);
+    }
+
+    @Benchmark
+    public Object cachedParse() {
+        return verifiedTokenCache.verify(token);
+    }
+}
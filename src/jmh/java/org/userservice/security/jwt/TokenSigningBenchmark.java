@@ -0,0 +1,61 @@
+package org.userservice.security.jwt;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность подписи и проверки access токенов для каждого {@link JwtAlgorithm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenSigningBenchmark {
+
+    @Param({"HS256", "ES256", "EdDSA"})
+    private JwtAlgorithm algorithm;
+
+    private JwtService jwtService;
+    private Authentication authentication;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        JwtProperties properties = new JwtProperties();
+        properties.getAccess().setSecret("benchmark-secret-benchmark-secret-0123456789");
+        properties.getAccess().setAlgorithm(algorithm);
+        properties.getAccess().setAllowEphemeralKeys(true);
+        jwtService = new JwtService(properties);
+        jwtService.init();
+        authentication = new UsernamePasswordAuthenticationToken(
+                "benchmark-user", null, List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        token = jwtService.generateAccessToken(authentication);
+    }
+
+    @Benchmark
+    public String sign() {
+        return jwtService.generateAccessToken(authentication);
+    }
+
+    @Benchmark
+    public JwtPrincipal verify() {
+        return jwtService.parseAccessToken(token);
+    }
+}
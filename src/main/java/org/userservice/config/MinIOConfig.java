@@ -1,10 +1,19 @@
 package org.userservice.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class MinIOConfig {
 
@@ -14,12 +23,54 @@ public class MinIOConfig {
     private String accessKey;
     @Value("${minio.secret-key}")
     private String secretKey;
+    /**
+     * Регион задан явно, иначе клиент узнаёт его сетевым запросом перед первой подписью.
+     */
+    @Value("${minio.region:us-east-1}")
+    private String region;
+
+    /**
+     * HTTP-клиент MinIO с явными размерами пула и диспетчера и таймаутами {@code minio.http.*}
+     * вместо встроенных (5 минут на чтение и запись, 5 одновременных запросов).
+     */
+    @Bean
+    public OkHttpClient minioHttpClient(MinioHttpProperties properties, MeterRegistry meterRegistry) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(properties.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(properties.getMaxRequestsPerHost());
+        ConnectionPool pool = new ConnectionPool(properties.getMaxIdleConnections(),
+                properties.getKeepAlive().toMillis(), TimeUnit.MILLISECONDS);
+        return new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(pool)
+                .connectTimeout(properties.getConnectTimeout())
+                .readTimeout(properties.getReadTimeout())
+                .writeTimeout(properties.getWriteTimeout())
+                .protocols(List.of(Protocol.HTTP_1_1))
+                .eventListenerFactory(new MinioHttpMetrics(meterRegistry, pool, dispatcher))
+                .build();
+    }
 
     @Bean
-    public MinioClient minioClient() {
+    public MinioClient minioClient(OkHttpClient minioHttpClient) {
         return MinioClient.builder()
                 .endpoint(endpoint)
                 .credentials(accessKey, secretKey)
+                .region(region)
+                .httpClient(minioHttpClient)
+                .build();
+    }
+
+    /**
+     * Асинхронный клиент для неблокирующих эндпоинтов; пул соединений и метрики общие с {@link #minioClient}.
+     */
+    @Bean
+    public MinioAsyncClient minioAsyncClient(OkHttpClient minioHttpClient) {
+        return MinioAsyncClient.builder()
+                .endpoint(endpoint)
+                .credentials(accessKey, secretKey)
+                .region(region)
+                .httpClient(minioHttpClient)
                 .build();
     }
 }
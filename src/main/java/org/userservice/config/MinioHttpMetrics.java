@@ -0,0 +1,157 @@
+package org.userservice.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики HTTP-клиента MinIO, собираемые через {@link EventListener} OkHttp.
+ * <p>
+ * {@code minio.http.requests} - гистограмма времени запроса (от постановки в очередь диспетчера до конца
+ * ответа) с тегами operation (операция S3, определённая по методу и адресу) и outcome
+ * (success, client_error, server_error, io_error). {@code minio.http.connections} (state = reused, new)
+ * показывает долю переиспользованных соединений, {@code minio.http.connection.acquire} (state) - сколько
+ * запрос ждал соединение, включая очередь диспетчера и установку нового соединения.
+ * Размер пула и очереди: {@code minio.http.pool.connections} (state = idle, active),
+ * {@code minio.http.dispatcher.calls} (state = queued, running).
+ */
+public class MinioHttpMetrics implements EventListener.Factory {
+
+    private final MeterRegistry meterRegistry;
+    private final Counter reused;
+    private final Counter created;
+    private final Timer reusedAcquire;
+    private final Timer newAcquire;
+
+    public MinioHttpMetrics(MeterRegistry meterRegistry, ConnectionPool pool, Dispatcher dispatcher) {
+        this.meterRegistry = meterRegistry;
+        this.reused = connections("reused");
+        this.created = connections("new");
+        this.reusedAcquire = acquireTimer("reused");
+        this.newAcquire = acquireTimer("new");
+        Gauge.builder("minio.http.pool.connections", pool, ConnectionPool::idleConnectionCount)
+                .tag("state", "idle")
+                .register(meterRegistry);
+        Gauge.builder("minio.http.pool.connections", pool, p -> p.connectionCount() - p.idleConnectionCount())
+                .tag("state", "active")
+                .register(meterRegistry);
+        Gauge.builder("minio.http.dispatcher.calls", dispatcher, Dispatcher::queuedCallsCount)
+                .tag("state", "queued")
+                .register(meterRegistry);
+        Gauge.builder("minio.http.dispatcher.calls", dispatcher, Dispatcher::runningCallsCount)
+                .tag("state", "running")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public EventListener create(Call call) {
+        return new CallMetrics();
+    }
+
+    /**
+     * Имя операции S3 по запросу path-style ({@code /bucket} или {@code /bucket/object}).
+     */
+    static String operation(Request request) {
+        HttpUrl url = request.url();
+        Set<String> query = url.queryParameterNames();
+        boolean object = url.pathSize() > 1 && !url.pathSegments().get(1).isEmpty();
+        return switch (request.method()) {
+            case "GET" -> object ? "get_object"
+                    : query.contains("location") ? "get_bucket_location" : "list_objects";
+            case "HEAD" -> object ? "stat_object" : "bucket_exists";
+            case "PUT" -> !object ? (query.contains("policy") ? "set_bucket_policy" : "make_bucket")
+                    : query.contains("uploadId") ? "upload_part"
+                    : request.header("x-amz-copy-source") != null ? "copy_object" : "put_object";
+            case "POST" -> query.contains("delete") ? "remove_objects"
+                    : query.contains("uploads") ? "create_multipart_upload"
+                    : query.contains("uploadId") ? "complete_multipart_upload" : "post";
+            case "DELETE" -> query.contains("uploadId") ? "abort_multipart_upload" : "remove_object";
+            default -> request.method().toLowerCase(Locale.ROOT);
+        };
+    }
+
+    private Counter connections(String state) {
+        return Counter.builder("minio.http.connections")
+                .tag("state", state)
+                .register(meterRegistry);
+    }
+
+    private Timer acquireTimer(String state) {
+        return Timer.builder("minio.http.connection.acquire")
+                .tag("state", state)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    private void recordRequest(Call call, String outcome, long startNanos) {
+        Timer.builder("minio.http.requests")
+                .tag("operation", operation(call.request()))
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Состояние одного вызова; OkHttp создаёт слушатель на каждый вызов.
+     */
+    private final class CallMetrics extends EventListener {
+        private long startNanos;
+        private boolean connected;
+        private int status;
+
+        @Override
+        public void callStart(Call call) {
+            startNanos = System.nanoTime();
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            connected = true;
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            long waited = System.nanoTime() - startNanos;
+            if (connected) {
+                created.increment();
+                newAcquire.record(waited, TimeUnit.NANOSECONDS);
+            } else {
+                reused.increment();
+                reusedAcquire.record(waited, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            status = response.code();
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            recordRequest(call, status >= 500 ? "server_error" : status >= 400 ? "client_error" : "success",
+                    startNanos);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            recordRequest(call, "io_error", startNanos);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.userservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "minio.http")
+public class MinioHttpProperties {
+    /**
+     * Сколько простаивающих соединений держит пул.
+     */
+    private int maxIdleConnections = 32;
+    private Duration keepAlive = Duration.ofMinutes(5);
+    private Duration connectTimeout = Duration.ofSeconds(2);
+    private Duration readTimeout = Duration.ofSeconds(10);
+    private Duration writeTimeout = Duration.ofSeconds(30);
+    /**
+     * MinIO-клиент выполняет все запросы через диспетчер OkHttp, поэтому это предел одновременных
+     * запросов к MinIO; лишние ждут в очереди диспетчера. По умолчанию у OkHttp всего 5 на хост.
+     */
+    private int maxRequests = 64;
+    private int maxRequestsPerHost = 64;
+}
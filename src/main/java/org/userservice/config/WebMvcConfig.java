@@ -0,0 +1,21 @@
+package org.userservice.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.userservice.service.photo.StorageDeadlineInterceptor;
+
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final StorageDeadlineInterceptor storageDeadlineInterceptor;
+
+    public WebMvcConfig(StorageDeadlineInterceptor storageDeadlineInterceptor) {
+        this.storageDeadlineInterceptor = storageDeadlineInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(storageDeadlineInterceptor);
+    }
+}
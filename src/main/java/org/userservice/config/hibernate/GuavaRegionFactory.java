@@ -0,0 +1,70 @@
+package org.userservice.config.hibernate;
+
+import com.google.common.cache.CacheBuilder;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Кеш второго уровня Hibernate в памяти процесса на Guava.
+ * <p>
+ * Подключается через {@code hibernate.cache.region.factory_class}. Размер и время жизни
+ * регионов сущностей задаются {@code hibernate.cache.guava.maximum_size} и
+ * {@code hibernate.cache.guava.expire_after_write} (ISO-8601). Регион временных меток
+ * запросов не вытесняется по времени, иначе кеш запросов мог бы вернуть устаревшие данные.
+ */
+public class GuavaRegionFactory extends RegionFactoryTemplate {
+
+    static final String MAXIMUM_SIZE = "hibernate.cache.guava.maximum_size";
+    static final String EXPIRE_AFTER_WRITE = "hibernate.cache.guava.expire_after_write";
+
+    private long maximumSize = 10_000;
+    private Duration expireAfterWrite = Duration.ofMinutes(10);
+
+    @Override
+    protected void prepareForUse(SessionFactoryOptions settings, Map<String, Object> configValues) {
+        Object size = configValues.get(MAXIMUM_SIZE);
+        if (size != null) {
+            maximumSize = Long.parseLong(size.toString());
+        }
+        Object ttl = configValues.get(EXPIRE_AFTER_WRITE);
+        if (ttl != null) {
+            expireAfterWrite = Duration.parse(ttl.toString());
+        }
+    }
+
+    @Override
+    protected void releaseFromUse() {
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(DomainDataRegionConfig regionConfig,
+                                                                    DomainDataRegionBuildingContext buildingContext) {
+        return new GuavaStorageAccess(CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .build());
+    }
+
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(String regionName,
+                                                                  SessionFactoryImplementor sessionFactory) {
+        return new GuavaStorageAccess(CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .build());
+    }
+
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(String regionName,
+                                                                SessionFactoryImplementor sessionFactory) {
+        return new GuavaStorageAccess(CacheBuilder.newBuilder().build());
+    }
+}
@@ -0,0 +1,58 @@
+package org.userservice.config.hibernate;
+
+import com.google.common.cache.Cache;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * Хранилище одного региона кеша второго уровня поверх Guava {@link Cache}.
+ * Блокировки и версии (READ_WRITE) реализует сам Hibernate, здесь только хранение.
+ */
+final class GuavaStorageAccess implements DomainDataStorageAccess {
+
+    private final Cache<Object, Object> cache;
+
+    GuavaStorageAccess(Cache<Object, Object> cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+        return cache.getIfPresent(key);
+    }
+
+    @Override
+    public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+        cache.put(key, value);
+    }
+
+    @Override
+    public void removeFromCache(Object key, SharedSessionContractImplementor session) {
+        cache.invalidate(key);
+    }
+
+    @Override
+    public void clearCache(SharedSessionContractImplementor session) {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return cache.asMap().containsKey(key);
+    }
+
+    @Override
+    public void evictData() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void evictData(Object key) {
+        cache.invalidate(key);
+    }
+
+    @Override
+    public void release() {
+        cache.invalidateAll();
+    }
+}
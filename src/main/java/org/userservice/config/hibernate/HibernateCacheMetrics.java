@@ -0,0 +1,67 @@
+package org.userservice.config.hibernate;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+import org.userservice.entity.User;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Статистика регионов кеша второго уровня: {@code hibernate.l2.requests} (result = hit, miss),
+ * {@code hibernate.l2.puts} и {@code hibernate.l2.hit.ratio} с тегом region.
+ * Требует {@code hibernate.generate_statistics=true}.
+ */
+@Component
+@RequiredArgsConstructor
+public class HibernateCacheMetrics {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void bind() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        if (!statistics.isStatisticsEnabled()) {
+            return;
+        }
+        for (String region : new String[]{User.CACHE_REGION, User.NATURAL_ID_CACHE_REGION}) {
+            counter(statistics, region, "hit", CacheRegionStatistics::getHitCount);
+            counter(statistics, region, "miss", CacheRegionStatistics::getMissCount);
+            FunctionCounter.builder("hibernate.l2.puts", statistics,
+                            s -> regionStat(s, region, CacheRegionStatistics::getPutCount))
+                    .tag("region", region)
+                    .register(meterRegistry);
+            Gauge.builder("hibernate.l2.hit.ratio", statistics, s -> hitRatio(s, region))
+                    .tag("region", region)
+                    .register(meterRegistry);
+        }
+    }
+
+    private void counter(Statistics statistics, String region, String result,
+                         ToDoubleFunction<CacheRegionStatistics> value) {
+        FunctionCounter.builder("hibernate.l2.requests", statistics, s -> regionStat(s, region, value))
+                .tag("region", region)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static double hitRatio(Statistics statistics, String region) {
+        double hits = regionStat(statistics, region, CacheRegionStatistics::getHitCount);
+        double total = hits + regionStat(statistics, region, CacheRegionStatistics::getMissCount);
+        return total == 0 ? 0 : hits / total;
+    }
+
+    private static double regionStat(Statistics statistics, String region,
+                                     ToDoubleFunction<CacheRegionStatistics> value) {
+        CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+        return regionStatistics == null ? 0 : value.applyAsDouble(regionStatistics);
+    }
+}
@@ -0,0 +1,125 @@
+package org.userservice.config.hibernate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.StatelessSession;
+import org.hibernate.cache.spi.access.NaturalIdDataAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.userservice.entity.User;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Вытесняет {@link User} из кеша второго уровня на всех узлах.
+ * <p>
+ * Регионы {@link GuavaRegionFactory} живут в памяти процесса: READ_WRITE обновляет запись только
+ * на узле, который выполнил изменение, а остальные отдавали бы старый хеш пароля до истечения
+ * {@code expire_after_write}. Поэтому после коммита смены пароля ID и имя пользователя рассылаются через
+ * pub/sub Redis ({@code <id>:<userName>}), и каждый узел (включая отправителя) вытесняет запись сущности
+ * и запись natural-id только этого пользователя: сброс всего региона natural-id при каждой смене пароля
+ * отправлял бы входы всех остальных пользователей в БД.
+ */
+@Component
+@Slf4j
+public class UserCacheInvalidator {
+
+    static final String CHANNEL = "hibernate:users:evict";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final SessionFactoryImplementor sessionFactory;
+    private final Cache cache;
+
+    public UserCacheInvalidator(RedisTemplate<String, String> redisTemplate,
+                                RedisMessageListenerContainer listenerContainer,
+                                EntityManagerFactory entityManagerFactory) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.cache = sessionFactory.getCache();
+    }
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(
+                (message, pattern) -> onMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * Рассылает вытеснение после коммита текущей транзакции (или сразу, если транзакции нет).
+     *
+     * @param userId   ID изменённого пользователя
+     * @param userName имя пользователя, ключ его записи natural-id
+     */
+    public void evictAfterCommit(UUID userId, String userName) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(userId, userName);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(userId, userName);
+            }
+        });
+    }
+
+    private void publish(UUID userId, String userName) {
+        evict(userId, userName);
+        try {
+            redisTemplate.convertAndSend(CHANNEL, userId + ":" + userName);
+        } catch (DataAccessException e) {
+            log.warn("Could not broadcast cache eviction for user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private void onMessage(String payload) {
+        int separator = payload.indexOf(':');
+        UUID userId;
+        try {
+            userId = UUID.fromString(separator < 0 ? payload : payload.substring(0, separator));
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed user cache eviction message");
+            return;
+        }
+        // Сообщение без имени - от узла предыдущей версии; запись natural-id (имя -> ID) от пароля не зависит
+        evict(userId, separator < 0 ? null : payload.substring(separator + 1));
+    }
+
+    private void evict(UUID userId, String userName) {
+        cache.evictEntityData(User.class, userId);
+        if (userName != null) {
+            evictNaturalId(userName);
+        }
+        log.debug("User {} evicted from the second-level cache", userId);
+    }
+
+    /**
+     * {@link Cache} умеет сбрасывать natural-id только регионом целиком, поэтому ключ строится
+     * через доступ к региону. Ключ учитывает tenant сессии, а временная сессия соединение с БД не берёт.
+     */
+    private void evictNaturalId(String userName) {
+        EntityPersister persister = sessionFactory.getMappingMetamodel().getEntityDescriptor(User.class);
+        NaturalIdDataAccess naturalIdAccess = persister.getNaturalIdCacheAccessStrategy();
+        if (naturalIdAccess == null) {
+            return;
+        }
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            naturalIdAccess.evict(naturalIdAccess.generateCacheKey(userName, persister,
+                    (SharedSessionContractImplementor) session));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.userservice.controller;
+
+import jakarta.validation.constraints.Positive;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.userservice.dto.photo.UserPhotoDto;
+import org.userservice.entity.UserPhoto;
+import org.userservice.service.photo.AsyncPhotoService;
+import org.userservice.service.photo.PhotoSource;
+import org.userservice.service.photo.StoredObject;
+import org.userservice.service.photo.UserPhotoService;
+import org.userservice.utils.UserPhotoMapper;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.userservice.controller.PhotoResponses.*;
+
+/**
+ * Асинхронный вариант {@link PhotoController}: те же ответы, но поток Tomcat освобождается,
+ * пока идёт обмен с MinIO (см. {@link AsyncPhotoService}).
+ * <p>
+ * Поток Tomcat занят только чтением записи из БД. Тело из хранилища пишется в ответ на пуле
+ * асинхронных задач Spring MVC уже после того, как MinIO начал отвечать.
+ */
+@RestController
+@RequestMapping("/api/async/photos")
+@ConditionalOnProperty(name = "photo.storage.type", havingValue = "minio", matchIfMissing = true)
+public class AsyncPhotoController {
+
+    private final UserPhotoService photoService;
+    private final AsyncPhotoService asyncPhotoService;
+    private final UserPhotoMapper photoMapper;
+
+    public AsyncPhotoController(UserPhotoService photoService,
+                                AsyncPhotoService asyncPhotoService,
+                                UserPhotoMapper photoMapper) {
+        this.photoService = photoService;
+        this.asyncPhotoService = asyncPhotoService;
+        this.photoMapper = photoMapper;
+    }
+
+    @PostMapping("/{userId}")
+    public CompletableFuture<ResponseEntity<UserPhotoDto>> uploadPhoto(
+            @PathVariable UUID userId,
+            @RequestParam("file") MultipartFile file
+    ) {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("File cannot be empty");
+        }
+        return asyncPhotoService.uploadUserPhoto(userId, file)
+                .thenApply(photo -> ResponseEntity.ok(photoMapper.toDto(photo)));
+    }
+
+    /**
+     * Кеширование, ETag, {@code Range} и {@code ?size=} - как у {@link PhotoController#getPhoto}.
+     */
+    @GetMapping("/{userId}")
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> getPhoto(
+            @PathVariable UUID userId,
+            @RequestParam(value = "v", required = false) String version,
+            @RequestParam(value = "size", required = false) @Positive Integer size,
+            @RequestHeader HttpHeaders requestHeaders
+    ) {
+        UserPhoto photo = photoService.getPhotoRecord(userId);
+        boolean currentLink = UserPhotoService.versionOf(photo).equals(version);
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+
+        String expectedObject = size == null
+                ? photo.getFilePath()
+                : photoService.derivativeKey(photo, size).orElse(photo.getFilePath());
+        String expectedEtag = etagOf(expectedObject);
+        if (ifNoneMatch.contains(expectedEtag) || ifNoneMatch.contains("*")) {
+            return CompletableFuture.completedFuture(notModified(expectedEtag, cacheControl(currentLink)));
+        }
+
+        return asyncPhotoService.openPhoto(photo, size).thenCompose(source -> {
+            StoredObject object = source.metadata();
+            String etag = etagOf(object.objectName());
+            CacheControl cacheControl = cacheControl(currentLink && object.objectName().equals(expectedObject));
+            if (ifNoneMatch.contains(etag)) {
+                return CompletableFuture.completedFuture(notModified(etag, cacheControl));
+            }
+            Slice slice = slice(requestHeaders, object, etag, cacheControl);
+            if (slice == null) {
+                return CompletableFuture.completedFuture(rangeNotSatisfiable(object));
+            }
+            if (source instanceof PhotoSource.Remote remote) {
+                return asyncPhotoService.openStream(object.objectName(), slice.offset(), slice.length())
+                        .thenApply(content -> slice.response().body(stream(content, remote)));
+            }
+            return CompletableFuture.completedFuture(
+                    slice.response().body(source.body(slice.offset(), slice.length())));
+        });
+    }
+
+    private static StreamingResponseBody stream(InputStream content, PhotoSource.Remote source) {
+        return out -> {
+            try (content) {
+                source.bytesServed().accept(content.transferTo(out));
+            }
+        };
+    }
+}
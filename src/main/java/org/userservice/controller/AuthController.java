@@ -2,6 +2,7 @@ package org.userservice.controller;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -10,8 +11,13 @@ import org.userservice.dto.*;
 import org.userservice.dto.security.*;
 import org.userservice.security.interfaces.IAuthService;
 import org.userservice.security.interfaces.IUserOperations;
+import org.userservice.security.jwt.JwtService;
 import org.userservice.service.details.UserDetailsService;
 
+import java.security.Principal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @RestController
@@ -21,6 +27,7 @@ public class AuthController {
     private final IAuthService authService;
     private final IUserOperations userOperations;
     private final UserDetailsService userDetailsService;
+    private final JwtService jwtService;
 
     @PostMapping("/register")
     public ResponseEntity<UserDto> register(@RequestBody RegisterRequest request) {
@@ -46,6 +53,15 @@ public class AuthController {
                 .body(tokens);
     }
 
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(Principal principal) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        authService.logout(principal.getName());
+        return ResponseEntity.noContent().build();
+    }
+
     @PostMapping("/{username}/change-password")
     public ResponseEntity<Void> changePassword(
             @PathVariable String username,
@@ -54,4 +70,11 @@ public class AuthController {
         userOperations.changePassword(username, req.newPassword());
         return ResponseEntity.noContent().build();
     }
+
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<Map<String, List<Map<String, Object>>>> jwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofMinutes(15)).cachePublic())
+                .body(Map.of("keys", jwtService.getPublicJwks()));
+    }
 }
@@ -0,0 +1,94 @@
+package org.userservice.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.userservice.service.photo.FileValidationService;
+import org.userservice.service.photo.FilesystemFileStorage;
+import org.userservice.service.photo.StoredObject;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Отдаёт файлы локального хранилища по подписанным ссылкам {@link FilesystemFileStorage#generatePresignedUrl(String)}
+ * и принимает запись по ссылкам {@link FilesystemFileStorage#generatePresignedUploadUrl}.
+ * Аутентификация не нужна: доступ даёт сама подпись, как у presigned URL MinIO.
+ */
+@RestController
+@RequestMapping("/api/files")
+@ConditionalOnProperty(name = "photo.storage.type", havingValue = "filesystem")
+public class LocalFileController {
+
+    private final FilesystemFileStorage storage;
+
+    public LocalFileController(FilesystemFileStorage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Файл отдаётся как {@link Resource}, поэтому Spring сам обрабатывает {@code Range}.
+     * Кешировать ответ можно не дольше срока действия ссылки.
+     */
+    @GetMapping("/{*objectName}")
+    public ResponseEntity<Resource> getFile(
+            @PathVariable String objectName,
+            @RequestParam("expires") long expires,
+            @RequestParam("signature") String signature
+    ) {
+        String key = objectName.startsWith("/") ? objectName.substring(1) : objectName;
+        if (!storage.verifySignature(key, expires, signature)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        Optional<Path> file = storage.localFile(key);
+        if (file.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        StoredObject object = storage.statFile(key);
+        Duration maxAge = Duration.between(Instant.now(), Instant.ofEpochSecond(expires));
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(object.contentType()))
+                .cacheControl(CacheControl.maxAge(maxAge).cachePrivate())
+                .body(new FileSystemResource(file.get()));
+    }
+
+    /**
+     * Запись по ссылке на загрузку, как {@code PUT} в MinIO. Размер нужно объявить в {@code Content-Length};
+     * файлы больше лимита проверки изображений отклоняются до чтения тела, остальное проверяется при подтверждении.
+     */
+    @PutMapping("/{*objectName}")
+    public ResponseEntity<Void> putFile(
+            @PathVariable String objectName,
+            @RequestParam("expires") long expires,
+            @RequestParam("signature") String signature,
+            HttpServletRequest request
+    ) throws IOException {
+        String key = objectName.startsWith("/") ? objectName.substring(1) : objectName;
+        if (!storage.verifyUploadSignature(key, expires, signature)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        long size = request.getContentLengthLong();
+        if (size < 0) {
+            return ResponseEntity.status(HttpStatus.LENGTH_REQUIRED).build();
+        }
+        if (size > FileValidationService.MAX_FILE_SIZE) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        storage.uploadFile(key, request.getInputStream(), size, request.getContentType());
+        return ResponseEntity.ok().build();
+    }
+}
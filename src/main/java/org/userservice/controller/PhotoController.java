@@ -1,24 +1,49 @@
 package org.userservice.controller;
 
-import org.springframework.http.MediaType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Positive;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.userservice.dto.photo.ConfirmUploadRequestDto;
+import org.userservice.dto.photo.DirectUploadDto;
 import org.userservice.dto.photo.UserPhotoDto;
 import org.userservice.entity.UserPhoto;
+import org.userservice.service.photo.DirectUploadService;
+import org.userservice.service.photo.PhotoSource;
+import org.userservice.service.photo.StoredObject;
 import org.userservice.service.photo.UserPhotoService;
 import org.userservice.utils.UserPhotoMapper;
 
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
+import static org.userservice.controller.PhotoResponses.*;
+
 @RestController
 @RequestMapping("/api/photos")
 public class PhotoController {
+    // Tomcat отдаёт файл через sendfile (без копирования в user space), если эти атрибуты заданы до записи тела
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     private final UserPhotoService photoService;
+    private final DirectUploadService directUploadService;
     private final UserPhotoMapper photoMapper;
 
-    public PhotoController(UserPhotoService photoService, UserPhotoMapper photoMapper) {
+    public PhotoController(UserPhotoService photoService,
+                           DirectUploadService directUploadService,
+                           UserPhotoMapper photoMapper) {
         this.photoService = photoService;
+        this.directUploadService = directUploadService;
         this.photoMapper = photoMapper;
     }
 
@@ -34,11 +59,122 @@ public class PhotoController {
         return ResponseEntity.ok(photoMapper.toDto(photo));
     }
 
+    /**
+     * Первый шаг прямой загрузки: ссылка, по которой клиент сам записывает файл в хранилище
+     * ({@code PUT} с телом файла), и ключ, который затем передаётся в {@link #confirmUpload}.
+     */
+    @PostMapping("/{userId}/upload-url")
+    public ResponseEntity<DirectUploadDto> createUploadUrl(@PathVariable UUID userId) {
+        return ResponseEntity.ok(directUploadService.createUpload(userId));
+    }
+
+    /**
+     * Второй шаг прямой загрузки: записанный объект проверяется и становится фотографией пользователя.
+     */
+    @PostMapping("/{userId}/confirm")
+    public ResponseEntity<UserPhotoDto> confirmUpload(
+            @PathVariable UUID userId,
+            @Valid @RequestBody ConfirmUploadRequestDto request
+    ) {
+        UserPhoto photo = directUploadService.confirmUpload(userId, request.objectKey());
+        return ResponseEntity.ok(photoMapper.toDto(photo));
+    }
+
+    /**
+     * Отдаёт фотографию потоком, без буферизации файла в памяти.
+     * <p>
+     * ETag - версия фотографии, поэтому {@code If-None-Match} проверяется только по записи в БД
+     * и при совпадении возвращается 304 без обращения к MinIO. Содержимое берётся из {@link org.userservice.service.photo.PhotoCache};
+     * файлы дискового уровня Tomcat отдаёт через sendfile. Поддерживается один диапазон
+     * {@code Range}; несколько диапазонов отдаются целым файлом.
+     * <p>
+     * Ссылка {@code /api/photos/{userId}} указывает на текущую фотографию и меняется при загрузке новой,
+     * поэтому кешируется с обязательной перепроверкой. Неизменяемой на год считается только ссылка
+     * с версией {@code ?v=}, совпадающей с текущей.
+     * <p>
+     * С параметром {@code ?size=} отдаётся уменьшенная копия ближайшего большего размера. Пока она
+     * не построена, отдаётся оригинал без долгого кеширования, чтобы клиент потом получил копию.
+     */
     @GetMapping("/{userId}")
-    public ResponseEntity<byte[]> getPhoto(@PathVariable UUID userId) {
-        return ResponseEntity.ok()
-                .contentType(MediaType.IMAGE_JPEG)
-                .body(photoService.findPhotoByUserId(userId));
+    public ResponseEntity<StreamingResponseBody> getPhoto(
+            @PathVariable UUID userId,
+            @RequestParam(value = "v", required = false) String version,
+            @RequestParam(value = "size", required = false) @Positive Integer size,
+            @RequestHeader HttpHeaders requestHeaders,
+            HttpServletRequest request
+    ) {
+        UserPhoto photo = photoService.getPhotoRecord(userId);
+        String currentVersion = UserPhotoService.versionOf(photo);
+        boolean currentLink = currentVersion.equals(version);
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+
+        // Копии, как и оригинал, неизменяемы, так что совпадение ETag проверяется без обращения к хранилищу
+        String expectedObject = size == null
+                ? photo.getFilePath()
+                : photoService.derivativeKey(photo, size).orElse(photo.getFilePath());
+        String expectedEtag = etagOf(expectedObject);
+        if (ifNoneMatch.contains(expectedEtag) || ifNoneMatch.contains("*")) {
+            return notModified(expectedEtag, cacheControl(currentLink));
+        }
+
+        PhotoSource source = size == null ? photoService.openPhoto(photo) : photoService.openPhoto(photo, size);
+        String servedObject = source.metadata().objectName();
+        String etag = etagOf(servedObject);
+        CacheControl cacheControl = cacheControl(currentLink && servedObject.equals(expectedObject));
+        if (ifNoneMatch.contains(etag)) {
+            return notModified(etag, cacheControl);
+        }
+
+        StoredObject object = source.metadata();
+        Slice slice = slice(requestHeaders, object, etag, cacheControl);
+        if (slice == null) {
+            return rangeNotSatisfiable(object);
+        }
+        ResponseEntity.BodyBuilder response = slice.response();
+        long offset = slice.offset();
+        long length = slice.length();
+
+        Optional<Path> file = source.file();
+        if (file.isPresent() && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, file.get().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, offset);
+            request.setAttribute(SENDFILE_END, offset + length);
+            return response.build();
+        }
+        return response.body(source.body(offset, length));
+    }
+
+    /**
+     * Заголовки того же ответа, что и {@link #getPhoto}, без тела. Размер и тип оригинала берутся из записи в БД,
+     * так что хранилище не опрашивается (кроме уменьшенных копий вне кеша и старых записей без метаданных).
+     */
+    @RequestMapping(value = "/{userId}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> headPhoto(
+            @PathVariable UUID userId,
+            @RequestParam(value = "v", required = false) String version,
+            @RequestParam(value = "size", required = false) @Positive Integer size,
+            @RequestHeader HttpHeaders requestHeaders
+    ) {
+        UserPhoto photo = photoService.getPhotoRecord(userId);
+        boolean currentLink = UserPhotoService.versionOf(photo).equals(version);
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+
+        String expectedObject = size == null
+                ? photo.getFilePath()
+                : photoService.derivativeKey(photo, size).orElse(photo.getFilePath());
+        String expectedEtag = etagOf(expectedObject);
+        if (ifNoneMatch.contains(expectedEtag) || ifNoneMatch.contains("*")) {
+            return notModified(expectedEtag, cacheControl(currentLink));
+        }
+
+        StoredObject object = photoService.describePhoto(photo, size);
+        String etag = etagOf(object.objectName());
+        CacheControl cacheControl = cacheControl(currentLink && object.objectName().equals(expectedObject));
+        if (ifNoneMatch.contains(etag)) {
+            return notModified(etag, cacheControl);
+        }
+        Slice slice = slice(requestHeaders, object, etag, cacheControl);
+        return slice == null ? rangeNotSatisfiable(object) : slice.response().build();
     }
 
     @DeleteMapping("/{userId}")
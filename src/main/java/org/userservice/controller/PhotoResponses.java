@@ -0,0 +1,110 @@
+package org.userservice.controller;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.userservice.service.photo.StoredObject;
+import org.userservice.service.photo.UserPhotoService;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Заголовки ответов с фотографиями, общие для синхронного и асинхронного контроллеров.
+ */
+final class PhotoResponses {
+    private static final Duration IMMUTABLE_MAX_AGE = Duration.ofDays(365);
+
+    private PhotoResponses() {
+    }
+
+    static String etagOf(String objectName) {
+        return "\"" + UserPhotoService.versionOf(objectName) + "\"";
+    }
+
+    static CacheControl cacheControl(boolean immutable) {
+        return immutable
+                ? CacheControl.maxAge(IMMUTABLE_MAX_AGE).cachePrivate().immutable()
+                : CacheControl.noCache().cachePrivate();
+    }
+
+    static <T> ResponseEntity<T> notModified(String etag, CacheControl cacheControl) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .build();
+    }
+
+    private static MediaType contentType(StoredObject object) {
+        return object.contentType() != null
+                ? MediaType.parseMediaType(object.contentType())
+                : MediaType.APPLICATION_OCTET_STREAM;
+    }
+
+    /**
+     * Готовит успешный ответ: 200 с объектом целиком или 206 с запрошенным диапазоном.
+     *
+     * @return заголовки и границы тела или {@code null}, если диапазон за пределами объекта
+     */
+    static Slice slice(HttpHeaders requestHeaders, StoredObject object, String etag, CacheControl cacheControl) {
+        ResponseEntity.BodyBuilder response;
+        long offset = 0;
+        long length = object.size();
+        HttpRange range = singleRange(requestHeaders, etag);
+        if (range != null) {
+            try {
+                offset = range.getRangeStart(object.size());
+                length = range.getRangeEnd(object.size()) - offset + 1;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            // HttpRange обрезает конец по размеру объекта, но не проверяет начало: "bytes=20-" у 10 байт даёт пустой диапазон
+            if (length <= 0) {
+                return null;
+            }
+            response = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .header(HttpHeaders.CONTENT_RANGE,
+                            "bytes " + offset + "-" + (offset + length - 1) + "/" + object.size());
+        } else {
+            response = ResponseEntity.ok();
+        }
+        response.contentType(contentType(object))
+                .contentLength(length)
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes");
+        return new Slice(response, offset, length);
+    }
+
+    static <T> ResponseEntity<T> rangeNotSatisfiable(StoredObject object) {
+        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + object.size())
+                .build();
+    }
+
+    /**
+     * Диапазон учитывается, только если он один и (при наличии {@code If-Range}) ETag совпадает.
+     */
+    static HttpRange singleRange(HttpHeaders requestHeaders, String etag) {
+        List<HttpRange> ranges;
+        try {
+            ranges = requestHeaders.getRange();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (ranges.size() != 1) {
+            return null;
+        }
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            return null;
+        }
+        return ranges.get(0);
+    }
+
+    record Slice(ResponseEntity.BodyBuilder response, long offset, long length) {
+    }
+}
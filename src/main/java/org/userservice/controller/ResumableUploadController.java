@@ -0,0 +1,82 @@
+package org.userservice.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.PositiveOrZero;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.userservice.dto.photo.CreateUploadSessionRequestDto;
+import org.userservice.dto.photo.UploadSessionDto;
+import org.userservice.dto.photo.UserPhotoDto;
+import org.userservice.entity.UserPhoto;
+import org.userservice.service.photo.ResumableUploadService;
+import org.userservice.utils.UserPhotoMapper;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Возобновляемая загрузка фотографии (см. {@link ResumableUploadService}):
+ * <ol>
+ *     <li>{@code POST /api/photos/{userId}/uploads} с размером файла создаёт сессию;</li>
+ *     <li>{@code PUT .../uploads/{uploadId}?offset=N} с куском файла в теле; после обрыва связи
+ *     {@code GET .../uploads/{uploadId}} сообщает, с какого смещения продолжать (то же смещение приходит
+ *     в заголовке {@code Upload-Offset} ответа 409);</li>
+ *     <li>{@code POST .../uploads/{uploadId}/complete} проверяет файл и сохраняет фотографию.</li>
+ * </ol>
+ */
+@RestController
+@RequestMapping("/api/photos/{userId}/uploads")
+public class ResumableUploadController {
+
+    private final ResumableUploadService uploadService;
+    private final UserPhotoMapper photoMapper;
+
+    public ResumableUploadController(ResumableUploadService uploadService, UserPhotoMapper photoMapper) {
+        this.uploadService = uploadService;
+        this.photoMapper = photoMapper;
+    }
+
+    @PostMapping
+    public ResponseEntity<UploadSessionDto> createSession(
+            @PathVariable UUID userId,
+            @Valid @RequestBody CreateUploadSessionRequestDto request
+    ) {
+        return ResponseEntity.ok(uploadService.createSession(userId, request.size()));
+    }
+
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<UploadSessionDto> getSession(@PathVariable UUID userId, @PathVariable UUID uploadId) {
+        return ResponseEntity.ok(uploadService.getSession(userId, uploadId));
+    }
+
+    /**
+     * Тело читается потоком и сразу уходит в хранилище; длину нужно объявить в {@code Content-Length}.
+     */
+    @PutMapping("/{uploadId}")
+    public ResponseEntity<UploadSessionDto> appendChunk(
+            @PathVariable UUID userId,
+            @PathVariable UUID uploadId,
+            @RequestParam("offset") @PositiveOrZero long offset,
+            HttpServletRequest request
+    ) throws IOException {
+        long length = request.getContentLengthLong();
+        if (length < 0) {
+            return ResponseEntity.status(HttpStatus.LENGTH_REQUIRED).build();
+        }
+        return ResponseEntity.ok(uploadService.appendChunk(userId, uploadId, offset, request.getInputStream(), length));
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<UserPhotoDto> complete(@PathVariable UUID userId, @PathVariable UUID uploadId) {
+        UserPhoto photo = uploadService.complete(userId, uploadId);
+        return ResponseEntity.ok(photoMapper.toDto(photo));
+    }
+
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<Void> abort(@PathVariable UUID userId, @PathVariable UUID uploadId) {
+        uploadService.abort(userId, uploadId);
+        return ResponseEntity.noContent().build();
+    }
+}
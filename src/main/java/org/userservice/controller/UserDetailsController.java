@@ -3,13 +3,14 @@ package org.userservice.controller;
 import jakarta.validation.Valid;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.userservice.dto.details.UserDetailsRequestDto;
 import org.userservice.dto.details.UserDetailsResponseDto;
+import org.userservice.security.jwt.JwtPrincipal;
 import org.userservice.service.details.UserDetailsService;
 
-import java.security.Principal;
 import java.util.UUID;
 
 @RestController
@@ -26,12 +27,14 @@ public class UserDetailsController {
     public ResponseEntity<UserDetailsResponseDto> createProfile(
             @Valid @RequestPart("profile") UserDetailsRequestDto detailsRequest,
             @RequestPart("photo") MultipartFile photoFile,
-            Principal principal
+            @AuthenticationPrincipal JwtPrincipal principal
     ) {
         if (principal == null) {
             return ResponseEntity.status(401).build();
         }
-        UUID userId = userService.getCurrentUserId(principal.getName());
+        UUID userId = principal.userId() != null
+                ? principal.userId()
+                : userService.getCurrentUserId(principal.getName());
         return ResponseEntity.ok(userService.createProfile(userId, detailsRequest, photoFile));
     }
 
@@ -0,0 +1,8 @@
+package org.userservice.dto.photo;
+
+import jakarta.validation.constraints.NotBlank;
+
+public record ConfirmUploadRequestDto(
+        @NotBlank(message = "Object key is required")
+        String objectKey) {
+}
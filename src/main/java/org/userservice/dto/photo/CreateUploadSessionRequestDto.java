@@ -0,0 +1,8 @@
+package org.userservice.dto.photo;
+
+import jakarta.validation.constraints.Positive;
+
+public record CreateUploadSessionRequestDto(
+        @Positive(message = "Upload size must be positive")
+        long size) {
+}
@@ -0,0 +1,8 @@
+package org.userservice.dto.photo;
+
+import java.time.Instant;
+
+public record DirectUploadDto(String objectKey,
+                              String uploadUrl,
+                              Instant expiresAt) {
+}
@@ -0,0 +1,10 @@
+package org.userservice.dto.photo;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public record UploadSessionDto(UUID uploadId,
+                               long size,
+                               long offset,
+                               Instant expiresAt) {
+}
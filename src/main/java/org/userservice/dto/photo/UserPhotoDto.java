@@ -1,9 +1,16 @@
 package org.userservice.dto.photo;
 
+import java.time.Instant;
 import java.util.UUID;
 
 public record UserPhotoDto(UUID id,
                            UUID userId,
                            String filePath,
-                           String url) {
+                           String url,
+                           String contentType,
+                           Long size,
+                           String contentHash,
+                           Integer width,
+                           Integer height,
+                           Instant uploadedAt) {
 }
@@ -0,0 +1,49 @@
+package org.userservice.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * Объект фотографии в хранилище, адресуемый по содержимому.
+ * Одинаковые файлы разных пользователей хранятся один раз; {@code refCount} - число
+ * записей {@link UserPhoto}, которые на него ссылаются. Объект с нулевым счётчиком можно удалять.
+ */
+@Entity
+@Table(name = "photo_objects")
+public class PhotoObject {
+
+    @Id
+    @Column(name = "object_key", length = 100)
+    private String objectKey;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    public String getObjectKey() {
+        return objectKey;
+    }
+
+    public void setObjectKey(String objectKey) {
+        this.objectKey = objectKey;
+    }
+
+    public int getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(int refCount) {
+        this.refCount = refCount;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+}
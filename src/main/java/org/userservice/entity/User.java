@@ -3,18 +3,30 @@ package org.userservice.entity;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+
 import java.util.UUID;
 
 @Entity
 @Table(name = "app_user")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = User.CACHE_REGION)
+@NaturalIdCache(region = User.NATURAL_ID_CACHE_REGION)
 @NoArgsConstructor
 @AllArgsConstructor
 public class User {
 
+    public static final String CACHE_REGION = "users";
+    public static final String NATURAL_ID_CACHE_REGION = "users-by-name";
+
     @Id
     @GeneratedValue(generator = "UUID")
     private UUID id;
 
+    @NaturalId
     @Column(nullable = false, unique = true)
     private String userName;
 
@@ -1,6 +1,7 @@
 package org.userservice.exception;
 
 import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -43,12 +44,26 @@ public class GlobalExceptionHandler {
                 .body(new ErrorResponse("SERVICE_UNAVAILABLE", ex.getMessage()));
     }
 
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<ErrorResponse> handlePasswordHashingBusy(PasswordHashingBusyException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, ex.getRetryAfter().toSeconds())))
+                .body(new ErrorResponse("SERVICE_UNAVAILABLE", ex.getMessage()));
+    }
+
     @ExceptionHandler(OptimisticLockingFailureException.class)
     public ResponseEntity<ErrorResponse> handleOptimisticLocking(OptimisticLockingFailureException ex) {
         return ResponseEntity.status(HttpStatus.CONFLICT)
                 .body(new ErrorResponse("CONCURRENCY_ERROR", "Data version conflict"));
     }
 
+    @ExceptionHandler(UploadOffsetConflictException.class)
+    public ResponseEntity<ErrorResponse> handleUploadOffsetConflict(UploadOffsetConflictException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .header("Upload-Offset", String.valueOf(ex.getOffset()))
+                .body(new ErrorResponse("UPLOAD_OFFSET_CONFLICT", ex.getMessage()));
+    }
+
     @ExceptionHandler(InvalidFileException.class)
     public ResponseEntity<ErrorResponse> handleInvalidFile(InvalidFileException ex) {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -0,0 +1,17 @@
+package org.userservice.exception;
+
+import java.time.Duration;
+
+public class PasswordHashingBusyException extends CustomServiceUnavailableException {
+
+    private final Duration retryAfter;
+
+    public PasswordHashingBusyException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,18 @@
+package org.userservice.exception;
+
+public class UploadOffsetConflictException extends RuntimeException {
+
+    private final long offset;
+
+    public UploadOffsetConflictException(String message, long offset) {
+        super(message);
+        this.offset = offset;
+    }
+
+    /**
+     * @return сколько байт загрузки сервис уже принял; с этого смещения клиент продолжает
+     */
+    public long getOffset() {
+        return offset;
+    }
+}
@@ -0,0 +1,41 @@
+package org.userservice.repo;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.userservice.entity.PhotoObject;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PhotoObjectRepository extends JpaRepository<PhotoObject, String> {
+
+    /**
+     * Блокирует строку до конца транзакции: изменения счётчика ссылок и удаление объекта
+     * из хранилища выполняются по одному на ключ.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o from PhotoObject o where o.objectKey = :objectKey")
+    Optional<PhotoObject> findForUpdate(@Param("objectKey") String objectKey);
+
+    /**
+     * Создаёт строку с нулевым счётчиком, если её нет. Параллельная вставка того же ключа ждёт
+     * коммита первой и ничего не делает, вместо ошибки уникальности, которая оборвала бы транзакцию.
+     *
+     * @return 1, если строка создана
+     */
+    @Modifying
+    @Query(value = "INSERT INTO photo_objects (object_key, ref_count, created_at) VALUES (:objectKey, 0, :createdAt)"
+            + " ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("objectKey") String objectKey, @Param("createdAt") Instant createdAt);
+
+    @Query("select o.objectKey from PhotoObject o where o.objectKey in :objectKeys and o.refCount > 0")
+    List<String> findReferencedKeys(@Param("objectKeys") Collection<String> objectKeys);
+}
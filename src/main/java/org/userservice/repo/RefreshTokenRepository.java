@@ -0,0 +1,46 @@
+package org.userservice.repo;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.userservice.entity.RefreshToken;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, String> {
+
+    /**
+     * Блокирует строку до конца транзакции, чтобы один токен нельзя было обменять дважды параллельно.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    @Modifying
+    @Query("update RefreshToken t set t.revoked = true where t.familyId = :familyId and t.revoked = false")
+    int revokeFamily(@Param("familyId") String familyId);
+
+    /**
+     * Следующая страница истёкших токенов после ключа ({@code afterExpiry}, {@code afterId}).
+     */
+    @Query("select t.id as id, t.expiryDate as expiryDate from RefreshToken t where t.expiryDate < :cutoff"
+            + " and (t.expiryDate > :afterExpiry or (t.expiryDate = :afterExpiry and t.id > :afterId))"
+            + " order by t.expiryDate, t.id")
+    List<TokenKey> findExpiredAfter(@Param("cutoff") Instant cutoff,
+                                  @Param("afterExpiry") Instant afterExpiry,
+                                  @Param("afterId") String afterId,
+                                  Pageable page);
+
+    interface TokenKey {
+        String getId();
+
+        Instant getExpiryDate();
+    }
+}
@@ -0,0 +1,13 @@
+package org.userservice.repo;
+
+import org.userservice.entity.User;
+
+import java.util.Optional;
+
+/**
+ * Поиск пользователя по имени через natural id Hibernate: после первого обращения
+ * имя и сама сущность берутся из кеша второго уровня без запроса к базе.
+ */
+public interface UserNaturalIdLookup {
+    Optional<User> findByUserName(String username);
+}
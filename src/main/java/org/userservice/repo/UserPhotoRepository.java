@@ -1,13 +1,20 @@
 package org.userservice.repo;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.userservice.entity.UserPhoto;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface UserPhotoRepository extends JpaRepository<UserPhoto, UUID> {
     Optional<UserPhoto> findByUserDetailsId(UUID userDetailsId);
+
+    @Query("select distinct p.filePath from UserPhoto p where p.filePath in :filePaths")
+    List<String> findExistingFilePaths(@Param("filePaths") Collection<String> filePaths);
 }
@@ -3,10 +3,8 @@ package org.userservice.repo;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import org.userservice.entity.User;
-import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, UUID> {
-    Optional<User> findByUserName(String username);
+public interface UserRepository extends JpaRepository<User, UUID>, UserNaturalIdLookup {
 }
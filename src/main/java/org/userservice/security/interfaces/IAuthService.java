@@ -6,4 +6,5 @@ import org.userservice.dto.security.TokenResponse;
 public interface IAuthService {
     TokenResponse login(LoginRequest req);
     TokenResponse refreshToken(String token);
+    void logout(String username);
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+package org.userservice.security.jwt;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Curve;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.SecureDigestAlgorithm;
+
+import java.security.KeyPair;
+
+/**
+ * Поддерживаемые алгоритмы подписи access токенов.
+ * <p>
+ * {@link #HS256} — симметричная подпись общим секретом (режим по умолчанию).
+ * {@link #ES256} и {@link #EdDSA} (Ed25519) — асимметричная подпись: другие сервисы
+ * проверяют токены локально по открытому ключу из JWKS, не зная секрета.
+ */
+public enum JwtAlgorithm {
+    HS256(Jwts.SIG.HS256, null, null),
+    ES256(Jwts.SIG.ES256, "EC", Jwks.CRV.P256),
+    EdDSA(Jwts.SIG.EdDSA, "Ed25519", Jwks.CRV.Ed25519);
+
+    private final SecureDigestAlgorithm<?, ?> signatureAlgorithm;
+    private final String keyFactoryAlgorithm;
+    private final Curve curve;
+
+    JwtAlgorithm(SecureDigestAlgorithm<?, ?> signatureAlgorithm, String keyFactoryAlgorithm, Curve curve) {
+        this.signatureAlgorithm = signatureAlgorithm;
+        this.keyFactoryAlgorithm = keyFactoryAlgorithm;
+        this.curve = curve;
+    }
+
+    public SecureDigestAlgorithm<?, ?> signatureAlgorithm() {
+        return signatureAlgorithm;
+    }
+
+    public boolean isAsymmetric() {
+        return curve != null;
+    }
+
+    /**
+     * @return имя алгоритма для {@link java.security.KeyFactory}
+     */
+    public String keyFactoryAlgorithm() {
+        return keyFactoryAlgorithm;
+    }
+
+    /**
+     * Генерирует новую пару ключей для асимметричного алгоритма.
+     *
+     * @throws UnsupportedOperationException для симметричного алгоритма
+     */
+    public KeyPair generateKeyPair() {
+        if (!isAsymmetric()) {
+            throw new UnsupportedOperationException(name() + " is a symmetric algorithm");
+        }
+        return curve.keyPair().build();
+    }
+}
@@ -7,21 +7,20 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.List;
 
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class JwtAuthFilter extends OncePerRequestFilter {
 
-    private final JwtService jwtService;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final TokenRevocationService tokenRevocationService;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -29,16 +28,17 @@ public class JwtAuthFilter extends OncePerRequestFilter {
                                     FilterChain filterChain)
             throws ServletException, IOException {
         String token = getTokenFromRequest(request);
-        log.info("Processing request: {}, token: {}", request.getRequestURI(), token);
+        log.debug("Processing request: {}, bearer token present: {}", request.getRequestURI(), token != null);
 
         if (token != null) {
-        	if(jwtService.validate(token, true)) {
-        
-            String username = jwtService.extractUsername(token, true);
-            List<SimpleGrantedAuthority> authorities = jwtService.extractAuthorities(token, true);
-            Authentication auth = new UsernamePasswordAuthenticationToken(username, null, authorities);
-            SecurityContextHolder.getContext().setAuthentication(auth);
-        }}
+            verifiedTokenCache.verify(token)
+                    .filter(principal -> !tokenRevocationService.isRevoked(principal.subject(), principal.issuedAt()))
+                    .ifPresent(principal -> {
+                        Authentication auth = new UsernamePasswordAuthenticationToken(
+                                principal, null, principal.authorities());
+                        SecurityContextHolder.getContext().setAuthentication(auth);
+                    });
+        }
 
         filterChain.doFilter(request, response);
     }
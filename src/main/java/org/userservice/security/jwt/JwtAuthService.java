@@ -1,5 +1,6 @@
 package org.userservice.security.jwt;
 
+import io.jsonwebtoken.JwtException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -18,6 +19,7 @@ public class JwtAuthService implements IAuthService {
     private final AuthenticationManager authenticationManager;
     private final JwtService jwtService;
     private final RefreshTokenStrategy refreshTokenStrategy;
+    private final TokenRevocationService tokenRevocationService;
 
     @Transactional
     public TokenResponse login(LoginRequest request) {
@@ -28,8 +30,12 @@ public class JwtAuthService implements IAuthService {
         return refreshTokenStrategy.createLoginResponse(accessToken, authentication);
     }
 
-    @Transactional
+    @Transactional(noRollbackFor = JwtException.class)
     public TokenResponse refreshToken(String refreshToken) {
         return refreshTokenStrategy.refresh(refreshToken);
     }
+
+    public void logout(String username) {
+        tokenRevocationService.revokeAll(username);
+    }
 }
\ No newline at end of file
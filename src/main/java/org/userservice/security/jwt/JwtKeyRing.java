@@ -0,0 +1,155 @@
+package org.userservice.security.jwt;
+
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.security.SecureDigestAlgorithm;
+import io.jsonwebtoken.security.SignatureException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.security.Key;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Набор версионированных ключей подписи для одного типа токенов (access или refresh).
+ * <p>
+ * Новые токены подписываются самым свежим активным ключом, его идентификатор
+ * записывается в заголовок {@code kid}. При проверке ключ выбирается по {@code kid},
+ * поэтому во время ротации старые токены остаются валидными до {@code retireAt}
+ * своего ключа, а не отзываются все разом.
+ * <p>
+ * Парсер создаётся один раз и потокобезопасен; ключ для каждого токена находится
+ * через {@link io.jsonwebtoken.Locator} по заголовку, без повторной сборки парсера.
+ * Токены без {@code kid}, выпущенные до появления кольца, проверяются ключом
+ * с идентификатором {@value #DEFAULT_KEY_ID}.
+ * <p>
+ * Кольцо, в котором на момент создания нечем подписывать (все ключи активируются в будущем,
+ * уже выведены или заданы только открытой частью), отвергается сразу, а не на первом входе.
+ */
+@Slf4j
+final class JwtKeyRing {
+
+    static final String DEFAULT_KEY_ID = "default";
+
+    private final String name;
+    private final List<Version> versions;
+    private final Map<String, Version> versionsById;
+    private final JwtParser parser;
+    private final Clock clock;
+
+    JwtKeyRing(String name, List<Version> versions, Duration tokenLifetime) {
+        this(name, versions, tokenLifetime, Clock.systemUTC());
+    }
+
+    JwtKeyRing(String name, List<Version> versions, Duration tokenLifetime, Clock clock) {
+        if (versions.isEmpty()) {
+            throw new IllegalArgumentException("Key ring '" + name + "' has no keys");
+        }
+        this.name = name;
+        this.clock = clock;
+        this.versions = versions.stream()
+                .sorted(Comparator.comparing(Version::activeFrom).reversed())
+                .toList();
+        this.versionsById = new HashMap<>();
+        for (Version version : this.versions) {
+            if (versionsById.put(version.id(), version) != null) {
+                throw new IllegalArgumentException("Duplicate key id '" + version.id() + "' in key ring '" + name + "'");
+            }
+        }
+        Instant now = clock.instant();
+        if (this.versions.stream().noneMatch(version -> version.signsAt(now))) {
+            throw new IllegalArgumentException("Key ring '" + name + "' has no key that can sign at " + now
+                    + ": every key activates later, is retired or has no private part");
+        }
+        this.parser = Jwts.parser().keyLocator(new KidLocator()).build();
+        warnOnShortOverlap(tokenLifetime);
+    }
+
+    /**
+     * Версия ключа.
+     *
+     * @param id              идентификатор ключа для заголовка {@code kid}
+     * @param signingKey      ключ, которым подписываются токены, или null для версии только для проверки
+     * @param verificationKey ключ, которым проверяется подпись
+     * @param algorithm       алгоритм подписи
+     * @param activeFrom      момент, с которого ключ подписывает новые токены
+     * @param retireAt        момент, после которого подписи ключа не принимаются, или null
+     */
+    record Version(String id,
+                   Key signingKey,
+                   Key verificationKey,
+                   SecureDigestAlgorithm<?, ?> algorithm,
+                   Instant activeFrom,
+                   Instant retireAt) {
+
+        boolean acceptsAt(Instant now) {
+            return retireAt == null || now.isBefore(retireAt);
+        }
+
+        boolean signsAt(Instant now) {
+            return signingKey != null && !now.isBefore(activeFrom) && acceptsAt(now);
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        JwtBuilder sign(JwtBuilder builder) {
+            return builder.header().keyId(id).and()
+                    .signWith(signingKey, (SecureDigestAlgorithm) algorithm);
+        }
+    }
+
+    JwtParser parser() {
+        return parser;
+    }
+
+    /**
+     * @return ключ, которым нужно подписывать токены в момент {@code now}
+     * @throws IllegalStateException если ни один ключ не активен
+     */
+    Version signingVersion(Instant now) {
+        for (Version version : versions) {
+            if (version.signsAt(now)) {
+                return version;
+            }
+        }
+        throw new IllegalStateException("No active signing key in key ring '" + name + "'");
+    }
+
+    /**
+     * @return все версии, подписи которых ещё принимаются
+     */
+    List<Version> acceptedVersions(Instant now) {
+        return versions.stream().filter(v -> v.acceptsAt(now)).toList();
+    }
+
+    private void warnOnShortOverlap(Duration tokenLifetime) {
+        for (int i = 0; i + 1 < versions.size(); i++) {
+            Version newer = versions.get(i);
+            Version older = versions.get(i + 1);
+            if (older.retireAt() != null
+                    && older.retireAt().isBefore(newer.activeFrom().plus(tokenLifetime))) {
+                log.warn("Key '{}' in key ring '{}' retires before tokens it signed can expire; "
+                        + "clients will have to log in again", older.id(), name);
+            }
+        }
+    }
+
+    private final class KidLocator extends LocatorAdapter<Key> {
+        @Override
+        protected Key locate(JwsHeader header) {
+            String kid = header.getKeyId() != null ? header.getKeyId() : DEFAULT_KEY_ID;
+            Version version = versionsById.get(kid);
+            if (version == null || !version.acceptsAt(clock.instant())) {
+                throw new SignatureException("Unknown or retired signing key: " + kid);
+            }
+            return version.verificationKey();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.userservice.security.jwt;
+
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.security.Principal;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Неизменяемый результат однократной проверки access токена.
+ * <p>
+ * Содержит всё, что нужно фильтру для построения {@code Authentication},
+ * поэтому повторный разбор токена не требуется. Используется как principal в {@code Authentication},
+ * так что контроллеры получают id пользователя через {@code @AuthenticationPrincipal} без обращения к базе.
+ *
+ * @param subject     имя пользователя из токена
+ * @param userId      идентификатор пользователя (claim {@code uid}); null для токенов, выпущенных до его появления
+ * @param authorities роли пользователя
+ * @param issuedAt    момент выпуска токена (для проверки отзыва)
+ * @param expiresAt   момент истечения срока действия токена
+ */
+public record JwtPrincipal(String subject,
+                           UUID userId,
+                           List<SimpleGrantedAuthority> authorities,
+                           Instant issuedAt,
+                           Instant expiresAt) implements Principal, UserIdentity {
+
+    public JwtPrincipal {
+        authorities = List.copyOf(authorities);
+    }
+
+    @Override
+    public String getName() {
+        return subject;
+    }
+
+    public boolean isExpired(Instant now) {
+        return !now.isBefore(expiresAt);
+    }
+}
@@ -4,6 +4,9 @@ import lombok.Data;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 
 @Data
 @Configuration
@@ -12,17 +15,66 @@ public class JwtProperties {
     private boolean useRefresh = false;
     private Access access = new Access();
     private Refresh refresh = new Refresh();
+    private TokenCache tokenCache = new TokenCache();
+    private Blacklist blacklist = new Blacklist();
+    private Revocation revocation = new Revocation();
 
     @Data
     static class Access {
         private String secret = "default_access_secret";
         private Duration expiration = Duration.ofMinutes(30);
+        private JwtAlgorithm algorithm = JwtAlgorithm.HS256;
+        private List<KeyVersion> keys = new ArrayList<>();
+        /**
+         * Только для разработки: разрешает асимметричному алгоритму без заданных ключей
+         * сгенерировать временную пару при старте. Такие токены не переживут перезапуск
+         * и не проверятся на других узлах, поэтому по умолчанию старт без ключей запрещён.
+         */
+        private boolean allowEphemeralKeys = false;
     }
 
     @Data
     static class Refresh {
         private String secret = "default_refresh_secret";
         private Duration expiration = Duration.ofDays(7);
+        private List<KeyVersion> keys = new ArrayList<>();
+    }
+
+    /**
+     * Версия ключа подписи. Идентификатор попадает в заголовок {@code kid} токена.
+     * Ключ подписывает новые токены начиная с {@code activeFrom} и принимается
+     * при проверке до {@code retireAt} (если задан).
+     * <p>
+     * Для HS256 используется {@code secret}. Для асимметричных алгоритмов задаются
+     * {@code privateKey} (PKCS#8) и {@code publicKey} (X.509) в PEM или Base64;
+     * версия только с открытым ключом лишь проверяет подписи.
+     */
+    @Data
+    static class KeyVersion {
+        private String id;
+        private String secret;
+        private String privateKey;
+        private String publicKey;
+        private Instant activeFrom = Instant.EPOCH;
+        private Instant retireAt;
+    }
+
+    @Data
+    static class TokenCache {
+        private boolean enabled = true;
+        private long maxSize = 10_000;
+    }
+
+    @Data
+    static class Blacklist {
+        private long expectedInsertions = 100_000;
+        private double falsePositiveRate = 0.01;
+        private Duration rebuildInterval = Duration.ofHours(6);
+    }
+
+    @Data
+    static class Revocation {
+        private Duration syncInterval = Duration.ofMinutes(5);
     }
 
     public boolean isUseRefresh() {
@@ -1,9 +1,13 @@
 package org.userservice.security.jwt;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Jwks;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.PublicJwk;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -13,10 +17,16 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 /**
@@ -29,6 +39,10 @@ import java.util.stream.Collectors;
  * </ul>
  * <p>
  * Секретные ключи и время жизни токенов берутся из настроек {@link JwtProperties}.
+ * Ключи версионируются ({@link JwtKeyRing}): идентификатор ключа пишется в заголовок {@code kid},
+ * что позволяет ротировать секреты без одновременного отзыва всех выданных токенов.
+ * Access токены могут подписываться асимметрично ({@link JwtAlgorithm}), тогда открытые
+ * ключи публикуются через {@link #getPublicJwks()}.
  * <p>
  * Для корректной работы секретный ключ должен быть не менее 256 бит (32 символа).
  */
@@ -37,26 +51,102 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class JwtService {
 
+    /**
+     * Момент выпуска токена в миллисекундах; {@code iat} хранит только секунды,
+     * а для сравнения с моментом отзыва нужна большая точность.
+     */
+    static final String ISSUED_EPOCH_CLAIM = "iep";
+    static final String USER_ID_CLAIM = "uid";
+
     private final JwtProperties jwtProperties;
 
-    private SecretKey accessSecretKey;
-    private SecretKey refreshSecretKey;
+    private JwtKeyRing accessKeys;
+    private JwtKeyRing refreshKeys;
 
     /**
-     * Инициализация секретных ключей для access и refresh токенов на основе настроек.
+     * Инициализация колец ключей для access и refresh токенов на основе настроек.
+     * Если версии ключей не заданы, кольцо состоит из одного ключа {@code secret}
+     * с идентификатором {@value JwtKeyRing#DEFAULT_KEY_ID}.
      * Проверяет минимальную длину секретов.
      */
     @PostConstruct
     public void init() {
-    	 validateSecret(jwtProperties.getAccess().getSecret());
-    	    this.accessSecretKey = Keys.hmacShaKeyFor(
-    	        jwtProperties.getAccess().getSecret().getBytes(StandardCharsets.UTF_8)
-    	    );
-        
+        JwtProperties.Access access = jwtProperties.getAccess();
+        this.accessKeys = buildKeyRing("access", access.getSecret(), access.getKeys(),
+                access.getExpiration(), access.getAlgorithm(), access.isAllowEphemeralKeys());
+
         if (jwtProperties.isUseRefresh()) {
-            this.refreshSecretKey = Keys.hmacShaKeyFor(
-                jwtProperties.getRefresh().getSecret().getBytes(StandardCharsets.UTF_8)
-            );
+            JwtProperties.Refresh refresh = jwtProperties.getRefresh();
+            this.refreshKeys = buildKeyRing("refresh", refresh.getSecret(), refresh.getKeys(),
+                    refresh.getExpiration(), JwtAlgorithm.HS256, false);
+        }
+    }
+
+    private JwtKeyRing buildKeyRing(String name, String secret, List<JwtProperties.KeyVersion> keys,
+                                    Duration lifetime, JwtAlgorithm algorithm, boolean allowEphemeralKeys) {
+        List<JwtProperties.KeyVersion> configured = keys.isEmpty()
+                ? List.of(defaultKeyVersion(secret))
+                : keys;
+        List<JwtKeyRing.Version> versions = configured.stream()
+                .map(keyVersion -> algorithm.isAsymmetric()
+                        ? toAsymmetricVersion(name, keyVersion, algorithm, allowEphemeralKeys)
+                        : toHmacVersion(keyVersion))
+                .toList();
+        return new JwtKeyRing(name, versions, lifetime);
+    }
+
+    private JwtProperties.KeyVersion defaultKeyVersion(String secret) {
+        JwtProperties.KeyVersion version = new JwtProperties.KeyVersion();
+        version.setId(JwtKeyRing.DEFAULT_KEY_ID);
+        version.setSecret(secret);
+        return version;
+    }
+
+    private JwtKeyRing.Version toHmacVersion(JwtProperties.KeyVersion keyVersion) {
+        validateKeyId(keyVersion);
+        validateSecret(keyVersion.getSecret());
+        SecretKey key = Keys.hmacShaKeyFor(keyVersion.getSecret().getBytes(StandardCharsets.UTF_8));
+        return new JwtKeyRing.Version(keyVersion.getId(), key, key, Jwts.SIG.HS256,
+                keyVersion.getActiveFrom(), keyVersion.getRetireAt());
+    }
+
+    /**
+     * Строит асимметричную версию ключа. Версия без ключей - ошибка настройки; только при
+     * {@code jwt.access.allow-ephemeral-keys=true} генерируется временная пара: такие токены
+     * не переживут перезапуск и не проверятся на других узлах.
+     */
+    private JwtKeyRing.Version toAsymmetricVersion(String ringName, JwtProperties.KeyVersion keyVersion,
+                                                   JwtAlgorithm algorithm, boolean allowEphemeralKeys) {
+        validateKeyId(keyVersion);
+        PrivateKey privateKey;
+        PublicKey publicKey;
+        if (keyVersion.getPrivateKey() == null && keyVersion.getPublicKey() == null) {
+            if (!allowEphemeralKeys) {
+                throw new IllegalStateException("No " + algorithm + " key pair configured for key '"
+                        + keyVersion.getId() + "' in key ring '" + ringName
+                        + "'; set jwt.access.keys or, for development only, jwt.access.allow-ephemeral-keys=true");
+            }
+            log.warn("No {} key pair configured for key '{}' in key ring '{}', generating an ephemeral one",
+                    algorithm, keyVersion.getId(), ringName);
+            KeyPair keyPair = algorithm.generateKeyPair();
+            privateKey = keyPair.getPrivate();
+            publicKey = keyPair.getPublic();
+        } else {
+            if (keyVersion.getPublicKey() == null) {
+                throw new IllegalArgumentException("Public key is required for key '" + keyVersion.getId() + "'");
+            }
+            privateKey = keyVersion.getPrivateKey() == null
+                    ? null
+                    : PemKeys.privateKey(keyVersion.getPrivateKey(), algorithm.keyFactoryAlgorithm());
+            publicKey = PemKeys.publicKey(keyVersion.getPublicKey(), algorithm.keyFactoryAlgorithm());
+        }
+        return new JwtKeyRing.Version(keyVersion.getId(), privateKey, publicKey, algorithm.signatureAlgorithm(),
+                keyVersion.getActiveFrom(), keyVersion.getRetireAt());
+    }
+
+    private void validateKeyId(JwtProperties.KeyVersion keyVersion) {
+        if (keyVersion.getId() == null || keyVersion.getId().isBlank()) {
+            throw new IllegalArgumentException("Key id must not be empty");
         }
     }
 
@@ -67,10 +157,8 @@ public class JwtService {
      * @return сгенерированный JWT access токен
      */
     public String generateAccessToken(Authentication authentication) {
-        log.info("Generating token for user: " + authentication.getName());
-        String token = buildToken(authentication, accessSecretKey, jwtProperties.getAccess().getExpiration());
-        log.info("Generated token: " + token);
-        return token;
+        log.info("Generating token for user: {}", authentication.getName());
+        return buildToken(authentication, accessKeys, jwtProperties.getAccess().getExpiration());
     }
 
     /**
@@ -84,37 +172,49 @@ public class JwtService {
     	if (!jwtProperties.isUseRefresh()) {
             throw new UnsupportedOperationException("Refresh tokens are disabled");
         }
-        return buildToken(authentication, refreshSecretKey, jwtProperties.getRefresh().getExpiration());
+        return buildToken(authentication, refreshKeys, jwtProperties.getRefresh().getExpiration());
+    }
+
+    /**
+     * @return время жизни refresh токена
+     */
+    public Duration getRefreshTokenLifetime() {
+        return jwtProperties.getRefresh().getExpiration();
     }
 
     /**
-     * Строит JWT токен с заданным временем жизни и секретным ключом.
+     * Строит JWT токен с заданным временем жизни, подписывая его активным ключом кольца.
      *
      * @param authentication объект аутентификации пользователя
-     * @param secretKey      секретный ключ для подписи токена
+     * @param keyRing        кольцо ключей для подписи токена
      * @param expiration     время жизни токена
      * @return сгенерированный JWT токен в виде строки
-     * @throws IllegalArgumentException если authentication или secretKey равны null
+     * @throws IllegalArgumentException если authentication или keyRing равны null
      */
-    private String buildToken(Authentication authentication, SecretKey secretKey, Duration expiration) {
+    private String buildToken(Authentication authentication, JwtKeyRing keyRing, Duration expiration) {
     	if (authentication == null || authentication.getName() == null) {
     	    throw new IllegalArgumentException("Authentication cannot be null");
     	}
-    	if (secretKey == null) {
-    	    throw new IllegalArgumentException("SecretKey cannot be null");
+    	if (keyRing == null) {
+    	    throw new IllegalArgumentException("Key ring cannot be null");
     	}
     	Instant now = Instant.now();
         List<String> roles = authentication.getAuthorities().stream()
                 .map(GrantedAuthority::getAuthority)
                 .collect(Collectors.toList());
         
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
+                .id(UUID.randomUUID().toString())
                 .subject(authentication.getName())
                 .claim("roles", roles)
+                .claim(ISSUED_EPOCH_CLAIM, now.toEpochMilli())
                 .issuedAt(Date.from(now))
-                .expiration(Date.from(now.plus(expiration)))
-                .signWith(secretKey, Jwts.SIG.HS256)
-                .compact();
+                .expiration(Date.from(now.plus(expiration)));
+        UUID userId = userIdOf(authentication);
+        if (userId != null) {
+            builder.claim(USER_ID_CLAIM, userId.toString());
+        }
+        return keyRing.signingVersion(now).sign(builder).compact();
     }
 
     /**
@@ -126,14 +226,87 @@ public class JwtService {
      */
     public boolean validate(String token, boolean isAccessToken) {
         try {
-            SecretKey key = isAccessToken ? accessSecretKey : refreshSecretKey;
-            Jwts.parser().verifyWith(key).build().parseSignedClaims(token);
+            parser(isAccessToken).parseSignedClaims(token);
             return true;
-        } catch (JwtException | IllegalArgumentException e) {
+        } catch (JwtException | IllegalArgumentException | UnsupportedOperationException e) {
             return false;
         }
     }
 
+    /**
+     * Проверяет access токен за один разбор и возвращает его полезные данные.
+     * <p>
+     * Подпись проверяется ровно один раз, в отличие от последовательного вызова
+     * {@link #validate}, {@link #extractUsername} и {@link #extractAuthorities}.
+     *
+     * @param token JWT access токен
+     * @return неизменяемый {@link JwtPrincipal} с именем, ролями и сроком действия
+     * @throws JwtException если подпись неверна или срок действия истёк
+     */
+    public JwtPrincipal parseAccessToken(String token) {
+        return toPrincipal(accessKeys.parser().parseSignedClaims(token).getPayload());
+    }
+
+    /**
+     * Собирает {@link JwtPrincipal} из полезной нагрузки уже проверенного токена.
+     *
+     * @param claims полезная нагрузка access или refresh токена
+     * @return principal с именем, id пользователя, ролями и сроками действия
+     */
+    public JwtPrincipal toPrincipal(Claims claims) {
+        String userId = claims.get(USER_ID_CLAIM, String.class);
+        return new JwtPrincipal(claims.getSubject(), userId != null ? UUID.fromString(userId) : null,
+                toAuthorities(claims), issuedAt(claims), claims.getExpiration().toInstant());
+    }
+
+    /**
+     * Id пользователя известен, если principal - {@link UserIdentity}: при входе и при обмене refresh токена.
+     */
+    private static UUID userIdOf(Authentication authentication) {
+        return authentication.getPrincipal() instanceof UserIdentity identity ? identity.userId() : null;
+    }
+
+    /**
+     * Возвращает момент выпуска токена с точностью до миллисекунд.
+     * Для токенов, выпущенных до появления claim {@value #ISSUED_EPOCH_CLAIM}, используется {@code iat}.
+     *
+     * @param claims полезная нагрузка проверенного токена
+     * @return момент выпуска токена
+     */
+    public static Instant issuedAt(Claims claims) {
+        Long epochMillis = claims.get(ISSUED_EPOCH_CLAIM, Long.class);
+        if (epochMillis != null) {
+            return Instant.ofEpochMilli(epochMillis);
+        }
+        return claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : Instant.EPOCH;
+    }
+
+    /**
+     * Возвращает открытые ключи access токенов в формате JWK (RFC 7517).
+     * <p>
+     * В список попадают все ещё принимаемые версии, включая те, что начнут подписывать
+     * токены позже, чтобы проверяющие сервисы успели их закешировать.
+     * В режиме HS256 список пуст: секрет не публикуется.
+     *
+     * @return список JWK открытых ключей
+     */
+    public List<Map<String, Object>> getPublicJwks() {
+        return accessKeys.acceptedVersions(Instant.now()).stream()
+                .filter(version -> version.verificationKey() instanceof PublicKey)
+                .map(this::toPublicJwk)
+                .toList();
+    }
+
+    private Map<String, Object> toPublicJwk(JwtKeyRing.Version version) {
+        PublicJwk<?> jwk = Jwks.builder()
+                .key((PublicKey) version.verificationKey())
+                .id(version.id())
+                .algorithm(version.algorithm().getId())
+                .publicKeyUse("sig")
+                .build();
+        return new LinkedHashMap<>(jwk);
+    }
+
     /**
      * Проверяет минимальную длину секретного ключа.
      *
@@ -163,11 +336,7 @@ public class JwtService {
      * @return объект Claims с полезной нагрузкой токена
      */
     public Claims extractRefreshClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(refreshSecretKey)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser(false).parseSignedClaims(token).getPayload();
     }
 
     /**
@@ -178,8 +347,7 @@ public class JwtService {
      * @return имя пользователя из токена
      */
     public String extractUsername(String token, boolean isAccessToken) {
-        SecretKey key = isAccessToken ? accessSecretKey : refreshSecretKey;
-        return Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload().getSubject();
+        return parser(isAccessToken).parseSignedClaims(token).getPayload().getSubject();
     }
 
     /**
@@ -190,9 +358,24 @@ public class JwtService {
      * @return список ролей пользователя из токена
      */
     public List<SimpleGrantedAuthority> extractAuthorities(String token, boolean isAccessToken) {
-        SecretKey key = isAccessToken ? accessSecretKey : refreshSecretKey;
-        Claims claims = Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload();
+        Claims claims = parser(isAccessToken).parseSignedClaims(token).getPayload();
+        return toAuthorities(claims);
+    }
+
+    private JwtParser parser(boolean isAccessToken) {
+        JwtKeyRing keyRing = isAccessToken ? accessKeys : refreshKeys;
+        if (keyRing == null) {
+            throw new UnsupportedOperationException("Refresh tokens are disabled");
+        }
+        return keyRing.parser();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<SimpleGrantedAuthority> toAuthorities(Claims claims) {
         List<String> roles = claims.get("roles", List.class);
+        if (roles == null) {
+            return List.of();
+        }
         return roles.stream().map(SimpleGrantedAuthority::new).toList();
     }
 }
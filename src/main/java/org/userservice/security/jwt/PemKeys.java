@@ -0,0 +1,41 @@
+package org.userservice.security.jwt;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+
+/**
+ * Разбор ключей из настроек: PEM ({@code -----BEGIN ...-----}) или голый Base64 DER.
+ */
+final class PemKeys {
+
+    private PemKeys() {
+    }
+
+    static PrivateKey privateKey(String encoded, String algorithm) {
+        try {
+            return KeyFactory.getInstance(algorithm).generatePrivate(new PKCS8EncodedKeySpec(decode(encoded)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Invalid " + algorithm + " private key", e);
+        }
+    }
+
+    static PublicKey publicKey(String encoded, String algorithm) {
+        try {
+            return KeyFactory.getInstance(algorithm).generatePublic(new X509EncodedKeySpec(decode(encoded)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Invalid " + algorithm + " public key", e);
+        }
+    }
+
+    private static byte[] decode(String encoded) {
+        String base64 = encoded
+                .replaceAll("-----(BEGIN|END) [A-Z ]+-----", "")
+                .replaceAll("\\s", "");
+        return Base64.getDecoder().decode(base64);
+    }
+}
@@ -0,0 +1,54 @@
+package org.userservice.security.jwt;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Локальный фильтр Блума дайджестов отозванных токенов.
+ * <p>
+ * Отрицательный ответ точен, положительный требует подтверждения в Redis.
+ * Удалять элементы из фильтра нельзя, поэтому он периодически пересобирается.
+ * Потокобезопасен: {@link BloomFilter} допускает конкурентные put и mightContain.
+ */
+final class RevocationBloomFilter {
+
+    private final BloomFilter<CharSequence> filter;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+
+    RevocationBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.US_ASCII),
+                expectedInsertions, falsePositiveRate);
+    }
+
+    void put(String digest) {
+        filter.put(digest);
+    }
+
+    boolean mightContain(String digest) {
+        return filter.mightContain(digest);
+    }
+
+    /**
+     * @return расчётная вероятность ложного срабатывания при текущем заполнении
+     */
+    double expectedFalsePositiveRate() {
+        return filter.expectedFpp();
+    }
+
+    long approximateElementCount() {
+        return filter.approximateElementCount();
+    }
+
+    /**
+     * @return размер битового массива в байтах (та же формула, что использует Guava)
+     */
+    long memoryBytes() {
+        long bits = (long) (-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        return (bits + 7) / 8;
+    }
+}
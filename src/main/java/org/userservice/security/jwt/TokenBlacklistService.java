@@ -1,30 +1,211 @@
 package org.userservice.security.jwt;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.userservice.entity.User;
-import lombok.RequiredArgsConstructor;
 
+/**
+ * Чёрный список отозванных refresh токенов.
+ * <p>
+ * В Redis хранится только SHA-256 дайджест токена с TTL, равным времени жизни refresh токена.
+ * Перед обращением к Redis проверяется локальный {@link RevocationBloomFilter}: почти все токены
+ * не отозваны, и для них ответ получается без сетевого запроса. Фильтры узлов синхронизируются
+ * через Redis pub/sub, при старте и периодически пересобираются по ключам в Redis.
+ * <p>
+ * Прежние версии хранили сам токен ключом без префикса. Каждая пересборка переносит такие ключи
+ * под {@code jwt:revoked:<sha256>} с оставшимся TTL, а в течение времени жизни refresh токена после
+ * старта узла при отрицательном ответе фильтра дополнительно проверяется и старый ключ: его мог
+ * записать узел прежней версии во время поэтапного обновления.
+ * <p>
+ * Метрики: {@code jwt.blacklist.lookups} (result = filter_negative, confirmed, false_positive),
+ * {@code jwt.blacklist.filter.fpp.expected}, {@code jwt.blacklist.filter.fpp.observed},
+ * {@code jwt.blacklist.filter.memory} и {@code jwt.blacklist.filter.elements}.
+ */
 @Service
+@Slf4j
 @ConditionalOnProperty(name = "jwt.use.refresh", havingValue = "true")
-@RequiredArgsConstructor
 public class TokenBlacklistService {
 
+    static final String KEY_PREFIX = "jwt:revoked:";
+    static final String CHANNEL = "jwt:revoked";
+    /**
+     * Старые записи - сам JWT ключом; заголовок любого JWT в Base64URL начинается с {@code eyJ}.
+     */
+    static final String LEGACY_KEY_PATTERN = "eyJ*";
+    private static final String REVOKED = "revoked";
+
     private final RedisTemplate<String, String> redisTemplate;
-    private final Duration refreshTokenTtl = Duration.ofDays(7);
+    private final RedisMessageListenerContainer listenerContainer;
+    private final JwtProperties.Blacklist settings;
+    private final Duration refreshTokenTtl;
+    private final Instant legacyReadUntil;
+
+    private final AtomicReference<RevocationBloomFilter> filter = new AtomicReference<>();
+    private final AtomicReference<RevocationBloomFilter> rebuilding = new AtomicReference<>();
+    private volatile boolean filterComplete;
+
+    private final Counter filterNegatives;
+    private final Counter confirmedHits;
+    private final Counter falsePositives;
+
+    public TokenBlacklistService(RedisTemplate<String, String> redisTemplate,
+                                 RedisMessageListenerContainer listenerContainer,
+                                 JwtProperties jwtProperties,
+                                 MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.settings = jwtProperties.getBlacklist();
+        this.refreshTokenTtl = jwtProperties.getRefresh().getExpiration();
+        this.legacyReadUntil = Instant.now().plus(refreshTokenTtl);
+        this.filter.set(newFilter());
+
+        this.filterNegatives = lookupCounter(meterRegistry, "filter_negative");
+        this.confirmedHits = lookupCounter(meterRegistry, "confirmed");
+        this.falsePositives = lookupCounter(meterRegistry, "false_positive");
+        Gauge.builder("jwt.blacklist.filter.fpp.expected", filter, f -> f.get().expectedFalsePositiveRate())
+                .register(meterRegistry);
+        Gauge.builder("jwt.blacklist.filter.fpp.observed", this, TokenBlacklistService::observedFalsePositiveRate)
+                .register(meterRegistry);
+        Gauge.builder("jwt.blacklist.filter.memory", filter, f -> f.get().memoryBytes())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("jwt.blacklist.filter.elements", filter, f -> f.get().approximateElementCount())
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(
+                (message, pattern) -> remember(new String(message.getBody(), StandardCharsets.US_ASCII)),
+                new ChannelTopic(CHANNEL));
+        rebuildFilter();
+    }
 
     public void blacklist(String token) {
-        redisTemplate.opsForValue().set(token, "revoked", refreshTokenTtl);
+        String digest = TokenDigests.sha256(token);
+        redisTemplate.opsForValue().set(KEY_PREFIX + digest, REVOKED, refreshTokenTtl);
+        remember(digest);
+        redisTemplate.convertAndSend(CHANNEL, digest);
     }
 
     public boolean isBlacklisted(String token) {
+        String digest = TokenDigests.sha256(token);
+        boolean legacyRead = Instant.now().isBefore(legacyReadUntil);
+        if (filterComplete && !filter.get().mightContain(digest)) {
+            if (legacyRead && isLegacyBlacklisted(token)) {
+                confirmedHits.increment();
+                return true;
+            }
+            filterNegatives.increment();
+            return false;
+        }
+        boolean revoked = Boolean.TRUE.equals(redisTemplate.hasKey(KEY_PREFIX + digest))
+                || legacyRead && isLegacyBlacklisted(token);
+        if (revoked) {
+            confirmedHits.increment();
+        } else if (filterComplete) {
+            falsePositives.increment();
+        }
+        return revoked;
+    }
+
+    /**
+     * Пересобирает фильтр по ключам в Redis, чтобы избавиться от истёкших записей.
+     * Дайджесты, пришедшие во время пересборки, попадают в оба фильтра. Перед этим старые ключи
+     * с самим токеном переносятся под дайджест.
+     * Пока фильтр ни разу не был собран (например, Redis был недоступен при старте),
+     * каждая проверка идёт в Redis.
+     */
+    @Scheduled(fixedDelayString = "${jwt.blacklist.rebuild-interval:PT6H}",
+            initialDelayString = "${jwt.blacklist.rebuild-interval:PT6H}")
+    public void rebuildFilter() {
+        RevocationBloomFilter fresh = newFilter();
+        rebuilding.set(fresh);
+        try {
+            migrateLegacyKeys();
+        } catch (DataAccessException e) {
+            log.warn("Could not migrate legacy revoked token keys: {}", e.getMessage());
+        }
+        try (Cursor<String> keys = redisTemplate.scan(ScanOptions.scanOptions().match(KEY_PREFIX + "*").count(1000).build())) {
+            keys.forEachRemaining(key -> fresh.put(key.substring(KEY_PREFIX.length())));
+            filter.set(fresh);
+            filterComplete = true;
+            log.info("Revoked token filter rebuilt with ~{} entries", fresh.approximateElementCount());
+        } catch (DataAccessException e) {
+            log.warn("Could not rebuild revoked token filter, keeping the current one: {}", e.getMessage());
+        } finally {
+            rebuilding.set(null);
+        }
+    }
+
+    private boolean isLegacyBlacklisted(String token) {
         return Boolean.TRUE.equals(redisTemplate.hasKey(token));
     }
-    
-    public void revokeAll(User user) {
-        String userKey = "user:" + user.getUserName();
-        redisTemplate.opsForValue().set(userKey, "revoked", refreshTokenTtl);
+
+    private void migrateLegacyKeys() {
+        int migrated = 0;
+        try (Cursor<String> keys = redisTemplate.scan(ScanOptions.scanOptions().match(LEGACY_KEY_PATTERN).count(1000).build())) {
+            while (keys.hasNext()) {
+                if (migrateLegacyKey(keys.next())) {
+                    migrated++;
+                }
+            }
+        }
+        if (migrated > 0) {
+            log.info("Migrated {} legacy revoked token keys", migrated);
+        }
+    }
+
+    private boolean migrateLegacyKey(String token) {
+        if (!REVOKED.equals(redisTemplate.opsForValue().get(token))) {
+            return false;
+        }
+        Long ttlSeconds = redisTemplate.getExpire(token, TimeUnit.SECONDS);
+        if (ttlSeconds == null || ttlSeconds <= 0) {
+            return false;
+        }
+        redisTemplate.opsForValue().set(KEY_PREFIX + TokenDigests.sha256(token), REVOKED, Duration.ofSeconds(ttlSeconds));
+        redisTemplate.delete(token);
+        return true;
+    }
+
+    private void remember(String digest) {
+        RevocationBloomFilter next = rebuilding.get();
+        filter.get().put(digest);
+        if (next != null) {
+            next.put(digest);
+        }
+    }
+
+    private RevocationBloomFilter newFilter() {
+        return new RevocationBloomFilter(settings.getExpectedInsertions(), settings.getFalsePositiveRate());
+    }
+
+    private double observedFalsePositiveRate() {
+        double negatives = falsePositives.count() + filterNegatives.count();
+        return negatives == 0 ? 0 : falsePositives.count() / negatives;
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("jwt.blacklist.lookups")
+                .tag("result", result)
+                .register(meterRegistry);
     }
 }
@@ -0,0 +1,161 @@
+package org.userservice.security.jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Отзыв всех токенов пользователя (смена пароля, выход).
+ * <p>
+ * Для каждого пользователя хранится момент "not before": токены, выпущенные не позже него,
+ * считаются отозванными. Таблица целиком держится в памяти узла, поэтому проверка на каждом
+ * запросе обходится без сети. Источник истины - hash {@code jwt:not-before} в Redis; изменения
+ * рассылаются через pub/sub, а периодическая синхронизация подбирает пропущенные сообщения
+ * и удаляет записи старше максимального срока жизни токена.
+ */
+@Service
+@Slf4j
+public class TokenRevocationService {
+
+    static final String HASH_KEY = "jwt:not-before";
+    static final String CHANNEL = "jwt:not-before";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final Duration maxTokenLifetime;
+    private final Clock clock;
+
+    private final ConcurrentMap<String, Long> notBefore = new ConcurrentHashMap<>();
+
+    public TokenRevocationService(RedisTemplate<String, String> redisTemplate,
+                                  RedisMessageListenerContainer listenerContainer,
+                                  JwtProperties jwtProperties,
+                                  MeterRegistry meterRegistry) {
+        this(redisTemplate, listenerContainer, jwtProperties, meterRegistry, Clock.systemUTC());
+    }
+
+    TokenRevocationService(RedisTemplate<String, String> redisTemplate,
+                           RedisMessageListenerContainer listenerContainer,
+                           JwtProperties jwtProperties,
+                           MeterRegistry meterRegistry,
+                           Clock clock) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.clock = clock;
+        Duration access = jwtProperties.getAccess().getExpiration();
+        Duration refresh = jwtProperties.getRefresh().getExpiration();
+        this.maxTokenLifetime = refresh != null && refresh.compareTo(access) > 0 ? refresh : access;
+
+        Gauge.builder("jwt.revocation.entries", notBefore, Map::size)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(
+                (message, pattern) -> onMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CHANNEL));
+        synchronize();
+    }
+
+    /**
+     * Отзывает все токены пользователя, выпущенные до текущего момента.
+     *
+     * @param username имя пользователя
+     */
+    public void revokeAll(String username) {
+        long now = clock.millis();
+        hash().put(HASH_KEY, username, Long.toString(now));
+        remember(username, now);
+        redisTemplate.convertAndSend(CHANNEL, now + ":" + username);
+        log.info("All tokens revoked for user {}", username);
+    }
+
+    /**
+     * @param username имя пользователя из токена
+     * @param issuedAt момент выпуска токена
+     * @return {@code true}, если токен выпущен не позже последнего отзыва
+     */
+    public boolean isRevoked(String username, Instant issuedAt) {
+        Long revokedAt = notBefore.get(username);
+        return revokedAt != null && issuedAt.toEpochMilli() <= revokedAt;
+    }
+
+    /**
+     * Подтягивает таблицу из Redis и удаляет записи, которые пережили любой выпущенный до них токен.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.sync-interval:PT5M}",
+            initialDelayString = "${jwt.revocation.sync-interval:PT5M}")
+    public void synchronize() {
+        long expiredBefore = clock.instant().minus(maxTokenLifetime).toEpochMilli();
+        notBefore.values().removeIf(revokedAt -> revokedAt < expiredBefore);
+        try {
+            Map<String, String> stored = hash().entries(HASH_KEY);
+            List<Object> expired = new ArrayList<>();
+            stored.forEach((username, revokedAt) -> {
+                Long millis = parseMillis(revokedAt);
+                if (millis == null) {
+                    log.warn("Ignoring malformed token revocation entry for user {}", username);
+                } else if (millis < expiredBefore) {
+                    expired.add(username);
+                } else {
+                    remember(username, millis);
+                }
+            });
+            if (!expired.isEmpty()) {
+                hash().delete(HASH_KEY, expired.toArray());
+            }
+            log.debug("Token revocation table synchronized: {} entries, {} pruned", notBefore.size(), expired.size());
+        } catch (DataAccessException e) {
+            log.warn("Could not synchronize token revocation table, keeping the local one: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Сообщение {@code <epochMillis>:<username>}; испорченное сообщение только логируется,
+     * иначе исключение ушло бы в поток контейнера слушателей.
+     */
+    private void onMessage(String payload) {
+        int separator = payload.indexOf(':');
+        Long revokedAt = separator > 0 ? parseMillis(payload.substring(0, separator)) : null;
+        if (revokedAt == null || separator == payload.length() - 1) {
+            log.warn("Ignoring malformed token revocation message");
+            return;
+        }
+        remember(payload.substring(separator + 1), revokedAt);
+    }
+
+    private static Long parseMillis(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void remember(String username, long revokedAt) {
+        notBefore.merge(username, revokedAt, Math::max);
+    }
+
+    private HashOperations<String, String, String> hash() {
+        return redisTemplate.opsForHash();
+    }
+}
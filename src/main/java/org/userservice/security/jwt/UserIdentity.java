@@ -0,0 +1,11 @@
+package org.userservice.security.jwt;
+
+import java.util.UUID;
+
+/**
+ * Principal, который знает id пользователя; {@link JwtService} кладёт его в claim {@code uid}.
+ */
+public interface UserIdentity {
+
+    UUID userId();
+}
@@ -0,0 +1,75 @@
+package org.userservice.security.jwt;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Кеш уже проверенных access токенов.
+ * <p>
+ * Ключом служит SHA-256 дайджест токена, значением — {@link JwtPrincipal}.
+ * Размер кеша ограничен {@code jwt.token-cache.max-size}, запись живёт не дольше
+ * времени жизни access токена и не отдаётся после истечения срока самого токена.
+ * Невалидные токены не кешируются.
+ * <p>
+ * Метрики попаданий и промахов публикуются под именем {@code jwt.verified.tokens}.
+ */
+@Component
+@Slf4j
+public class VerifiedTokenCache {
+
+    private final JwtService jwtService;
+    private final boolean enabled;
+    private final Cache<String, JwtPrincipal> cache;
+
+    public VerifiedTokenCache(JwtService jwtService, JwtProperties jwtProperties, MeterRegistry meterRegistry) {
+        this.jwtService = jwtService;
+        this.enabled = jwtProperties.getTokenCache().isEnabled();
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(jwtProperties.getTokenCache().getMaxSize())
+                .expireAfterWrite(jwtProperties.getAccess().getExpiration())
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, cache, "jwt.verified.tokens");
+    }
+
+    /**
+     * Возвращает данные access токена, проверяя подпись только при промахе кеша.
+     *
+     * @param token JWT access токен
+     * @return {@link JwtPrincipal} или пустой Optional, если токен невалиден или истёк
+     */
+    public Optional<JwtPrincipal> verify(String token) {
+        if (!enabled) {
+            return parse(token);
+        }
+        String key = TokenDigests.sha256(token);
+        JwtPrincipal cached = cache.getIfPresent(key);
+        if (cached != null) {
+            if (!cached.isExpired(Instant.now())) {
+                return Optional.of(cached);
+            }
+            cache.invalidate(key);
+            return Optional.empty();
+        }
+        Optional<JwtPrincipal> principal = parse(token);
+        principal.ifPresent(p -> cache.put(key, p));
+        return principal;
+    }
+
+    private Optional<JwtPrincipal> parse(String token) {
+        try {
+            return Optional.of(jwtService.parseAccessToken(token));
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Rejected access token: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+}
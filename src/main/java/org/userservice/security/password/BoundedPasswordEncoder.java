@@ -0,0 +1,134 @@
+package org.userservice.security.password;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.userservice.exception.PasswordHashingBusyException;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BCrypt на выделенном пуле потоков с ограниченной очередью.
+ * <p>
+ * Хеширование намеренно дорогое, и всплеск логинов на потоках Tomcat занимает их все.
+ * Здесь одновременно считается не больше {@code threads} хешей, ещё {@code queueCapacity}
+ * ждут в очереди, остальные сразу получают {@link PasswordHashingBusyException} (503 с Retry-After).
+ * <p>
+ * Метрики: {@code security.password.queue.depth}, {@code security.password.active},
+ * {@code security.password.hash} (operation = encode, matches) и {@code security.password.rejected}.
+ */
+@Slf4j
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final BCryptPasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final Duration maxWait;
+    private final Duration retryAfter;
+
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejected;
+
+    public BoundedPasswordEncoder(PasswordHashingProperties properties, MeterRegistry meterRegistry) {
+        this(new BCryptPasswordEncoder(properties.getStrength()), properties, meterRegistry);
+    }
+
+    BoundedPasswordEncoder(BCryptPasswordEncoder delegate, PasswordHashingProperties properties,
+                           MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.maxWait = properties.getMaxWait();
+        this.retryAfter = properties.getRetryAfter();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(properties.getThreads(), properties.getThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.encodeTimer = hashTimer(meterRegistry, "encode");
+        this.matchesTimer = hashTimer(meterRegistry, "matches");
+        this.rejected = Counter.builder("security.password.rejected").register(meterRegistry);
+        Gauge.builder("security.password.queue.depth", executor, e -> e.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("security.password.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return submit(encodeTimer, () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(matchesTimer, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Хеш считается устаревшим, если он посчитан с меньшим cost factor, чем настроен сейчас.
+     * Spring Security в этом случае пересчитывает его при успешном входе через {@code UserDetailsPasswordService}.
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> T submit(Timer timer, Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> timer.recordCallable(task));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw busy();
+        }
+        try {
+            return future.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            rejected.increment();
+            throw busy();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+            throw busy();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private PasswordHashingBusyException busy() {
+        log.warn("Password hashing pool saturated: {} queued, {} active",
+                executor.getQueue().size(), executor.getActiveCount());
+        return new PasswordHashingBusyException("Password hashing is overloaded, retry later", retryAfter);
+    }
+
+    private static Timer hashTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("security.password.hash")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,24 @@
+package org.userservice.security.password;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "security.password")
+public class PasswordHashingProperties {
+    /**
+     * Cost factor BCrypt (log2 числа раундов). При повышении старые хеши пересчитываются при следующем входе.
+     */
+    private int strength = 10;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int queueCapacity = 64;
+    /**
+     * Сколько запрос ждёт результата хеширования, прежде чем получить 503.
+     */
+    private Duration maxWait = Duration.ofSeconds(5);
+    private Duration retryAfter = Duration.ofSeconds(1);
+}
@@ -0,0 +1,134 @@
+package org.userservice.security.ratelimit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.userservice.exception.GlobalExceptionHandler.ErrorResponse;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничение частоты {@code /api/auth/login} и {@code /api/auth/register}.
+ * <p>
+ * Каждая попытка расходует токен и из бакета клиентского IP, и из бакета имени пользователя
+ * (оно берётся из JSON тела). Отказ (429 с Retry-After) выдаётся до обращения к базе и BCrypt.
+ * IP берётся из {@link HttpServletRequest#getRemoteAddr()}; за прокси нужно включить
+ * {@code server.forward-headers-strategy}, иначе все клиенты попадут в один бакет.
+ * <p>
+ * Метрики: {@code security.login.throttled} (key = ip, username) и {@code security.login.buckets}.
+ */
+@Component
+@Slf4j
+public class LoginRateLimitFilter extends OncePerRequestFilter {
+
+    private static final Set<String> LIMITED_PATHS = Set.of("/api/auth/login", "/api/auth/register");
+
+    private final LoginRateLimitProperties properties;
+    private final ObjectMapper objectMapper;
+    private final StripedTokenBuckets ipBuckets;
+    private final StripedTokenBuckets usernameBuckets;
+    private final Counter ipThrottled;
+    private final Counter usernameThrottled;
+
+    public LoginRateLimitFilter(LoginRateLimitProperties properties,
+                                ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.ipBuckets = buckets(properties.getPerIp(), properties.getStripes());
+        this.usernameBuckets = buckets(properties.getPerUsername(), properties.getStripes());
+        this.ipThrottled = throttledCounter(meterRegistry, "ip");
+        this.usernameThrottled = throttledCounter(meterRegistry, "username");
+        Gauge.builder("security.login.buckets", this, f -> f.ipBuckets.size() + f.usernameBuckets.size())
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isEnabled()
+                || !HttpMethod.POST.matches(request.getMethod())
+                || !LIMITED_PATHS.contains(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain)
+            throws ServletException, IOException {
+        long ipWait = ipBuckets.tryAcquire(request.getRemoteAddr());
+        if (ipWait > 0) {
+            ipThrottled.increment();
+            reject(response, ipWait);
+            return;
+        }
+
+        byte[] body = request.getInputStream().readNBytes(properties.getMaxBodySize() + 1);
+        if (body.length > properties.getMaxBodySize()) {
+            response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value());
+            return;
+        }
+        String username = extractUsername(body);
+        if (username != null) {
+            long usernameWait = usernameBuckets.tryAcquire(username);
+            if (usernameWait > 0) {
+                usernameThrottled.increment();
+                log.debug("Login attempts throttled for user {}", username);
+                reject(response, usernameWait);
+                return;
+            }
+        }
+
+        filterChain.doFilter(new CachedBodyRequest(request, body), response);
+    }
+
+    @Scheduled(fixedDelayString = "${security.login-rate-limit.eviction-interval:PT1M}")
+    public void evictIdleBuckets() {
+        int evicted = ipBuckets.evictIdle() + usernameBuckets.evictIdle();
+        log.debug("Evicted {} idle login rate limit buckets", evicted);
+    }
+
+    private String extractUsername(byte[] body) {
+        try {
+            JsonNode username = objectMapper.readTree(body).path("username");
+            return username.isTextual() ? username.asText().toLowerCase(Locale.ROOT) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+                new ErrorResponse("TOO_MANY_REQUESTS", "Too many login attempts, retry later"));
+    }
+
+    private static StripedTokenBuckets buckets(LoginRateLimitProperties.Limit limit, int stripes) {
+        return new StripedTokenBuckets(limit.getCapacity(), limit.getRefillInterval(), stripes, System::nanoTime);
+    }
+
+    private static Counter throttledCounter(MeterRegistry meterRegistry, String key) {
+        return Counter.builder("security.login.throttled")
+                .tag("key", key)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,39 @@
+package org.userservice.security.ratelimit;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "security.login-rate-limit")
+public class LoginRateLimitProperties {
+    private boolean enabled = true;
+    private int stripes = 64;
+    /**
+     * Максимальный размер тела запроса, из которого извлекается имя пользователя.
+     */
+    private int maxBodySize = 8 * 1024;
+    private Duration evictionInterval = Duration.ofMinutes(1);
+    private Limit perUsername = new Limit(5, Duration.ofSeconds(30));
+    private Limit perIp = new Limit(20, Duration.ofSeconds(3));
+
+    /**
+     * Ёмкость бакета (допустимый всплеск) и интервал пополнения на один токен.
+     */
+    @Data
+    static class Limit {
+        private int capacity;
+        private Duration refillInterval;
+
+        Limit() {
+        }
+
+        Limit(int capacity, Duration refillInterval) {
+            this.capacity = capacity;
+            this.refillInterval = refillInterval;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.userservice.security.ratelimit;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Набор token bucket'ов, по одному на ключ (имя пользователя, IP).
+ * <p>
+ * Ключи распределены по {@code stripes} независимым секциям, каждая под своим монитором,
+ * поэтому конкурирующие запросы к разным ключам почти не блокируют друг друга.
+ * Бакет - два изменяемых поля без аллокаций на проверку; пополнение считается лениво
+ * по прошедшему времени. Полностью восстановившиеся бакеты ничем не отличаются от новых
+ * и удаляются в {@link #evictIdle()}.
+ */
+final class StripedTokenBuckets {
+
+    private final Stripe[] stripes;
+    private final int mask;
+    private final double capacity;
+    private final double tokensPerNano;
+    private final LongSupplier nanoClock;
+
+    StripedTokenBuckets(int capacity, Duration refillInterval, int stripes, LongSupplier nanoClock) {
+        if (capacity < 1 || refillInterval.isZero() || refillInterval.isNegative()) {
+            throw new IllegalArgumentException("Bucket capacity and refill interval must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.mask = size - 1;
+        this.capacity = capacity;
+        this.tokensPerNano = 1.0 / refillInterval.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Забирает один токен из бакета ключа.
+     *
+     * @param key ключ бакета
+     * @return 0, если токен выдан, иначе через сколько наносекунд появится следующий
+     */
+    long tryAcquire(String key) {
+        long now = nanoClock.getAsLong();
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(capacity, now);
+                stripe.buckets.put(key, bucket);
+            } else {
+                bucket.refill(now, capacity, tokensPerNano);
+            }
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - bucket.tokens) / tokensPerNano);
+        }
+    }
+
+    /**
+     * Удаляет бакеты, которые успели пополниться до полной ёмкости.
+     *
+     * @return число удалённых бакетов
+     */
+    int evictIdle() {
+        long now = nanoClock.getAsLong();
+        int evicted = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                Iterator<Bucket> it = stripe.buckets.values().iterator();
+                while (it.hasNext()) {
+                    Bucket bucket = it.next();
+                    bucket.refill(now, capacity, tokensPerNano);
+                    if (bucket.tokens >= capacity) {
+                        it.remove();
+                        evicted++;
+                    }
+                }
+            }
+        }
+        return evicted;
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.buckets.size();
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripeFor(String key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & mask];
+    }
+
+    private static final class Stripe {
+        private final Map<String, Bucket> buckets = new HashMap<>();
+    }
+
+    private static final class Bucket {
+        private double tokens;
+        private long updatedAt;
+
+        private Bucket(double tokens, long updatedAt) {
+            this.tokens = tokens;
+            this.updatedAt = updatedAt;
+        }
+
+        private void refill(long now, double capacity, double tokensPerNano) {
+            long elapsed = now - updatedAt;
+            if (elapsed > 0) {
+                tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+                updatedAt = now;
+            }
+        }
+    }
+}
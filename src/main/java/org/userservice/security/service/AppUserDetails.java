@@ -0,0 +1,28 @@
+package org.userservice.security.service;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.userservice.security.jwt.UserIdentity;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * {@link org.springframework.security.core.userdetails.UserDetails} с идентификатором пользователя,
+ * чтобы при входе он попал в claim {@code uid} токена без повторного запроса к базе.
+ */
+public class AppUserDetails extends User implements UserIdentity {
+
+    private final UUID id;
+
+    public AppUserDetails(UUID id, String username, String password,
+                          Collection<? extends GrantedAuthority> authorities) {
+        super(username, password, authorities);
+        this.id = id;
+    }
+
+    @Override
+    public UUID userId() {
+        return id;
+    }
+}
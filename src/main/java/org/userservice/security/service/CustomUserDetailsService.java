@@ -2,27 +2,41 @@ package org.userservice.security.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.userservice.config.hibernate.UserCacheInvalidator;
 import org.userservice.entity.User;
 import org.userservice.repo.UserRepository;
 import java.util.List;
 
 @Service
 @RequiredArgsConstructor
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
+    private final UserCacheInvalidator userCacheInvalidator;
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         User user = userRepository.findByUserName(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
-        return org.springframework.security.core.userdetails.User.builder()
-                .username(user.getUserName())
-                .password(user.getPasswordHash())
-                .authorities(List.of())
-                .build();
+        return new AppUserDetails(user.getId(), user.getUserName(), user.getPasswordHash(), List.of());
+    }
+
+    /**
+     * Вызывается Spring Security после успешного входа, если хеш посчитан со старым cost factor.
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails userDetails, String newPasswordHash) {
+        User user = userRepository.findByUserName(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found: " + userDetails.getUsername()));
+        user.setPasswordHash(newPasswordHash);
+        userRepository.save(user);
+        userCacheInvalidator.evictAfterCommit(user.getId(), user.getUserName());
+        return new AppUserDetails(user.getId(), user.getUserName(), newPasswordHash, userDetails.getAuthorities());
     }
 }
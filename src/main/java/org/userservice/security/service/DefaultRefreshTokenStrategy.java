@@ -1,7 +1,7 @@
 package org.userservice.security.service;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
@@ -9,17 +9,19 @@ import org.userservice.dto.security.TokenResponse;
 import org.userservice.security.interfaces.RefreshTokenStrategy;
 import org.userservice.security.jwt.JwtService;
 import org.userservice.security.jwt.TokenBlacklistService;
+import org.userservice.security.jwt.TokenRevocationService;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
 import java.util.List;
 
 @Component
-@ConditionalOnProperty(name = "jwt.use.refresh", havingValue = "true")
+@ConditionalOnExpression("${jwt.use.refresh:false} and '${jwt.refresh.store:redis}' == 'redis'")
 @RequiredArgsConstructor
 public class DefaultRefreshTokenStrategy implements RefreshTokenStrategy {
 
     private final JwtService jwtService;
     private final TokenBlacklistService blacklistService;
+    private final TokenRevocationService revocationService;
 
     @Override
     public TokenResponse createLoginResponse(String accessToken, Authentication authentication) {
@@ -42,7 +44,10 @@ public class DefaultRefreshTokenStrategy implements RefreshTokenStrategy {
         }
         Claims claims = jwtService.extractRefreshClaims(refreshToken);
         String username = claims.getSubject();
-        Authentication auth = new UsernamePasswordAuthenticationToken(username, null, List.of());
+        if (revocationService.isRevoked(username, JwtService.issuedAt(claims))) {
+            throw new JwtException("Refresh token revoked");
+        }
+        Authentication auth = new UsernamePasswordAuthenticationToken(jwtService.toPrincipal(claims), null, List.of());
         String access = jwtService.generateAccessToken(auth);
         String fresh = jwtService.generateRefreshToken(auth);
         blacklistService.blacklist(refreshToken);
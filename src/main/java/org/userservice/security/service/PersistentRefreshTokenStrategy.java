@@ -0,0 +1,103 @@
+package org.userservice.security.service;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.userservice.dto.security.TokenResponse;
+import org.userservice.entity.RefreshToken;
+import org.userservice.entity.User;
+import org.userservice.repo.RefreshTokenRepository;
+import org.userservice.repo.UserRepository;
+import org.userservice.security.interfaces.RefreshTokenStrategy;
+import org.userservice.security.jwt.JwtService;
+import org.userservice.security.jwt.TokenDigests;
+import org.userservice.security.jwt.TokenRevocationService;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Refresh токены в таблице {@code refresh_tokens} ({@code jwt.refresh.store=database}).
+ * <p>
+ * Поиск идёт по SHA-256 хешу токена. Каждый обмен отзывает предъявленный токен и выдаёт
+ * новый в том же семействе. Повторное предъявление уже отозванного токена означает, что
+ * он утёк, поэтому отзывается всё семейство, включая токен, выданный при последней ротации.
+ * Повтор обмена с потерянным ответом от утечки не отличить, так что после него клиент входит заново.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("${jwt.use.refresh:false} and '${jwt.refresh.store:redis}' == 'database'")
+@RequiredArgsConstructor
+public class PersistentRefreshTokenStrategy implements RefreshTokenStrategy {
+
+    private final JwtService jwtService;
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final UserRepository userRepository;
+    private final TokenRevocationService revocationService;
+
+    @Override
+    @Transactional
+    public TokenResponse createLoginResponse(String accessToken, Authentication authentication) {
+        User user = userRepository.findByUserName(authentication.getName())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found: " + authentication.getName()));
+        String refreshToken = issue(authentication, user, UUID.randomUUID().toString());
+        return new TokenResponse(accessToken, refreshToken);
+    }
+
+    @Override
+    public boolean supports(boolean useRefreshToken) {
+        return useRefreshToken;
+    }
+
+    /**
+     * Исключение при повторном использовании не должно откатывать отзыв семейства.
+     */
+    @Override
+    @Transactional(noRollbackFor = JwtException.class)
+    public TokenResponse refresh(String refreshToken) {
+        if (!jwtService.validateRefreshToken(refreshToken)) {
+            throw new JwtException("Invalid refresh token");
+        }
+        RefreshToken stored = refreshTokenRepository.findByTokenHash(TokenDigests.sha256(refreshToken))
+                .orElseThrow(() -> new JwtException("Unknown refresh token"));
+        if (stored.isRevoked()) {
+            int revoked = refreshTokenRepository.revokeFamily(stored.getFamilyId());
+            log.warn("Refresh token reuse detected, revoked {} tokens of family {}", revoked, stored.getFamilyId());
+            throw new JwtException("Refresh token revoked");
+        }
+        if (!stored.getExpiryDate().isAfter(Instant.now())) {
+            throw new JwtException("Refresh token expired");
+        }
+        Claims claims = jwtService.extractRefreshClaims(refreshToken);
+        String username = claims.getSubject();
+        if (revocationService.isRevoked(username, JwtService.issuedAt(claims))) {
+            throw new JwtException("Refresh token revoked");
+        }
+
+        stored.setRevoked(true);
+        Authentication auth = new UsernamePasswordAuthenticationToken(jwtService.toPrincipal(claims), null, List.of());
+        String access = jwtService.generateAccessToken(auth);
+        String fresh = issue(auth, stored.getUser(), stored.getFamilyId());
+        return new TokenResponse(access, fresh);
+    }
+
+    private String issue(Authentication authentication, User user, String familyId) {
+        String token = jwtService.generateRefreshToken(authentication);
+        RefreshToken entity = new RefreshToken();
+        entity.setId(UUID.randomUUID().toString());
+        entity.setTokenHash(TokenDigests.sha256(token));
+        entity.setUser(user);
+        entity.setFamilyId(familyId);
+        entity.setExpiryDate(Instant.now().plus(jwtService.getRefreshTokenLifetime()));
+        refreshTokenRepository.save(entity);
+        return token;
+    }
+}
@@ -0,0 +1,71 @@
+package org.userservice.security.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.userservice.repo.RefreshTokenRepository;
+import org.userservice.repo.RefreshTokenRepository.TokenKey;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Фоновое удаление истёкших refresh токенов.
+ * <p>
+ * Строки удаляются небольшими пачками, каждая в своей короткой транзакции, а следующая
+ * пачка выбирается по ключу ({@code expiry_date}, {@code id}) без OFFSET. Так очистка
+ * не держит долгих блокировок и не мешает выдаче токенов. Отозванные, но ещё не истёкшие
+ * токены остаются: по ним распознаётся повторное использование.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("${jwt.use.refresh:false} and '${jwt.refresh.store:redis}' == 'database'")
+public class RefreshTokenPurger {
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter purged;
+
+    @Value("${jwt.refresh.purge.batch-size:500}")
+    private int batchSize;
+
+    public RefreshTokenPurger(RefreshTokenRepository refreshTokenRepository,
+                              TransactionTemplate transactionTemplate,
+                              MeterRegistry meterRegistry) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.purged = Counter.builder("jwt.refresh.purged").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.refresh.purge.interval:PT1H}",
+            initialDelayString = "${jwt.refresh.purge.interval:PT1H}")
+    public void purgeExpired() {
+        Instant cutoff = Instant.now();
+        Instant afterExpiry = Instant.EPOCH;
+        String afterId = "";
+        long total = 0;
+        List<TokenKey> page;
+        do {
+            page = refreshTokenRepository.findExpiredAfter(cutoff, afterExpiry, afterId, PageRequest.ofSize(batchSize));
+            if (page.isEmpty()) {
+                break;
+            }
+            List<String> ids = page.stream().map(TokenKey::getId).toList();
+            transactionTemplate.executeWithoutResult(status -> refreshTokenRepository.deleteAllByIdInBatch(ids));
+            TokenKey last = page.get(page.size() - 1);
+            afterExpiry = last.getExpiryDate();
+            afterId = last.getId();
+            total += ids.size();
+            purged.increment(ids.size());
+        } while (page.size() == batchSize);
+        if (total > 0) {
+            log.info("Purged {} expired refresh tokens", total);
+        }
+    }
+}
@@ -1,14 +1,14 @@
 package org.userservice.security.service;
 
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.transaction.annotation.Transactional;
+import org.userservice.config.hibernate.UserCacheInvalidator;
 import org.userservice.dto.security.RegisterRequest;
 import org.userservice.entity.User;
 import org.userservice.exception.UserAlreadyExistsException;
 import org.userservice.repo.UserRepository;
 import org.userservice.security.interfaces.IUserOperations;
-import org.userservice.security.jwt.TokenBlacklistService;
+import org.userservice.security.jwt.TokenRevocationService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -21,9 +21,9 @@ public class UserAccountManager implements IUserOperations {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
-    @Autowired(required = false)
-    private TokenBlacklistService tokenBlacklistService;
+    private final TokenRevocationService tokenRevocationService;
     private final UserMapper userMapper;
+    private final UserCacheInvalidator userCacheInvalidator;
 
     @Override
     @Transactional
@@ -45,8 +45,7 @@ public class UserAccountManager implements IUserOperations {
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
         user.setPasswordHash(passwordEncoder.encode(newPassword));
         userRepository.save(user);
-        if (tokenBlacklistService != null) {
-            tokenBlacklistService.revokeAll(user);
-        }
+        userCacheInvalidator.evictAfterCommit(user.getId(), user.getUserName());
+        tokenRevocationService.revokeAll(username);
     }
 }
@@ -37,7 +37,8 @@ public class UserDetailsService {
      * Создаёт или обновляет профиль пользователя с указанным ID, включая загрузку фото.
      * <p>
      * В случае ошибок при работе с сервисом фотографий выполняется повторная попытка до 3 раз с экспоненциальной задержкой.
-     * Если профиль для пользователя отсутствует, создаётся новый.
+     * Если профиль для пользователя отсутствует, создаётся новый. Фото сохраняется так же, как
+     * {@link UserPhotoService#uploadUserPhoto}: прежнее заменяется, а ссылка на его объект освобождается.
      * </p>
      *
      * @param userId        ID пользователя
@@ -70,12 +71,11 @@ public class UserDetailsService {
         UserDetails savedDetails = userCrudService.saveUserDetails(userDetails);
         log.info("User details saved with ID: {}", savedDetails.getId());
         if (photoFile != null && !photoFile.isEmpty()) {
-            String filePath = userPhotoService.generateFileName(userId, photoFile);
-            userPhotoService.uploadPhotoToStorage(filePath, photoFile);
-            UserPhoto photo = userPhotoService.createPhotoEntity(savedDetails, filePath);
+            // Ссылка на объект и запись о фото в одной транзакции: неудачная попытка откатывает обе
+            UserPhoto photo = userPhotoService.uploadUserPhoto(userId, photoFile);
             savedDetails.setPhoto(photo);
         }
-        return toUserDetailsDto(userCrudService.saveUserDetails(savedDetails));
+        return toUserDetailsDto(savedDetails);
     }
 
     /**
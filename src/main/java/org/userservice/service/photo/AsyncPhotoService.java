@@ -0,0 +1,233 @@
+package org.userservice.service.photo;
+
+import io.minio.GetObjectArgs;
+import io.minio.MinioAsyncClient;
+import io.minio.PutObjectArgs;
+import io.minio.StatObjectArgs;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.userservice.entity.UserPhoto;
+import org.userservice.exception.FileStorageException;
+import org.userservice.exception.PhotoServiceException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Неблокирующие варианты операций {@link UserPhotoService} поверх {@link MinioAsyncClient}.
+ * <p>
+ * Запросы к MinIO выполняет диспетчер OkHttp, поэтому поток, вызвавший метод, не ждёт хранилище.
+ * Короткая работа после ответа (чтение небольшого объекта в кеш, хеширование и нормализация загрузки,
+ * запись в БД) идёт на общем пуле задач Spring {@code applicationTaskExecutor}. Каждое обращение
+ * к хранилищу ограничено {@code photo.storage.resilience.deadline}.
+ * <p>
+ * Ошибки хранилища завершают future исключением {@link FileStorageException}, как и в синхронном варианте.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "photo.storage.type", havingValue = "minio", matchIfMissing = true)
+public class AsyncPhotoService {
+
+    private final MinioAsyncClient minioAsyncClient;
+    private final UserPhotoService userPhotoService;
+    private final FileValidationService fileValidationService;
+    private final PhotoObjectService photoObjectService;
+    private final PhotoCache photoCache;
+    private final FileStorage fileStorage;
+    private final StorageResilienceProperties resilienceProperties;
+    private final Executor executor;
+
+    @Value("${minio.bucket}")
+    private String bucketName;
+
+    public AsyncPhotoService(MinioAsyncClient minioAsyncClient,
+                             UserPhotoService userPhotoService,
+                             FileValidationService fileValidationService,
+                             PhotoObjectService photoObjectService,
+                             PhotoCache photoCache,
+                             FileStorage fileStorage,
+                             StorageResilienceProperties resilienceProperties,
+                             @Qualifier("applicationTaskExecutor") Executor executor) {
+        this.minioAsyncClient = minioAsyncClient;
+        this.userPhotoService = userPhotoService;
+        this.fileValidationService = fileValidationService;
+        this.photoObjectService = photoObjectService;
+        this.photoCache = photoCache;
+        this.fileStorage = fileStorage;
+        this.resilienceProperties = resilienceProperties;
+        this.executor = executor;
+    }
+
+    /**
+     * Возвращает источник фотографии так же, как {@link UserPhotoService#openPhoto(UserPhoto, int)}:
+     * уменьшенную копию, если она построена, иначе оригинал. Небольшие объекты загружаются в кеш;
+     * для крупных возвращается {@link PhotoSource.Remote}, тело которого нужно открывать
+     * через {@link #openStream(String, long, long)}.
+     *
+     * @param photo сущность {@link UserPhoto}
+     * @param size  желаемая длина большей стороны или {@code null} для оригинала
+     * @return future с источником
+     */
+    public CompletableFuture<PhotoSource> openPhoto(UserPhoto photo, Integer size) {
+        Optional<String> derivative = size == null ? Optional.empty() : userPhotoService.derivativeKey(photo, size);
+        StoredObject original = UserPhotoService.storedObjectOf(photo).orElse(null);
+        if (derivative.isEmpty()) {
+            return open(photo.getFilePath(), original);
+        }
+        return open(derivative.get(), null).exceptionallyCompose(e -> {
+            log.debug("Photo derivative {} unavailable, serving original: {}", derivative.get(), e.getMessage());
+            return open(photo.getFilePath(), original);
+        });
+    }
+
+    /**
+     * @param objectName ключ объекта
+     * @param offset     смещение первого байта
+     * @param length     число байтов
+     * @return future с потоком, который открыт, когда MinIO прислал заголовки ответа; поток закрывает вызывающий код
+     */
+    public CompletableFuture<InputStream> openStream(String objectName, long offset, long length) {
+        return storageCall("get", () -> minioAsyncClient.getObject(GetObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(objectName)
+                        .offset(offset)
+                        .length(length)
+                        .build()))
+                .thenApply(InputStream.class::cast);
+    }
+
+    /**
+     * Асинхронный вариант {@link UserPhotoService#uploadUserPhoto(UUID, MultipartFile)}.
+     * <p>
+     * Объект записывается в хранилище до транзакции (ключ зависит только от содержимого, так что
+     * повторная запись безвредна), а ссылка на него и запись в БД создаются после ответа MinIO
+     * в {@link UserPhotoService#attachStoredPhoto}. Если такое содержимое уже используется, запись пропускается.
+     *
+     * @param userId ID пользователя
+     * @param file   файл изображения
+     * @return future с сохранённой сущностью
+     */
+    public CompletableFuture<UserPhoto> uploadUserPhoto(UUID userId, MultipartFile file) {
+        ImageInfo image = fileValidationService.validateImageFile(file);
+        return CompletableFuture.supplyAsync(() -> prepare(file, image), executor)
+                .thenCompose(photo -> photoObjectService.isReferenced(photo.key())
+                        ? CompletableFuture.completedFuture(photo)
+                        : put(photo).thenApply(ignored -> photo))
+                .thenApplyAsync(photo -> {
+                    try {
+                        return userPhotoService.attachStoredPhoto(userId, photo);
+                    } catch (IOException e) {
+                        throw new PhotoServiceException("Error uploading photo", e);
+                    }
+                }, executor);
+    }
+
+    /**
+     * @param known метаданные из записи в БД или {@code null}, тогда они запрашиваются у MinIO
+     */
+    private CompletableFuture<PhotoSource> open(String objectName, StoredObject known) {
+        Optional<PhotoSource> cached = photoCache.cached(objectName);
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached.get());
+        }
+        CompletableFuture<StoredObject> stat = known != null
+                ? CompletableFuture.completedFuture(known)
+                : storageCall("stat", () -> minioAsyncClient.statObject(StatObjectArgs.builder()
+                                .bucket(bucketName)
+                                .object(objectName)
+                                .build()))
+                        .thenApply(response -> new StoredObject(objectName, response.size(), response.contentType()));
+        return stat.thenCompose(metadata -> {
+            if (!photoCache.cacheable(metadata)) {
+                return CompletableFuture.completedFuture(photoCache.remote(metadata,
+                        (offset, length) -> fileStorage.openStream(objectName, offset, length)));
+            }
+            return openStream(objectName, 0, metadata.size())
+                    .thenApplyAsync(in -> load(objectName, metadata, in), executor);
+        });
+    }
+
+    private PhotoSource load(String objectName, StoredObject metadata, InputStream in) {
+        try (in) {
+            return photoCache.put(objectName, metadata, in);
+        } catch (IOException e) {
+            throw new FileStorageException("Error reading file", e);
+        }
+    }
+
+    private UserPhotoService.PreparedPhoto prepare(MultipartFile file, ImageInfo image) {
+        try {
+            return userPhotoService.prepare(file, image);
+        } catch (IOException e) {
+            throw new PhotoServiceException("Error reading uploaded file", e);
+        }
+    }
+
+    private CompletableFuture<?> put(UserPhotoService.PreparedPhoto photo) {
+        InputStream in;
+        try {
+            in = photo.content().getInputStream();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new PhotoServiceException("Error reading uploaded file", e));
+        }
+        return storageCall("upload", () -> minioAsyncClient.putObject(PutObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(photo.key())
+                        .stream(in, photo.size(), -1)
+                        .contentType(photo.image().mediaType())
+                        .build()))
+                .whenComplete((response, e) -> closeQuietly(in));
+    }
+
+    /**
+     * Запускает обращение к MinIO с ограничением по времени и приводит ошибки к {@link FileStorageException}.
+     */
+    private <T> CompletableFuture<T> storageCall(String operation, AsyncCall<T> call) {
+        CompletableFuture<T> future;
+        try {
+            future = call.start();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(new FileStorageException("Error during " + operation, e));
+        }
+        CompletableFuture<T> bounded = future.copy()
+                .orTimeout(resilienceProperties.getDeadline().toMillis(), TimeUnit.MILLISECONDS);
+        bounded.whenComplete((result, e) -> {
+            if (e != null) {
+                // ответ, пришедший после таймаута, никто не прочитает - соединение нужно вернуть в пул
+                future.thenAccept(AsyncPhotoService::closeQuietly);
+            }
+        });
+        return bounded
+                .exceptionallyCompose(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    return CompletableFuture.failedFuture(cause instanceof FileStorageException
+                            ? cause
+                            : new FileStorageException("Error during " + operation, cause));
+                });
+    }
+
+    private static void closeQuietly(Object resource) {
+        if (resource instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.debug("Failed to close storage response: {}", e.getMessage());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface AsyncCall<T> {
+        CompletableFuture<T> start() throws Exception;
+    }
+}
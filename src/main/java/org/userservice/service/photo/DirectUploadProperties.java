@@ -0,0 +1,17 @@
+package org.userservice.service.photo;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "photo.direct-upload")
+public class DirectUploadProperties {
+    /**
+     * Срок действия ссылки на запись. Неподтверждённые загрузки удаляет {@link PhotoReconciler}.
+     */
+    private Duration urlValidity = Duration.ofMinutes(15);
+}
@@ -0,0 +1,166 @@
+package org.userservice.service.photo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.userservice.dto.photo.DirectUploadDto;
+import org.userservice.entity.UserPhoto;
+import org.userservice.exception.FileStorageException;
+import org.userservice.exception.InvalidFileException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Загрузка фотографии в два шага, без передачи содержимого через сервис.
+ * <p>
+ * {@link #createUpload(UUID)} выдаёт ключ {@code incoming/<userId>/<uuid>} и подписанную ссылку,
+ * по которой клиент сам записывает файл в хранилище запросом {@code PUT}. {@link #confirmUpload(UUID, String)}
+ * проверяет записанный объект так же, как обычную загрузку: размер по метаданным, тип и размеры по заголовку,
+ * прочитанному диапазоном. Принятый объект переносится внутри хранилища под ключ {@code direct/<uuid>.<ext>}
+ * с MIME-типом по сигнатуре, отклонённый удаляется.
+ * <p>
+ * Ссылка на запись действует и после проверки, так что клиент может подменить объект до переноса.
+ * Поэтому MinIO копирует объект только с ETag, полученным при проверке, а размер перенесённого
+ * объекта сверяется ещё раз. Хранилище без ETag ({@link FilesystemFileStorage}) переносит объект
+ * как есть, и проверка повторяется на перенесённом объекте, который клиент изменить уже не может.
+ * <p>
+ * Ссылка на запись не ограничивает размер, поэтому крупный файл отклоняется только при подтверждении.
+ * Неподтверждённые объекты удаляет {@link PhotoReconciler} по истечении {@code grace-period}.
+ * Нормализация ({@link PhotoNormalizer}) и дедупликация по содержимому к таким загрузкам не применяются:
+ * для них пришлось бы прочитать файл целиком.
+ */
+@Service
+@Slf4j
+public class DirectUploadService {
+    static final String INCOMING_PREFIX = "incoming/";
+    private static final String DIRECT_PREFIX = "direct/";
+
+    private final FileStorage fileStorage;
+    private final FileValidationService fileValidationService;
+    private final ImageValidationProperties validationProperties;
+    private final UserPhotoService userPhotoService;
+    private final DirectUploadProperties properties;
+    private final Counter confirmed;
+    private final Counter rejected;
+
+    public DirectUploadService(FileStorage fileStorage,
+                               FileValidationService fileValidationService,
+                               ImageValidationProperties validationProperties,
+                               UserPhotoService userPhotoService,
+                               DirectUploadProperties properties,
+                               MeterRegistry meterRegistry) {
+        this.fileStorage = fileStorage;
+        this.fileValidationService = fileValidationService;
+        this.validationProperties = validationProperties;
+        this.userPhotoService = userPhotoService;
+        this.properties = properties;
+        this.confirmed = outcome(meterRegistry, "confirmed");
+        this.rejected = outcome(meterRegistry, "rejected");
+    }
+
+    /**
+     * @param userId ID пользователя
+     * @return ключ будущего объекта и ссылка для его записи
+     */
+    public DirectUploadDto createUpload(UUID userId) {
+        Duration validity = properties.getUrlValidity();
+        String objectKey = INCOMING_PREFIX + userId + "/" + UUID.randomUUID();
+        Instant expiresAt = Instant.now().plus(validity);
+        String uploadUrl = fileStorage.generatePresignedUploadUrl(objectKey, validity);
+        log.info("Issued direct upload {} for user {}", objectKey, userId);
+        return new DirectUploadDto(objectKey, uploadUrl, expiresAt);
+    }
+
+    /**
+     * Проверяет записанный клиентом объект и делает его фотографией пользователя.
+     *
+     * @param userId    ID пользователя
+     * @param objectKey ключ, выданный {@link #createUpload(UUID)} этому пользователю
+     * @return сохранённая сущность {@link UserPhoto}
+     * @throws InvalidFileException если ключ чужой, объект не записан или не прошёл проверку
+     */
+    public UserPhoto confirmUpload(UUID userId, String objectKey) {
+        String uploadId = uploadId(userId, objectKey);
+        if (!fileStorage.exists(objectKey)) {
+            throw new InvalidFileException("Upload " + objectKey + " not found");
+        }
+        StoredObject object = fileStorage.statFile(objectKey);
+        ImageInfo image = check(object);
+
+        String target = DIRECT_PREFIX + uploadId + image.extension();
+        try {
+            fileStorage.moveFile(objectKey, target, image.mediaType(), object.etag());
+        } catch (FileStorageException e) {
+            if (object.etag() != null && !object.etag().equals(fileStorage.statFile(objectKey).etag())) {
+                rejected.increment();
+                throw changed(objectKey);
+            }
+            throw e;
+        }
+        // Перенесённый объект клиенту уже недоступен для записи, поэтому его проверка окончательная
+        StoredObject moved = fileStorage.statFile(target);
+        if (moved.size() != object.size() || (object.etag() == null && !image.equals(check(moved)))) {
+            rejected.increment();
+            deleteQuietly(target);
+            throw changed(objectKey);
+        }
+        UserPhoto photo = userPhotoService.attachUploadedObject(userId, target,
+                PhotoMetadata.of(image, moved.size(), null));
+        confirmed.increment();
+        log.info("Direct upload {} confirmed as {}", objectKey, target);
+        return photo;
+    }
+
+    /**
+     * Проверяет объект по размеру и заголовку, прочитанному диапазоном; не прошедший проверку удаляется.
+     */
+    private ImageInfo check(StoredObject object) {
+        long headerLength = Math.min(object.size(), validationProperties.getHeaderReadLimit().toBytes());
+        try {
+            return fileValidationService.validateImage(object.size(),
+                    () -> fileStorage.openStream(object.objectName(), 0, headerLength));
+        } catch (InvalidFileException e) {
+            rejected.increment();
+            deleteQuietly(object.objectName());
+            throw e;
+        }
+    }
+
+    /**
+     * Ключ должен быть выдан этому пользователю: {@code incoming/<userId>/<uuid>}.
+     */
+    private static String uploadId(UUID userId, String objectKey) {
+        String prefix = INCOMING_PREFIX + userId + "/";
+        if (objectKey != null && objectKey.startsWith(prefix)) {
+            String uploadId = objectKey.substring(prefix.length());
+            try {
+                if (UUID.fromString(uploadId).toString().equals(uploadId)) {
+                    return uploadId;
+                }
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+        throw new InvalidFileException("Unknown upload " + objectKey);
+    }
+
+    private static InvalidFileException changed(String objectKey) {
+        return new InvalidFileException("Upload " + objectKey + " changed during confirmation");
+    }
+
+    private void deleteQuietly(String objectKey) {
+        try {
+            fileStorage.deleteFile(objectKey);
+        } catch (FileStorageException e) {
+            log.warn("Could not delete rejected upload {}: {}", objectKey, e.getMessage());
+        }
+    }
+
+    private static Counter outcome(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("photo.direct.uploads")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,155 @@
+package org.userservice.service.photo;
+
+import org.userservice.exception.FileStorageException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище файлов фотографий.
+ * <p>
+ * Реализация выбирается свойством {@code photo.storage.type}: {@code minio} ({@link MinioFileStorageService},
+ * по умолчанию) или {@code filesystem} ({@link FilesystemFileStorage}) для одиночного узла и бенчмарков.
+ * Все методы сообщают об ошибках через {@link FileStorageException}.
+ */
+public interface FileStorage {
+
+    /**
+     * Сохраняет файл. Объект становится видимым целиком или не появляется вовсе.
+     *
+     * @param objectName  ключ объекта
+     * @param inputStream содержимое
+     * @param size        размер в байтах
+     * @param contentType MIME-тип
+     * @return ключ объекта
+     */
+    String uploadFile(String objectName, InputStream inputStream, long size, String contentType);
+
+    /**
+     * @param objectName ключ объекта
+     * @return содержимое файла целиком
+     */
+    byte[] getFile(String objectName);
+
+    /**
+     * @param objectName ключ объекта
+     * @return размер и MIME-тип без чтения содержимого
+     */
+    StoredObject statFile(String objectName);
+
+    /**
+     * @param objectName ключ объекта
+     * @return {@code true}, если объект существует
+     */
+    boolean exists(String objectName);
+
+    /**
+     * Открывает поток на диапазон байтов объекта; поток закрывает вызывающий код.
+     *
+     * @param objectName ключ объекта
+     * @param offset     смещение первого байта
+     * @param length     число байтов
+     * @return поток с содержимым диапазона
+     */
+    InputStream openStream(String objectName, long offset, long length);
+
+    /**
+     * Файл объекта на локальном диске, если хранилище его предоставляет. Такой объект можно отдавать
+     * напрямую через {@code FileChannel.transferTo} или sendfile, без кеширования.
+     *
+     * @param objectName ключ объекта
+     * @return путь к файлу или пусто
+     */
+    default Optional<Path> localFile(String objectName) {
+        return Optional.empty();
+    }
+
+    /**
+     * Переносит объект под новый ключ внутри хранилища, не передавая содержимое через сервис.
+     * <p>
+     * Если передан {@code expectedETag}, объект переносится, только пока его ETag совпадает с ним:
+     * содержимое, перезаписанное после проверки, не попадёт под новый ключ. Хранилище без ETag
+     * ({@link StoredObject#etag()} равен {@code null}) переносит то, что лежит под ключом сейчас,
+     * и проверять тогда нужно уже перенесённый объект.
+     *
+     * @param source       текущий ключ объекта
+     * @param target       новый ключ
+     * @param contentType  MIME-тип, с которым объект будет отдаваться
+     * @param expectedETag ETag проверенного содержимого или {@code null}
+     */
+    void moveFile(String source, String target, String contentType, String expectedETag);
+
+    /**
+     * Записывает под новым ключом объекты-части, склеенные по порядку. Части не удаляются.
+     * <p>
+     * По умолчанию части читаются по одной и записываются потоком через {@link #uploadFile}.
+     *
+     * @param sources части с размерами, в порядке следования
+     * @param target  ключ результата
+     */
+    default void composeFile(List<StoredObject> sources, String target) {
+        Iterator<StoredObject> parts = sources.iterator();
+        Enumeration<InputStream> streams = new Enumeration<>() {
+            @Override
+            public boolean hasMoreElements() {
+                return parts.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                StoredObject part = parts.next();
+                return openStream(part.objectName(), 0, part.size());
+            }
+        };
+        long size = sources.stream().mapToLong(StoredObject::size).sum();
+        try (InputStream content = new SequenceInputStream(streams)) {
+            uploadFile(target, content, size, "application/octet-stream");
+        } catch (IOException e) {
+            throw new FileStorageException("Error composing file", e);
+        }
+    }
+
+    /**
+     * @param objectName ключ объекта
+     */
+    void deleteFile(String objectName);
+
+    /**
+     * @param objectNames ключи объектов
+     * @return ключи, которые удалить не удалось
+     */
+    List<String> removeObjects(Collection<String> objectNames);
+
+    /**
+     * Лениво перечисляет все объекты; поток нужно закрыть.
+     *
+     * @param pageSize сколько ключей запрашивать за раз
+     * @return поток объектов
+     */
+    Stream<ListedObject> listObjects(int pageSize);
+
+    /**
+     * @param objectName ключ объекта
+     * @return временная подписанная ссылка на объект
+     */
+    String generatePresignedUrl(String objectName);
+
+    /**
+     * Ссылка, по которой клиент сам записывает объект запросом {@code PUT}, минуя сервис.
+     * Размер и содержимое записанного объекта хранилище не проверяет.
+     *
+     * @param objectName ключ объекта
+     * @param validity   срок действия ссылки
+     * @return временная подписанная ссылка для записи
+     */
+    String generatePresignedUploadUrl(String objectName, Duration validity);
+}
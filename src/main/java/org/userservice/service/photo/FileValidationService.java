@@ -1,28 +1,66 @@
 package org.userservice.service.photo;
 
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import org.userservice.exception.InvalidFileException;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
 
+/**
+ * Проверка загружаемых изображений.
+ * <p>
+ * Тип определяется по сигнатуре файла, а размеры - по заголовку (см. {@link ImageHeaderParser}),
+ * заявленному клиентом {@code Content-Type} сервис не доверяет. Изображения больше
+ * {@code photo.validation.max-pixels} отклоняются до декодирования.
+ */
 @Service
+@RequiredArgsConstructor
 public class FileValidationService {
-    private static final List<String> ALLOWED_TYPES = List.of("image/jpeg", "image/png", "image/gif");
-    private static final long MAX_FILE_SIZE = 5 * 1024 * 1024;
+    public static final long MAX_FILE_SIZE = 5 * 1024 * 1024;
 
-    public void validateImageFile(MultipartFile file) {
-        if (file.isEmpty()) {
+    private final ImageValidationProperties properties;
+
+    /**
+     * @param file загружаемый файл
+     * @return тип и размеры изображения по его заголовку
+     * @throws InvalidFileException если файл пуст, велик, не является JPG, PNG или GIF или превышает лимит пикселей
+     */
+    public ImageInfo validateImageFile(MultipartFile file) {
+        return validateImage(file.getSize(), file);
+    }
+
+    /**
+     * Те же проверки для содержимого, которое уже лежит в хранилище: читается только заголовок.
+     *
+     * @param size    размер файла в байтах
+     * @param content источник содержимого; достаточно первых {@code photo.validation.header-read-limit} байт
+     * @return тип и размеры изображения по его заголовку
+     * @throws InvalidFileException если файл пуст, велик, не является JPG, PNG или GIF или превышает лимит пикселей
+     */
+    public ImageInfo validateImage(long size, InputStreamSource content) {
+        if (size == 0) {
             throw new InvalidFileException("File is empty");
         }
 
-        if (file.getSize() > MAX_FILE_SIZE) {
+        if (size > MAX_FILE_SIZE) {
             throw new InvalidFileException("File size exceeds maximum limit of 5MB");
         }
 
-        String contentType = file.getContentType();
-        if (contentType == null || !ALLOWED_TYPES.contains(contentType)) {
-            throw new InvalidFileException("Only JPG, PNG and GIF images are allowed");
+        ImageInfo image;
+        try (InputStream inputStream = content.getInputStream()) {
+            image = ImageHeaderParser.parse(inputStream, properties.getHeaderReadLimit().toBytes())
+                    .orElseThrow(() -> new InvalidFileException("Only JPG, PNG and GIF images are allowed"));
+        } catch (IOException e) {
+            throw new InvalidFileException("File cannot be read");
+        }
+
+        if (image.pixels() > properties.getMaxPixels()) {
+            throw new InvalidFileException("Image dimensions " + image.width() + "x" + image.height()
+                    + " exceed the limit of " + properties.getMaxPixels() + " pixels");
         }
+        return image;
     }
 }
@@ -0,0 +1,331 @@
+package org.userservice.service.photo;
+
+import com.google.common.io.ByteStreams;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriUtils;
+import org.userservice.exception.FileStorageException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище фотографий в локальном каталоге {@code photo.storage.filesystem.root}.
+ * <p>
+ * Ключ объекта - относительный путь файла. Запись идёт во временный файл в том же разделе
+ * через {@link FileChannel#transferFrom} и публикуется атомарным переименованием, так что читатели
+ * видят файл либо целиком, либо никак. Файлы отдаются без копирования в память: {@link PhotoCache}
+ * возвращает их как дисковый источник ({@link FileChannel#transferTo}, sendfile в Tomcat).
+ * <p>
+ * Вместо presigned URL MinIO выдаются ссылки на {@code /api/files/...}, подписанные HMAC-SHA256
+ * с ключом {@code url-secret}; в пределах окна {@code url-window} ссылка на файл не меняется.
+ * Ссылки на запись подписываются отдельно (с префиксом метода), так что ссылкой на чтение файл не перезаписать.
+ * MIME-тип определяется по расширению ключа: сервис всегда выбирает его по сигнатуре файла.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "photo.storage.type", havingValue = "filesystem")
+public class FilesystemFileStorage implements FileStorage {
+
+    static final String FILES_PATH = "/api/files/";
+    private static final String INCOMING = ".incoming";
+    private static final String HMAC = "HmacSHA256";
+    private static final String UPLOAD_PREFIX = "PUT\n";
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "jpg", "image/jpeg",
+            "jpeg", "image/jpeg",
+            "png", "image/png",
+            "gif", "image/gif");
+
+    private final FilesystemStorageProperties properties;
+    private final Path root;
+    private final Path incoming;
+    private final SecretKeySpec signingKey;
+    private final Clock clock;
+
+    public FilesystemFileStorage(FilesystemStorageProperties properties) {
+        this(properties, Clock.systemUTC());
+    }
+
+    FilesystemFileStorage(FilesystemStorageProperties properties, Clock clock) {
+        this.properties = properties;
+        this.root = properties.getRoot().toAbsolutePath().normalize();
+        this.incoming = root.resolve(INCOMING);
+        this.clock = clock;
+        byte[] secret;
+        if (properties.getUrlSecret() == null || properties.getUrlSecret().isBlank()) {
+            log.warn("photo.storage.filesystem.url-secret is not set, file links will not survive a restart");
+            secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+        } else {
+            secret = properties.getUrlSecret().getBytes(StandardCharsets.UTF_8);
+        }
+        this.signingKey = new SecretKeySpec(secret, HMAC);
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            Files.createDirectories(incoming);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot prepare photo storage directory " + root, e);
+        }
+    }
+
+    @Override
+    @Timed("user.photo.upload")
+    public String uploadFile(String objectName, InputStream inputStream, long size, String contentType) {
+        Path target = resolve(objectName);
+        Path temporary = null;
+        try {
+            Files.createDirectories(target.getParent());
+            temporary = Files.createTempFile(incoming, "upload-", ".part");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE);
+                 ReadableByteChannel source = Channels.newChannel(inputStream)) {
+                long written = 0;
+                while (written < size) {
+                    long transferred = channel.transferFrom(source, written, size - written);
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    written += transferred;
+                }
+                if (written != size) {
+                    throw new IOException("Expected " + size + " bytes, got " + written);
+                }
+                channel.force(false);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return objectName;
+        } catch (IOException e) {
+            throw new FileStorageException("Error uploading file", e);
+        } finally {
+            if (temporary != null) {
+                deleteQuietly(temporary);
+            }
+        }
+    }
+
+    @Override
+    @Timed("user.photo.get")
+    public byte[] getFile(String objectName) {
+        try {
+            return Files.readAllBytes(resolve(objectName));
+        } catch (IOException e) {
+            throw new FileStorageException("The User has no photo ", e);
+        }
+    }
+
+    @Override
+    @Timed("user.photo.stat")
+    public StoredObject statFile(String objectName) {
+        try {
+            return new StoredObject(objectName, Files.size(resolve(objectName)), contentTypeOf(objectName));
+        } catch (IOException e) {
+            throw new FileStorageException("The User has no photo ", e);
+        }
+    }
+
+    @Override
+    public boolean exists(String objectName) {
+        return Files.isRegularFile(resolve(objectName));
+    }
+
+    @Override
+    @Timed("user.photo.get")
+    public InputStream openStream(String objectName, long offset, long length) {
+        try {
+            FileChannel channel = FileChannel.open(resolve(objectName), StandardOpenOption.READ);
+            channel.position(offset);
+            return ByteStreams.limit(Channels.newInputStream(channel), length);
+        } catch (IOException e) {
+            throw new FileStorageException("The User has no photo ", e);
+        }
+    }
+
+    @Override
+    public Optional<Path> localFile(String objectName) {
+        Path path = resolve(objectName);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    /**
+     * Переименование в пределах корня атомарно. Время изменения обновляется, чтобы
+     * {@link PhotoReconciler} отсчитывал срок от переноса, как для нового объекта MinIO.
+     */
+    @Override
+    @Timed("user.photo.move")
+    public void moveFile(String source, String target, String contentType, String expectedETag) {
+        Path targetPath = resolve(target);
+        try {
+            Files.createDirectories(targetPath.getParent());
+            Files.move(resolve(source), targetPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Files.setLastModifiedTime(targetPath, FileTime.from(clock.instant()));
+        } catch (IOException e) {
+            throw new FileStorageException("Error moving file", e);
+        }
+    }
+
+    @Override
+    @Timed("user.photo.delete")
+    public void deleteFile(String objectName) {
+        try {
+            Files.deleteIfExists(resolve(objectName));
+        } catch (IOException e) {
+            throw new FileStorageException("Error deleting file", e);
+        }
+    }
+
+    @Override
+    @Timed("user.photo.delete")
+    public List<String> removeObjects(Collection<String> objectNames) {
+        List<String> failed = new ArrayList<>();
+        for (String objectName : objectNames) {
+            try {
+                Files.deleteIfExists(resolve(objectName));
+            } catch (IOException | FileStorageException e) {
+                log.warn("Failed to delete {}: {}", objectName, e.getMessage());
+                failed.add(objectName);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Обход каталога ленивый, поэтому размер страницы не важен.
+     */
+    @Override
+    @Timed("user.photo.list")
+    public Stream<ListedObject> listObjects(int pageSize) {
+        try {
+            return Files.find(root, Integer.MAX_VALUE,
+                            (path, attributes) -> attributes.isRegularFile() && !path.startsWith(incoming))
+                    .map(this::toListedObject);
+        } catch (IOException e) {
+            throw new FileStorageException("Error listing files", e);
+        }
+    }
+
+    @Override
+    public String generatePresignedUrl(String objectName) {
+        long window = properties.getUrlWindow().toSeconds();
+        long windowStart = clock.instant().getEpochSecond() / window * window;
+        long expires = windowStart + window + properties.getUrlValidity().toSeconds();
+        return properties.getBaseUrl() + FILES_PATH + UriUtils.encodePath(objectName, StandardCharsets.UTF_8)
+                + "?expires=" + expires + "&signature=" + sign(objectName, expires);
+    }
+
+    @Override
+    public String generatePresignedUploadUrl(String objectName, Duration validity) {
+        long expires = clock.instant().plus(validity).getEpochSecond();
+        return properties.getBaseUrl() + FILES_PATH + UriUtils.encodePath(objectName, StandardCharsets.UTF_8)
+                + "?expires=" + expires + "&signature=" + sign(UPLOAD_PREFIX + objectName, expires);
+    }
+
+    /**
+     * Проверяет ссылку, выданную {@link #generatePresignedUrl(String)}.
+     *
+     * @param objectName ключ объекта
+     * @param expires    срок действия (секунды эпохи)
+     * @param signature  подпись из ссылки
+     * @return {@code true}, если подпись верна и срок не истёк
+     */
+    public boolean verifySignature(String objectName, long expires, String signature) {
+        if (clock.instant().isAfter(Instant.ofEpochSecond(expires))) {
+            return false;
+        }
+        return MessageDigest.isEqual(sign(objectName, expires).getBytes(StandardCharsets.US_ASCII),
+                signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Проверяет ссылку на запись, выданную {@link #generatePresignedUploadUrl(String, Duration)}.
+     *
+     * @param objectName ключ объекта
+     * @param expires    срок действия (секунды эпохи)
+     * @param signature  подпись из ссылки
+     * @return {@code true}, если подпись верна и срок не истёк
+     */
+    public boolean verifyUploadSignature(String objectName, long expires, String signature) {
+        return verifySignature(UPLOAD_PREFIX + objectName, expires, signature);
+    }
+
+    private String sign(String objectName, long expires) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(signingKey);
+            byte[] digest = mac.doFinal((objectName + "\n" + expires).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new FileStorageException("Error signing file URL", e);
+        }
+    }
+
+    /**
+     * Путь файла объекта; ключи, выходящие за пределы корня, отклоняются.
+     */
+    private Path resolve(String objectName) {
+        Path path = root.resolve(objectName).normalize();
+        if (!path.startsWith(root) || path.startsWith(incoming) || path.equals(root)) {
+            throw new FileStorageException("Invalid object name " + objectName, null);
+        }
+        return path;
+    }
+
+    private ListedObject toListedObject(Path path) {
+        String objectName = root.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "/");
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new ListedObject(objectName, attributes.size(), attributes.lastModifiedTime().toInstant());
+        } catch (NoSuchFileException e) {
+            // удалён во время обхода; свежая отметка времени не даёт сверке его трогать
+            return new ListedObject(objectName, 0, Instant.now());
+        } catch (IOException e) {
+            throw new FileStorageException("Error listing files", e);
+        }
+    }
+
+    private static String contentTypeOf(String objectName) {
+        String extension = objectName.substring(objectName.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return CONTENT_TYPES.getOrDefault(extension, "application/octet-stream");
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete temporary file {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.userservice.service.photo;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "photo.storage.filesystem")
+public class FilesystemStorageProperties {
+    private Path root = Path.of(System.getProperty("java.io.tmpdir"), "user-photos");
+    /**
+     * Адрес сервиса, от которого строятся подписанные ссылки на файлы.
+     */
+    private String baseUrl = "http://localhost:8080";
+    /**
+     * Ключ HMAC для подписи ссылок; должен совпадать на всех узлах.
+     */
+    private String urlSecret;
+    /**
+     * Минимальный оставшийся срок действия выданной ссылки.
+     */
+    private Duration urlValidity = Duration.ofHours(3);
+    /**
+     * В пределах окна ссылка на файл не меняется (как у {@link PresignedUrlGenerator}).
+     */
+    private Duration urlWindow = Duration.ofHours(1);
+}
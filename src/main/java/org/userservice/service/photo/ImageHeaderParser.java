@@ -0,0 +1,248 @@
+package org.userservice.service.photo;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Определение типа и размеров JPEG, PNG и GIF по заголовку, без декодирования изображения.
+ * <p>
+ * Тип берётся из сигнатуры (magic bytes), а не из заявленного клиентом {@code Content-Type}.
+ * Размеры PNG и GIF лежат в первых байтах файла. В JPEG они записаны в сегменте SOF, перед которым
+ * может быть EXIF с миниатюрой, поэтому тела предшествующих сегментов пропускаются без чтения в память.
+ * Всего просматривается не больше {@code limit} байт.
+ * <p>
+ * Для JPEG отдельно читается тег Orientation из EXIF: {@code ImageIO} его не учитывает.
+ */
+final class ImageHeaderParser {
+
+    static final String JPEG = "image/jpeg";
+    static final String PNG = "image/png";
+    static final String GIF = "image/gif";
+
+    /**
+     * Значение тега Orientation, при котором изображение не нужно поворачивать.
+     */
+    static final int NORMAL_ORIENTATION = 1;
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] EXIF_HEADER = {'E', 'x', 'i', 'f', 0, 0};
+    private static final int ORIENTATION_TAG = 0x0112;
+
+    private ImageHeaderParser() {
+    }
+
+    /**
+     * @param in    поток с начала файла; закрывает вызывающий код
+     * @param limit сколько байт можно просмотреть
+     * @return тип и размеры или пусто, если формат не распознан или заголовок повреждён
+     * @throws IOException при ошибке чтения
+     */
+    static Optional<ImageInfo> parse(InputStream in, long limit) throws IOException {
+        BoundedInput input = new BoundedInput(in, limit);
+        try {
+            int first = input.readUnsignedByte();
+            int second = input.readUnsignedByte();
+            if (first == 0xFF && second == 0xD8) {
+                return parseJpeg(input);
+            }
+            if (first == (PNG_SIGNATURE[0] & 0xFF) && second == PNG_SIGNATURE[1]) {
+                return parsePng(input);
+            }
+            if (first == 'G' && second == 'I') {
+                return parseGif(input);
+            }
+            return Optional.empty();
+        } catch (EOFException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Значение тега EXIF Orientation (1-8) из сегмента APP1 JPEG.
+     *
+     * @param in    поток с начала файла; закрывает вызывающий код
+     * @param limit сколько байт можно просмотреть
+     * @return ориентация или {@link #NORMAL_ORIENTATION}, если файл не JPEG, EXIF нет или он повреждён
+     * @throws IOException при ошибке чтения
+     */
+    static int orientation(InputStream in, long limit) throws IOException {
+        BoundedInput input = new BoundedInput(in, limit);
+        try {
+            if (input.readUnsignedByte() != 0xFF || input.readUnsignedByte() != 0xD8) {
+                return NORMAL_ORIENTATION;
+            }
+            while (true) {
+                if (input.readUnsignedByte() != 0xFF) {
+                    return NORMAL_ORIENTATION;
+                }
+                int type = input.readUnsignedByte();
+                while (type == 0xFF) {
+                    type = input.readUnsignedByte();
+                }
+                if (type == 0xD8 || type == 0x01 || (type >= 0xD0 && type <= 0xD7)) {
+                    continue;
+                }
+                int length = type == 0xD9 || type == 0xDA || isStartOfFrame(type) ? -1 : input.readUnsignedShort();
+                if (length < 2) {
+                    return NORMAL_ORIENTATION; // EXIF всегда стоит перед кадром
+                }
+                if (type == 0xE1) {
+                    byte[] segment = new byte[length - 2];
+                    input.readFully(segment);
+                    if (startsWith(segment, EXIF_HEADER)) {
+                        return exifOrientation(segment);
+                    }
+                } else {
+                    input.skipFully(length - 2);
+                }
+            }
+        } catch (EOFException e) {
+            return NORMAL_ORIENTATION;
+        }
+    }
+
+    /**
+     * Ищет Orientation среди записей IFD0 структуры TIFF, которая следует за заголовком {@code Exif\0\0}.
+     */
+    private static int exifOrientation(byte[] segment) {
+        ByteBuffer tiff = ByteBuffer.wrap(segment, EXIF_HEADER.length, segment.length - EXIF_HEADER.length).slice();
+        try {
+            if (tiff.get(0) == 'I' && tiff.get(1) == 'I') {
+                tiff.order(ByteOrder.LITTLE_ENDIAN);
+            } else if (tiff.get(0) != 'M' || tiff.get(1) != 'M') {
+                return NORMAL_ORIENTATION;
+            }
+            int ifd = tiff.getInt(4);
+            int entries = Short.toUnsignedInt(tiff.getShort(ifd));
+            for (int i = 0; i < entries; i++) {
+                int entry = ifd + 2 + i * 12;
+                if (Short.toUnsignedInt(tiff.getShort(entry)) == ORIENTATION_TAG) {
+                    int value = Short.toUnsignedInt(tiff.getShort(entry + 8));
+                    return value >= 1 && value <= 8 ? value : NORMAL_ORIENTATION;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // смещения указывают за пределы сегмента
+        }
+        return NORMAL_ORIENTATION;
+    }
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        return data.length >= prefix.length && Arrays.equals(data, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    private static Optional<ImageInfo> parsePng(BoundedInput input) throws IOException {
+        for (int i = 2; i < PNG_SIGNATURE.length; i++) {
+            if (input.readUnsignedByte() != (PNG_SIGNATURE[i] & 0xFF)) {
+                return Optional.empty();
+            }
+        }
+        input.readInt(); // длина IHDR
+        if (input.readInt() != 0x49484452) { // "IHDR" всегда первый
+            return Optional.empty();
+        }
+        return dimensions(PNG, input.readInt(), input.readInt());
+    }
+
+    private static Optional<ImageInfo> parseGif(BoundedInput input) throws IOException {
+        byte[] rest = new byte[4];
+        input.readFully(rest);
+        String version = new String(rest, StandardCharsets.US_ASCII);
+        if (!version.equals("F87a") && !version.equals("F89a")) {
+            return Optional.empty();
+        }
+        int width = input.readUnsignedByte() | input.readUnsignedByte() << 8;
+        int height = input.readUnsignedByte() | input.readUnsignedByte() << 8;
+        return dimensions(GIF, width, height);
+    }
+
+    private static Optional<ImageInfo> parseJpeg(BoundedInput input) throws IOException {
+        while (true) {
+            int marker = input.readUnsignedByte();
+            if (marker != 0xFF) {
+                return Optional.empty();
+            }
+            int type = input.readUnsignedByte();
+            while (type == 0xFF) { // заполняющие байты
+                type = input.readUnsignedByte();
+            }
+            if (type == 0xD8 || type == 0x01 || (type >= 0xD0 && type <= 0xD7)) {
+                continue; // маркеры без длины
+            }
+            if (type == 0xD9 || type == 0xDA) {
+                return Optional.empty(); // конец файла или начало данных, а SOF так и не встретился
+            }
+            int length = input.readUnsignedShort();
+            if (length < 2) {
+                return Optional.empty();
+            }
+            if (isStartOfFrame(type)) {
+                input.readUnsignedByte(); // точность
+                int height = input.readUnsignedShort();
+                int width = input.readUnsignedShort();
+                return dimensions(JPEG, width, height);
+            }
+            input.skipFully(length - 2);
+        }
+    }
+
+    private static boolean isStartOfFrame(int type) {
+        return type >= 0xC0 && type <= 0xCF && type != 0xC4 && type != 0xC8 && type != 0xCC;
+    }
+
+    private static Optional<ImageInfo> dimensions(String mediaType, int width, int height) {
+        return width > 0 && height > 0 ? Optional.of(new ImageInfo(mediaType, width, height)) : Optional.empty();
+    }
+
+    /**
+     * Поток, который отказывается читать и пропускать дальше лимита.
+     */
+    private static final class BoundedInput {
+        private final DataInputStream in;
+        private long remaining;
+
+        BoundedInput(InputStream in, long limit) {
+            this.in = new DataInputStream(in);
+            this.remaining = limit;
+        }
+
+        int readUnsignedByte() throws IOException {
+            consume(1);
+            return in.readUnsignedByte();
+        }
+
+        int readUnsignedShort() throws IOException {
+            consume(2);
+            return in.readUnsignedShort();
+        }
+
+        int readInt() throws IOException {
+            consume(4);
+            return in.readInt();
+        }
+
+        void readFully(byte[] buffer) throws IOException {
+            consume(buffer.length);
+            in.readFully(buffer);
+        }
+
+        void skipFully(int count) throws IOException {
+            consume(count);
+            in.skipNBytes(count);
+        }
+
+        private void consume(int count) throws EOFException {
+            remaining -= count;
+            if (remaining < 0) {
+                throw new EOFException("Image header exceeds the read limit");
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.userservice.service.photo;
+
+/**
+ * Тип и размеры изображения, определённые по заголовку файла.
+ *
+ * @param mediaType MIME-тип по сигнатуре файла
+ * @param width     ширина в пикселях
+ * @param height    высота в пикселях
+ */
+public record ImageInfo(String mediaType, int width, int height) {
+
+    public long pixels() {
+        return (long) width * height;
+    }
+
+    /**
+     * @return расширение ключа объекта для этого типа
+     */
+    public String extension() {
+        return switch (mediaType) {
+            case ImageHeaderParser.PNG -> ".png";
+            case ImageHeaderParser.GIF -> ".gif";
+            default -> ".jpg";
+        };
+    }
+}
@@ -0,0 +1,20 @@
+package org.userservice.service.photo;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "photo.validation")
+public class ImageValidationProperties {
+    /**
+     * Предельное число пикселей: столько займёт декодированное изображение (4 байта на пиксель).
+     */
+    private long maxPixels = 25_000_000;
+    /**
+     * Сколько байт от начала файла можно просмотреть в поисках размеров.
+     */
+    private DataSize headerReadLimit = DataSize.ofKilobytes(256);
+}
@@ -0,0 +1,13 @@
+package org.userservice.service.photo;
+
+import java.time.Instant;
+
+/**
+ * Объект из листинга бакета.
+ *
+ * @param objectName   ключ объекта
+ * @param size         размер в байтах
+ * @param lastModified время последней записи
+ */
+public record ListedObject(String objectName, long size, Instant lastModified) {
+}
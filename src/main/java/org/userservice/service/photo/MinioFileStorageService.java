@@ -1,22 +1,30 @@
 package org.userservice.service.photo;
 
 import io.minio.*;
-import io.minio.http.Method;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.userservice.exception.FileStorageException;
-import org.userservice.exception.PhotoServiceException;
 import io.minio.SetBucketPolicyArgs;
 import io.minio.MinioClient;
+import io.minio.errors.ErrorResponseException;
+
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
 
 import java.io.InputStream;
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import org.springframework.retry.annotation.Retryable;
-import org.springframework.retry.annotation.Backoff;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import io.micrometer.core.annotation.Timed;
 
@@ -26,14 +34,18 @@ import io.micrometer.core.annotation.Timed;
  * Обеспечивает создание бакета, загрузку, получение и удаление файлов (например, фото пользователей),
  * а также генерацию временных подписанных URL для доступа к файлам.
  * <p>
- * Включена поддержка повторных попыток (retry) с экспоненциальной задержкой и circuit breaker для устойчивости.
+ * Обращения идут через {@link StorageCallExecutor}: повторы в пределах общего крайнего срока запроса, bulkhead
+ * и hedging для чтений. Поверх работает circuit breaker.
  * Метрики операций собираются с помощью Micrometer.
  */
 @Service
 @Slf4j
 @RequiredArgsConstructor
-public class MinioFileStorageService {
+@ConditionalOnProperty(name = "photo.storage.type", havingValue = "minio", matchIfMissing = true)
+public class MinioFileStorageService implements FileStorage {
     private final MinioClient minioClient;
+    private final PresignedUrlGenerator presignedUrlGenerator;
+    private final StorageCallExecutor calls;
 
     @Value("${minio.bucket}")
     private String bucketName;
@@ -91,7 +103,7 @@ public class MinioFileStorageService {
 
     /**
      * Загружает файл в MinIO.
-     * Операция повторяется при ошибках с экспоненциальной задержкой.
+     * Операция повторяется при сбоях, только если поток можно перечитать ({@link InputStream#markSupported()}).
      *
      * @param objectName  имя объекта в бакете
      * @param inputStream поток файла
@@ -100,16 +112,15 @@ public class MinioFileStorageService {
      * @return имя загруженного объекта
      * @throws FileStorageException при ошибках загрузки
      */
-    @Retryable(
-            value = {PhotoServiceException.class, FileStorageException.class},
-            maxAttempts = 5,
-            backoff = @Backoff(delay = 1000, multiplier = 2, maxDelay = 10000)
-    )
     @CircuitBreaker(name = "fileStorage", fallbackMethod = "uploadFallback")
     @Timed("user.photo.upload")
+    @Override
     public String uploadFile(String objectName, InputStream inputStream, long size, String contentType) {
         log.info("Uploading file: {}", objectName);
-        try {
+        StorageCallExecutor.StorageCall<String> put = () -> {
+            if (inputStream.markSupported()) {
+                inputStream.reset();
+            }
             minioClient.putObject(
                     PutObjectArgs.builder()
                             .bucket(bucketName)
@@ -119,6 +130,13 @@ public class MinioFileStorageService {
                             .build()
             );
             return objectName;
+        };
+        try {
+            if (inputStream.markSupported()) {
+                inputStream.mark((int) Math.min(size + 1, Integer.MAX_VALUE));
+                return calls.call("upload", put);
+            }
+            return calls.callOnce("upload", put);
         } catch (Exception e) {
             throw new FileStorageException("Error uploading file", e);
         }
@@ -126,78 +144,291 @@ public class MinioFileStorageService {
 
     /**
      * Получает файл из MinIO.
-     * Операция повторяется при ошибках с экспоненциальной задержкой.
+     * Операция повторяется при сбоях; если ответ задерживается дольше p95, параллельно запрашивается второй раз.
      *
      * @param objectName имя объекта
      * @return массив байтов файла
      * @throws FileStorageException если файл не найден или произошла ошибка
      */
-    @Retryable(
-            value = {PhotoServiceException.class},
-            maxAttempts = 5,
-            backoff = @Backoff(delay = 1000, multiplier = 2, maxDelay = 10000)
-    )
     @CircuitBreaker(name = "fileStorage", fallbackMethod = "getPhotoFallback")
     @Timed("user.photo.get")
+    @Override
     public byte[] getFile(String objectName) {
-        try (InputStream inputStream = minioClient.getObject(
-                GetObjectArgs.builder()
-                        .bucket(bucketName)
-                        .object(objectName)
-                        .build())) {
-            return inputStream.readAllBytes();
+        try {
+            return calls.hedged("get", () -> {
+                try (InputStream inputStream = minioClient.getObject(
+                        GetObjectArgs.builder()
+                                .bucket(bucketName)
+                                .object(objectName)
+                                .build())) {
+                    return inputStream.readAllBytes();
+                }
+            });
         } catch (Exception e) {
             throw new FileStorageException("The User has no photo ", e);
         }
     }
 
+    /**
+     * Возвращает размер и MIME-тип объекта без чтения содержимого.
+     *
+     * @param objectName имя объекта
+     * @return метаданные объекта
+     * @throws FileStorageException если объект не найден или произошла ошибка
+     */
+    @CircuitBreaker(name = "fileStorage", fallbackMethod = "statFallback")
+    @Timed("user.photo.stat")
+    @Override
+    public StoredObject statFile(String objectName) {
+        try {
+            StatObjectResponse stat = calls.call("stat", () -> minioClient.statObject(
+                    StatObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(objectName)
+                            .build()));
+            return new StoredObject(objectName, stat.size(), stat.contentType(), stat.etag());
+        } catch (Exception e) {
+            throw new FileStorageException("The User has no photo ", e);
+        }
+    }
+
+    /**
+     * Проверяет наличие объекта. Отсутствие объекта - штатный ответ, поэтому метод не проходит
+     * через circuit breaker и не засчитывает его как сбой хранилища.
+     *
+     * @param objectName имя объекта
+     * @return {@code true}, если объект существует
+     * @throws FileStorageException при ошибках обращения к хранилищу
+     */
+    @Timed("user.photo.stat")
+    @Override
+    public boolean exists(String objectName) {
+        try {
+            calls.call("stat", () -> minioClient.statObject(
+                    StatObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(objectName)
+                            .build()));
+            return true;
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                return false;
+            }
+            throw new FileStorageException("Error checking file", e);
+        } catch (Exception e) {
+            throw new FileStorageException("Error checking file", e);
+        }
+    }
+
+    /**
+     * Открывает поток на диапазон байтов объекта. Содержимое не буферизуется в памяти,
+     * поток закрывает вызывающий код.
+     *
+     * @param objectName имя объекта
+     * @param offset     смещение первого байта
+     * @param length     число байтов
+     * @return поток с содержимым диапазона
+     * @throws FileStorageException если объект не найден или произошла ошибка
+     */
+    @CircuitBreaker(name = "fileStorage", fallbackMethod = "openStreamFallback")
+    @Timed("user.photo.get")
+    @Override
+    public InputStream openStream(String objectName, long offset, long length) {
+        try {
+            return calls.call("open", () -> minioClient.getObject(
+                    GetObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(objectName)
+                            .offset(offset)
+                            .length(length)
+                            .build()));
+        } catch (Exception e) {
+            throw new FileStorageException("The User has no photo ", e);
+        }
+    }
+
+    /**
+     * Переносит объект копированием на стороне MinIO ({@code CopyObject}) с последующим удалением исходного.
+     * Метаданные заменяются, так что {@code Content-Type}, указанный клиентом при записи, не сохраняется.
+     * Ожидаемый ETag передаётся условием копирования ({@code x-amz-copy-source-if-match}), так что
+     * перезаписанный после проверки объект не копируется. Если удалить исходный объект не удалось,
+     * он остаётся для {@link PhotoReconciler}.
+     *
+     * @param source       текущее имя объекта
+     * @param target       новое имя объекта
+     * @param contentType  MIME-тип нового объекта
+     * @param expectedETag ETag исходного объекта на момент проверки или {@code null}
+     * @throws FileStorageException если копирование не удалось или ETag не совпал
+     */
+    @CircuitBreaker(name = "fileStorage", fallbackMethod = "moveFallback")
+    @Timed("user.photo.move")
+    @Override
+    public void moveFile(String source, String target, String contentType, String expectedETag) {
+        CopySource.Builder copySource = CopySource.builder().bucket(bucketName).object(source);
+        if (expectedETag != null) {
+            copySource.matchETag(expectedETag);
+        }
+        try {
+            calls.call("copy", () -> minioClient.copyObject(
+                    CopyObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(target)
+                            .source(copySource.build())
+                            .metadataDirective(Directive.REPLACE)
+                            .headers(Map.of("Content-Type", contentType))
+                            .build()));
+        } catch (Exception e) {
+            throw new FileStorageException("Error moving file", e);
+        }
+        try {
+            deleteFile(source);
+        } catch (FileStorageException e) {
+            log.warn("Moved {} to {}, but the source was not deleted: {}", source, target, e.getMessage());
+        }
+    }
+
+    /**
+     * Склеивает части на стороне MinIO ({@code ComposeObject}, т.е. {@code UploadPartCopy}), если это позволяет
+     * S3: все части, кроме последней, не меньше {@link ObjectWriteArgs#MIN_MULTIPART_SIZE} (5 МиБ). Одна часть
+     * копируется целиком. Иначе части читаются и записываются заново, как в {@link FileStorage#composeFile}.
+     *
+     * @param sources части с размерами, в порядке следования
+     * @param target  имя результата
+     * @throws FileStorageException при ошибках обращения к хранилищу
+     */
+    @Timed("user.photo.compose")
+    @Override
+    public void composeFile(List<StoredObject> sources, String target) {
+        boolean composable = sources.subList(0, Math.max(0, sources.size() - 1)).stream()
+                .allMatch(part -> part.size() >= ObjectWriteArgs.MIN_MULTIPART_SIZE);
+        if (!composable) {
+            log.debug("Parts of {} are below the S3 multipart minimum, composing through the service", target);
+            FileStorage.super.composeFile(sources, target);
+            return;
+        }
+        List<ComposeSource> parts = sources.stream()
+                .map(part -> ComposeSource.builder().bucket(bucketName).object(part.objectName()).build())
+                .toList();
+        try {
+            calls.call("compose", () -> minioClient.composeObject(
+                    ComposeObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(target)
+                            .sources(parts)
+                            .build()));
+        } catch (Exception e) {
+            throw new FileStorageException("Error composing file", e);
+        }
+    }
 
     /**
      * Удаляет файл из MinIO.
-     * Операция повторяется при ошибках с экспоненциальной задержкой.
+     * Операция повторяется при сбоях в пределах крайнего срока.
      *
      * @param objectName имя объекта
      * @throws FileStorageException при ошибках удаления
      */
-    @Retryable(
-            value = {PhotoServiceException.class},
-            maxAttempts = 5,
-            backoff = @Backoff(delay = 1000, multiplier = 2, maxDelay = 10000)
-    )
     @CircuitBreaker(name = "fileStorage", fallbackMethod = "deletePhotoFallback")
     @Timed("user.photo.delete")
+    @Override
     public void deleteFile(String objectName) {
         try {
-            minioClient.removeObject(
-                    RemoveObjectArgs.builder()
-                            .bucket(bucketName)
-                            .object(objectName)
-                            .build());
+            calls.call("delete", () -> {
+                minioClient.removeObject(
+                        RemoveObjectArgs.builder()
+                                .bucket(bucketName)
+                                .object(objectName)
+                                .build());
+                return null;
+            });
         } catch (Exception e) {
             throw new FileStorageException("Error deleting file", e);
         }
     }
 
+    /**
+     * Лениво перечисляет все объекты бакета: следующая страница листинга запрашивается,
+     * только когда дочитана предыдущая, поэтому память не зависит от размера бакета.
+     * Поток нужно закрыть или дочитать.
+     *
+     * @param pageSize число ключей в одном запросе листинга
+     * @return поток объектов в лексикографическом порядке ключей
+     * @throws FileStorageException при ошибках листинга
+     */
+    @Timed("user.photo.list")
+    @Override
+    public Stream<ListedObject> listObjects(int pageSize) {
+        Iterable<Result<Item>> pages = minioClient.listObjects(
+                ListObjectsArgs.builder()
+                        .bucket(bucketName)
+                        .recursive(true)
+                        .maxKeys(pageSize)
+                        .build());
+        return StreamSupport.stream(pages.spliterator(), false)
+                .map(result -> {
+                    try {
+                        return result.get();
+                    } catch (Exception e) {
+                        throw new FileStorageException("Error listing files", e);
+                    }
+                })
+                .filter(item -> !item.isDir())
+                .map(item -> new ListedObject(item.objectName(), item.size(), item.lastModified().toInstant()));
+    }
+
+    /**
+     * Удаляет объекты одним пакетным запросом (по 1000 ключей за запрос).
+     *
+     * @param objectNames ключи объектов
+     * @return ключи, которые удалить не удалось
+     * @throws FileStorageException при ошибках обращения к хранилищу
+     */
+    @Timed("user.photo.delete")
+    @Override
+    public List<String> removeObjects(Collection<String> objectNames) {
+        if (objectNames.isEmpty()) {
+            return List.of();
+        }
+        List<DeleteObject> objects = objectNames.stream().map(DeleteObject::new).toList();
+        List<String> failed = new ArrayList<>();
+        try {
+            // Запросы отправляются по мере чтения результата, поэтому его нужно перебрать целиком
+            for (Result<DeleteError> result : minioClient.removeObjects(
+                    RemoveObjectsArgs.builder().bucket(bucketName).objects(objects).build())) {
+                DeleteError error = result.get();
+                log.warn("Failed to delete {}: {}", error.objectName(), error.message());
+                failed.add(error.objectName());
+            }
+        } catch (Exception e) {
+            throw new FileStorageException("Error deleting files", e);
+        }
+        return failed;
+    }
+
     /**
      * Генерирует временную подписанную ссылку для доступа к файлу.
+     * Подпись вычисляется локально, в пределах окна ссылка на объект не меняется (см. {@link PresignedUrlGenerator}).
      *
      * @param objectName имя объекта
-     * @return URL с ограниченным временем доступа (3 часа)
+     * @return URL, действующий не меньше {@code minio.presign.validity}
      * @throws FileStorageException при ошибках генерации URL
      */
+    @Override
     public String generatePresignedUrl(String objectName) {
-        try {
-            return minioClient.getPresignedObjectUrl(
-                    GetPresignedObjectUrlArgs.builder()
-                            .method(Method.GET)
-                            .bucket(bucketName)
-                            .object(objectName)
-                            .expiry(3, TimeUnit.HOURS)
-                            .build()
-            );
-        } catch (Exception e) {
-            throw new FileStorageException("Error generating presigned URL", e);
-        }
+        return presignedUrlGenerator.presignedGetUrl(objectName);
+    }
+
+    /**
+     * Подписывает ссылку на запись объекта локально (см. {@link PresignedUrlGenerator#presignedPutUrl}).
+     *
+     * @param objectName имя объекта
+     * @param validity   срок действия ссылки
+     * @return PUT URL
+     * @throws FileStorageException при ошибках генерации URL
+     */
+    @Override
+    public String generatePresignedUploadUrl(String objectName, Duration validity) {
+        return presignedUrlGenerator.presignedPutUrl(objectName, validity);
     }
 
     /**
@@ -225,6 +456,20 @@ public class MinioFileStorageService {
         throw new FileStorageException("MinIO service unavailable during get", e);
     }
 
+    public StoredObject statFallback(String objectName, Throwable e) {
+        log.error("FALLBACK: MinIO stat failed for object: {}", objectName, e);
+        throw new FileStorageException("MinIO service unavailable during stat", e);
+    }
+
+    public InputStream openStreamFallback(String objectName, long offset, long length, Throwable e) {
+        log.error("FALLBACK: MinIO get failed for object: {}", objectName, e);
+        throw new FileStorageException("MinIO service unavailable during get", e);
+    }
+
+    public void moveFallback(String source, String target, String contentType, String expectedETag, Throwable e) {
+        log.error("FALLBACK: MinIO copy failed for object: {}", source, e);
+        throw new FileStorageException("MinIO service unavailable during copy", e);
+    }
 
     /**
      * Фоллбэк метод при ошибках удаления файла.
@@ -0,0 +1,380 @@
+package org.userservice.service.photo;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.userservice.exception.FileStorageException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Двухуровневый кеш фотографий перед MinIO.
+ * <p>
+ * Первый уровень - direct {@link ByteBuffer} вне кучи, второй - файлы в локальном каталоге.
+ * Оба уровня ограничены по объёму в байтах и вытесняют по LRU; запись, вытесненная из памяти,
+ * опускается на диск отдельным потоком, а не тем запросом, который её вытеснил. Промах загружает
+ * объект из хранилища один раз: параллельные запросы того же ключа ждут эту загрузку.
+ * Ключ - имя объекта, а оно уникально для каждой загрузки, поэтому
+ * закешированное содержимое не устаревает; инвалидация при замене или удалении фото
+ * нужна только чтобы освободить место.
+ * <p>
+ * Файл вытесненной записи удаляется не сразу, а через {@code deleteGracePeriod}:
+ * его ещё может досылать ответ, начатый до вытеснения.
+ * <p>
+ * Метрики: {@code photo.cache.requests} (result = memory_hit, disk_hit, miss),
+ * {@code photo.cache.bytes.served} (tier = memory, disk, remote, local), {@code photo.cache.evictions} (tier),
+ * {@code photo.cache.size} (tier), {@code photo.cache.hit.ratio} и {@code photo.cache.demotions.dropped}.
+ */
+@Component
+@Slf4j
+public class PhotoCache {
+
+    private final PhotoCacheProperties properties;
+
+    private final Cache<String, PhotoSource.Memory> memory;
+    private final Cache<String, PhotoSource.Disk> disk;
+    private final AtomicLong memoryBytes = new AtomicLong();
+    private final AtomicLong diskBytes = new AtomicLong();
+    private final Queue<PendingDelete> pendingDeletes = new ConcurrentLinkedQueue<>();
+    private final Executor demotions;
+
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+    private final Counter memoryBytesServed;
+    private final Counter diskBytesServed;
+    private final Counter remoteBytesServed;
+    private final Counter localBytesServed;
+    private final Counter demotionsDropped;
+
+    public PhotoCache(PhotoCacheProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, demotionExecutor(properties));
+    }
+
+    PhotoCache(PhotoCacheProperties properties, MeterRegistry meterRegistry, Executor demotions) {
+        this.properties = properties;
+        this.demotions = demotions;
+        this.memory = CacheBuilder.newBuilder()
+                .maximumWeight(properties.getMemoryMaxSize().toBytes())
+                .<String, PhotoSource.Memory>weigher((key, entry) -> entry.content().capacity())
+                .removalListener(this::onMemoryRemoval)
+                .recordStats()
+                .build();
+        this.disk = CacheBuilder.newBuilder()
+                .maximumWeight(properties.getDiskMaxSize().toBytes())
+                .<String, PhotoSource.Disk>weigher((key, entry) -> Math.toIntExact(entry.metadata().size()))
+                .removalListener(this::onDiskRemoval)
+                .recordStats()
+                .build();
+
+        this.memoryHits = requests(meterRegistry, "memory_hit");
+        this.diskHits = requests(meterRegistry, "disk_hit");
+        this.misses = requests(meterRegistry, "miss");
+        this.memoryBytesServed = bytesServed(meterRegistry, "memory");
+        this.diskBytesServed = bytesServed(meterRegistry, "disk");
+        this.remoteBytesServed = bytesServed(meterRegistry, "remote");
+        this.localBytesServed = bytesServed(meterRegistry, "local");
+        this.demotionsDropped = Counter.builder("photo.cache.demotions.dropped").register(meterRegistry);
+        FunctionCounter.builder("photo.cache.evictions", memory, c -> c.stats().evictionCount())
+                .tag("tier", "memory")
+                .register(meterRegistry);
+        FunctionCounter.builder("photo.cache.evictions", disk, c -> c.stats().evictionCount())
+                .tag("tier", "disk")
+                .register(meterRegistry);
+        Gauge.builder("photo.cache.size", memoryBytes, AtomicLong::get)
+                .tag("tier", "memory")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("photo.cache.size", diskBytes, AtomicLong::get)
+                .tag("tier", "disk")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("photo.cache.hit.ratio", this, PhotoCache::hitRatio)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Создаёт каталог дискового уровня и удаляет файлы, оставшиеся от прошлого запуска:
+     * индекс живёт только в памяти.
+     */
+    @PostConstruct
+    public void init() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            Files.createDirectories(properties.getDirectory());
+            try (Stream<Path> stale = Files.list(properties.getDirectory())) {
+                stale.forEach(PhotoCache::deleteQuietly);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot prepare photo cache directory " + properties.getDirectory(), e);
+        }
+    }
+
+    /**
+     * Возвращает источник фотографии: из кеша, если она там есть, иначе загружает её из хранилища
+     * в память (если она не крупнее {@code maxObjectSize}) или отдаёт поток из хранилища.
+     * Файлы локального хранилища отдаются с диска напрямую и не кешируются.
+     *
+     * @param objectName ключ объекта
+     * @param storage    хранилище
+     * @return источник для отдачи фотографии
+     */
+    public PhotoSource get(String objectName, FileStorage storage) {
+        return get(objectName, storage, null);
+    }
+
+    /**
+     * Как {@link #get(String, FileStorage)}, но с заранее известными размером и типом объекта
+     * (например, из записи в БД): тогда хранилище не опрашивается ради метаданных.
+     *
+     * @param objectName ключ объекта
+     * @param storage    хранилище
+     * @param known      метаданные объекта или {@code null}
+     * @return источник для отдачи фотографии
+     */
+    public PhotoSource get(String objectName, FileStorage storage, StoredObject known) {
+        Optional<Path> local = storage.localFile(objectName);
+        if (local.isPresent()) {
+            return new PhotoSource.Disk(known != null ? known : storage.statFile(objectName), local.get(),
+                    localBytesServed::increment);
+        }
+        Optional<PhotoSource> cached = cached(objectName);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        StoredObject metadata = known != null ? known : storage.statFile(objectName);
+        if (!cacheable(metadata)) {
+            return remote(metadata, (offset, length) -> storage.openStream(objectName, offset, length));
+        }
+        return load(objectName, () -> {
+            try (InputStream in = storage.openStream(objectName, 0, metadata.size())) {
+                return read(objectName, metadata, in);
+            }
+        });
+    }
+
+    /**
+     * Ищет фотографию в памяти и на диске, не обращаясь к хранилищу.
+     *
+     * @param objectName ключ объекта
+     * @return источник из кеша или пусто (промах засчитывается в метрики)
+     */
+    public Optional<PhotoSource> cached(String objectName) {
+        if (!properties.isEnabled()) {
+            return Optional.empty();
+        }
+        PhotoSource.Memory hot = memory.getIfPresent(objectName);
+        if (hot != null) {
+            memoryHits.increment();
+            return Optional.of(hot);
+        }
+        PhotoSource.Disk warm = disk.getIfPresent(objectName);
+        if (warm != null) {
+            diskHits.increment();
+            return Optional.of(warm);
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * @param metadata метаданные объекта
+     * @return {@code true}, если объект помещается в кеш и его стоит загрузить туда целиком
+     */
+    public boolean cacheable(StoredObject metadata) {
+        return properties.isEnabled() && metadata.size() <= properties.getMaxObjectSize().toBytes();
+    }
+
+    /**
+     * Читает содержимое объекта в память и кладёт в кеш. Если объект уже загружен
+     * (или загружается) другим запросом, возвращается его запись, а {@code in} не читается.
+     *
+     * @param objectName ключ объекта
+     * @param metadata   метаданные объекта
+     * @param in         содержимое; закрывает вызывающий код
+     * @return источник из памяти
+     * @throws FileStorageException если содержимое не удалось прочитать
+     */
+    public PhotoSource.Memory put(String objectName, StoredObject metadata, InputStream in) {
+        return load(objectName, () -> read(objectName, metadata, in));
+    }
+
+    private PhotoSource.Memory load(String objectName, Callable<PhotoSource.Memory> loader) {
+        try {
+            return memory.get(objectName, loader);
+        } catch (ExecutionException e) {
+            throw new FileStorageException("Error reading file", e.getCause());
+        } catch (UncheckedExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static RuntimeException unwrap(UncheckedExecutionException e) {
+        return e.getCause() instanceof RuntimeException runtime ? runtime : e;
+    }
+
+    private PhotoSource.Memory read(String objectName, StoredObject metadata, InputStream in) throws IOException {
+        ByteBuffer content = ByteBuffer.allocateDirect(Math.toIntExact(metadata.size()));
+        ReadableByteChannel channel = Channels.newChannel(in);
+        while (content.hasRemaining()) {
+            if (channel.read(content) < 0) {
+                throw new FileStorageException("Object " + objectName + " is shorter than its metadata", null);
+            }
+        }
+        content.flip();
+        PhotoSource.Memory loaded = new PhotoSource.Memory(metadata, content.asReadOnlyBuffer(),
+                memoryBytesServed::increment);
+        memoryBytes.addAndGet(content.capacity());
+        return loaded;
+    }
+
+    /**
+     * @param metadata метаданные объекта
+     * @param opener   открывает поток на диапазон объекта в хранилище
+     * @return источник, отдающий объект из хранилища без кеширования
+     */
+    public PhotoSource.Remote remote(StoredObject metadata, PhotoSource.RangeOpener opener) {
+        return new PhotoSource.Remote(metadata, opener, remoteBytesServed::increment);
+    }
+
+    public void invalidate(String objectName) {
+        memory.invalidate(objectName);
+        disk.invalidate(objectName);
+    }
+
+    /**
+     * Удаляет файлы вытесненных записей, которые пережили период ожидания.
+     */
+    @Scheduled(fixedDelayString = "${photo.cache.delete-grace-period:PT1M}")
+    public void deleteEvictedFiles() {
+        Instant threshold = Instant.now().minus(properties.getDeleteGracePeriod());
+        PendingDelete next;
+        while ((next = pendingDeletes.peek()) != null && next.evictedAt().isBefore(threshold)) {
+            pendingDeletes.poll();
+            deleteQuietly(next.path());
+        }
+    }
+
+    private void onMemoryRemoval(RemovalNotification<String, PhotoSource.Memory> notification) {
+        PhotoSource.Memory entry = notification.getValue();
+        memoryBytes.addAndGet(-entry.content().capacity());
+        if (notification.getCause() == RemovalCause.SIZE) {
+            try {
+                demotions.execute(() -> demote(notification.getKey(), entry));
+            } catch (RejectedExecutionException e) {
+                demotionsDropped.increment();
+            }
+        }
+    }
+
+    private void onDiskRemoval(RemovalNotification<String, PhotoSource.Disk> notification) {
+        PhotoSource.Disk entry = notification.getValue();
+        diskBytes.addAndGet(-entry.metadata().size());
+        pendingDeletes.add(new PendingDelete(entry.path(), Instant.now()));
+    }
+
+    private void demote(String objectName, PhotoSource.Memory entry) {
+        Path path = properties.getDirectory().resolve(UUID.randomUUID().toString());
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer content = entry.content().duplicate().rewind();
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+        } catch (IOException e) {
+            log.warn("Could not move photo {} to the disk cache: {}", objectName, e.getMessage());
+            deleteQuietly(path);
+            return;
+        }
+        diskBytes.addAndGet(entry.metadata().size());
+        disk.put(objectName, new PhotoSource.Disk(entry.metadata(), path, diskBytesServed::increment));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (demotions instanceof ExecutorService executor) {
+            executor.shutdown();
+        }
+    }
+
+    private double hitRatio() {
+        double hits = memoryHits.count() + diskHits.count();
+        double total = hits + misses.count();
+        return total == 0 ? 0 : hits / total;
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete cached photo file {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("photo.cache.requests")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static Counter bytesServed(MeterRegistry meterRegistry, String tier) {
+        return Counter.builder("photo.cache.bytes.served")
+                .tag("tier", tier)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Один поток: запись на диск упирается в диск, а не в процессор. Пока запись ждёт в очереди,
+     * она держит свой буфер, поэтому очередь ограничена; не поместившаяся запись просто не попадёт на диск.
+     */
+    private static ThreadPoolExecutor demotionExecutor(PhotoCacheProperties properties) {
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getDemotionQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "photo-cache-demotion");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private record PendingDelete(Path path, Instant evictedAt) {
+    }
+}
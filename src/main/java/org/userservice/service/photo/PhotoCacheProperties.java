@@ -0,0 +1,35 @@
+package org.userservice.service.photo;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "photo.cache")
+public class PhotoCacheProperties {
+    private boolean enabled = true;
+    /**
+     * Объём памяти вне кучи (direct buffers) под горячие фотографии.
+     * Должен укладываться в {@code -XX:MaxDirectMemorySize}.
+     */
+    private DataSize memoryMaxSize = DataSize.ofMegabytes(64);
+    private DataSize diskMaxSize = DataSize.ofGigabytes(1);
+    /**
+     * Файлы крупнее не кешируются и всегда отдаются потоком из хранилища.
+     */
+    private DataSize maxObjectSize = DataSize.ofMegabytes(10);
+    private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "user-photo-cache");
+    /**
+     * Сколько файл вытесненной записи живёт на диске, чтобы дослать уже начатые ответы.
+     */
+    private Duration deleteGracePeriod = Duration.ofMinutes(1);
+    /**
+     * Сколько вытесненных из памяти записей ждут переноса на диск; остальные отбрасываются.
+     */
+    private int demotionQueueCapacity = 64;
+}
@@ -0,0 +1,28 @@
+package org.userservice.service.photo;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "photo.derivatives")
+public class PhotoDerivativeProperties {
+    private boolean enabled = true;
+    /**
+     * Размеры уменьшенных копий: длина большей стороны в пикселях.
+     */
+    private List<Integer> sizes = List.of(48, 128, 256);
+    private int threads = 2;
+    /**
+     * Сколько загрузок ждёт обработки; при переполнении копии не создаются и отдаётся оригинал.
+     */
+    private int queueCapacity = 100;
+    /**
+     * Сколько помнить, что копии нет в хранилище; не чаще этого копии оригинала ставятся в очередь повторно.
+     */
+    private Duration missingTtl = Duration.ofSeconds(30);
+}
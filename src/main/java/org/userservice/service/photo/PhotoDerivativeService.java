@@ -0,0 +1,368 @@
+package org.userservice.service.photo;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.OptionalInt;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Уменьшенные копии фотографий для аватаров и превью.
+ * <p>
+ * После загрузки оригинала копии всех размеров из {@code photo.derivatives.sizes} строятся в фоне
+ * на отдельном пуле с ограниченной очередью: при всплеске загрузок лишние задачи отбрасываются,
+ * а клиенты получают оригинал. Копия хранится рядом с оригиналом, под его ключом без расширения
+ * с суффиксом размера: {@code cas/<sha256>_<size>.<jpg|png>} (для прямых загрузок {@code direct/<uuid>_<size>...}).
+ * Оригинал с тем же содержимым у разных пользователей один, поэтому и копии у них общие и удаляются
+ * вместе с оригиналом, когда на него не остаётся ссылок. GIF уменьшается по первому кадру
+ * и сохраняется в PNG, как и PNG, чтобы не потерять прозрачность.
+ * <p>
+ * Если копии нет (задачу отбросила переполненная очередь, сборка упала или узел перезапустился),
+ * запрос к ней снова ставит построение в ту же очередь. Отсутствие копии и постановка в очередь
+ * запоминаются на {@code missing-ttl}, так что поток запросов к отсутствующей копии не превращается
+ * в поток проверок хранилища и повторных сборок.
+ * <p>
+ * Метрики: {@code photo.derivatives.generated}, {@code photo.derivatives.failed},
+ * {@code photo.derivatives.rejected}, {@code photo.derivatives.queue.depth}
+ * и {@code photo.derivatives.generation} (время обработки одной загрузки).
+ */
+@Component
+@Slf4j
+public class PhotoDerivativeService {
+
+    private static final Pattern DERIVATIVE_KEY = Pattern.compile("(.+)_(\\d{1,5})\\.(jpg|png)");
+    private static final List<String> ORIGINAL_EXTENSIONS = List.of(
+            ".jpg", ".jpeg", ".png", ".gif", ".JPG", ".JPEG", ".PNG", ".GIF");
+
+    private final PhotoDerivativeProperties properties;
+    private final FileStorage storage;
+    private final PhotoCache photoCache;
+    private final List<Integer> sizes;
+    private final ThreadPoolExecutor executor;
+    // Ключи копий, которые точно есть в хранилище: избавляет от проверки существования на каждом запросе
+    private final Cache<String, Boolean> available = CacheBuilder.newBuilder()
+            .maximumSize(10_000)
+            .build();
+    // Ключи копий, которых недавно не было в хранилище
+    private final Cache<String, Boolean> missing;
+    // Оригиналы, копии которых недавно поставлены в очередь
+    private final Cache<String, Boolean> queued;
+
+    private final Counter generated;
+    private final Counter failed;
+    private final Counter rejected;
+    private final Timer generation;
+
+    public PhotoDerivativeService(PhotoDerivativeProperties properties,
+                                  FileStorage storage,
+                                  PhotoCache photoCache,
+                                  MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.storage = storage;
+        this.photoCache = photoCache;
+        this.sizes = properties.getSizes().stream().sorted().distinct().toList();
+        this.missing = CacheBuilder.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(properties.getMissingTtl())
+                .build();
+        this.queued = CacheBuilder.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(properties.getMissingTtl())
+                .build();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(properties.getThreads(), properties.getThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "photo-derivative-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.generated = Counter.builder("photo.derivatives.generated").register(meterRegistry);
+        this.failed = Counter.builder("photo.derivatives.failed").register(meterRegistry);
+        this.rejected = Counter.builder("photo.derivatives.rejected").register(meterRegistry);
+        this.generation = Timer.builder("photo.derivatives.generation").register(meterRegistry);
+        Gauge.builder("photo.derivatives.queue.depth", executor, e -> e.getQueue().size())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ставит построение копий в очередь. Внутри транзакции задача отправляется только после коммита,
+     * чтобы не обрабатывать файл, запись о котором откатилась.
+     *
+     * @param objectName ключ оригинала
+     */
+    public void schedule(String objectName) {
+        if (!properties.isEnabled() || sizes.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(objectName);
+                }
+            });
+        } else {
+            submit(objectName);
+        }
+    }
+
+    /**
+     * Подбирает наименьший настроенный размер, не меньше запрошенного.
+     *
+     * @param requested запрошенная длина большей стороны
+     * @return размер копии или пусто, если подходит только оригинал
+     */
+    public OptionalInt resolveSize(int requested) {
+        if (!properties.isEnabled()) {
+            return OptionalInt.empty();
+        }
+        return sizes.stream()
+                .filter(size -> size >= requested)
+                .mapToInt(Integer::intValue)
+                .findFirst();
+    }
+
+    /**
+     * Проверяет, построена ли копия; если её нет, ставит построение копий оригинала в очередь.
+     *
+     * @param derivativeKey ключ копии
+     * @param objectName    ключ оригинала
+     * @return {@code true}, если копия уже построена
+     */
+    public boolean isAvailable(String derivativeKey, String objectName) {
+        if (available.getIfPresent(derivativeKey) != null) {
+            return true;
+        }
+        if (missing.getIfPresent(derivativeKey) != null) {
+            return false;
+        }
+        if (storage.exists(derivativeKey)) {
+            available.put(derivativeKey, Boolean.TRUE);
+            return true;
+        }
+        missing.put(derivativeKey, Boolean.TRUE);
+        if (properties.isEnabled()) {
+            submit(objectName);
+        }
+        return false;
+    }
+
+    /**
+     * Удаляет все копии фотографии. Ошибки только логируются: оригинал важнее.
+     *
+     * @param objectName ключ оригинала
+     */
+    public void delete(String objectName) {
+        for (int size : sizes) {
+            String key = derivativeKey(objectName, size);
+            available.invalidate(key);
+            missing.invalidate(key);
+            photoCache.invalidate(key);
+            try {
+                storage.deleteFile(key);
+            } catch (Exception e) {
+                log.warn("Failed to delete photo derivative {}: {}", key, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Возможные ключи оригинала для ключа копии. Расширение оригинала в ключе копии не сохраняется,
+     * поэтому перечисляются все допустимые.
+     *
+     * @param objectName ключ объекта
+     * @return ключи оригинала или пусто, если объект не копия
+     */
+    public List<String> originalCandidates(String objectName) {
+        Matcher matcher = DERIVATIVE_KEY.matcher(objectName);
+        if (!matcher.matches() || !sizes.contains(Integer.parseInt(matcher.group(2)))) {
+            return List.of();
+        }
+        String base = matcher.group(1);
+        return ORIGINAL_EXTENSIONS.stream().map(extension -> base + extension).toList();
+    }
+
+    /**
+     * Забывает, что копия построена (после её удаления в обход {@link #delete(String)}).
+     *
+     * @param derivativeKey ключ копии
+     */
+    public void forget(String derivativeKey) {
+        available.invalidate(derivativeKey);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @param objectName ключ оригинала
+     * @param size       длина большей стороны копии
+     * @return ключ копии рядом с оригиналом: {@code cas/<sha256>_<size>.<jpg|png>}
+     */
+    public static String derivativeKey(String objectName, int size) {
+        int dot = objectName.lastIndexOf('.');
+        String base = dot > objectName.lastIndexOf('/') ? objectName.substring(0, dot) : objectName;
+        return base + "_" + size + "." + formatOf(objectName);
+    }
+
+    /**
+     * Уменьшает изображение так, чтобы большая сторона не превышала {@code maxSide}.
+     * Сжатие больше чем вдвое выполняется последовательными уменьшениями вдвое:
+     * билинейная интерполяция за один шаг теряет слишком много деталей.
+     */
+    static BufferedImage scale(BufferedImage source, int maxSide, boolean alpha) {
+        int largest = Math.max(source.getWidth(), source.getHeight());
+        double ratio = largest > maxSide ? (double) maxSide / largest : 1.0;
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage step = new BufferedImage(width, height, type);
+            Graphics2D graphics = step.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                if (!alpha) {
+                    graphics.setColor(Color.WHITE);
+                    graphics.fillRect(0, 0, width, height);
+                }
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = step;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    /**
+     * Поворачивает и отражает изображение по тегу EXIF Orientation так, как его показал бы браузер.
+     *
+     * @param orientation значение тега (1-8)
+     */
+    static BufferedImage orient(BufferedImage source, int orientation) {
+        int w = source.getWidth();
+        int h = source.getHeight();
+        AffineTransform transform = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, w);
+            default -> null;
+        };
+        if (transform == null) {
+            return source;
+        }
+        boolean swap = orientation >= 5;
+        int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage oriented = new BufferedImage(swap ? h : w, swap ? w : h, type);
+        Graphics2D graphics = oriented.createGraphics();
+        try {
+            graphics.drawImage(source, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return oriented;
+    }
+
+    private void submit(String objectName) {
+        if (queued.asMap().putIfAbsent(objectName, Boolean.TRUE) != null) {
+            return;
+        }
+        try {
+            executor.execute(() -> generation.record(() -> generate(objectName)));
+        } catch (RejectedExecutionException e) {
+            queued.invalidate(objectName);
+            rejected.increment();
+            log.warn("Photo derivative queue is full, {} will be served as original only", objectName);
+        }
+    }
+
+    private void generate(String objectName) {
+        BufferedImage original;
+        int orientation;
+        try {
+            byte[] content = storage.getFile(objectName);
+            // ImageIO.read читает первый кадр, для анимированного GIF это и нужно
+            original = ImageIO.read(new ByteArrayInputStream(content));
+            orientation = ImageHeaderParser.orientation(new ByteArrayInputStream(content), content.length);
+        } catch (Exception e) {
+            failed.increment();
+            log.warn("Could not read photo {} to build derivatives: {}", objectName, e.getMessage());
+            return;
+        }
+        if (original == null) {
+            failed.increment();
+            log.warn("No image reader for photo {}, derivatives skipped", objectName);
+            return;
+        }
+        // Оригинал, сохранённый без нормализации, мог остаться с EXIF; у копии метаданных нет
+        original = orient(original, orientation);
+        String format = formatOf(objectName);
+        boolean alpha = "png".equals(format);
+        for (int size : sizes) {
+            String key = derivativeKey(objectName, size);
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                if (!ImageIO.write(scale(original, size, alpha), format, out)) {
+                    throw new IOException("No image writer for " + format);
+                }
+                storage.uploadFile(key, new ByteArrayInputStream(out.toByteArray()), out.size(),
+                        "png".equals(format) ? "image/png" : "image/jpeg");
+                available.put(key, Boolean.TRUE);
+                missing.invalidate(key);
+                generated.increment();
+            } catch (Exception e) {
+                failed.increment();
+                log.warn("Could not build photo derivative {}: {}", key, e.getMessage());
+            }
+        }
+        log.debug("Derivatives built for photo {}", objectName);
+    }
+
+    private static String formatOf(String objectName) {
+        String name = objectName.toLowerCase(Locale.ROOT);
+        return name.endsWith(".jpg") || name.endsWith(".jpeg") ? "jpg" : "png";
+    }
+}
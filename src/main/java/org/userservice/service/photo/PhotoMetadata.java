@@ -0,0 +1,18 @@
+package org.userservice.service.photo;
+
+/**
+ * Сведения о фотографии, которые записываются в {@code user_photos} при загрузке,
+ * чтобы отвечать на {@code HEAD} и условные запросы без обращения к хранилищу.
+ *
+ * @param contentType MIME-тип по сигнатуре файла
+ * @param size        размер в байтах
+ * @param contentHash SHA-256 содержимого (hex) или {@code null}, если файл не проходил через сервис целиком
+ * @param width       ширина в пикселях
+ * @param height      высота в пикселях
+ */
+public record PhotoMetadata(String contentType, long size, String contentHash, int width, int height) {
+
+    public static PhotoMetadata of(ImageInfo image, long size, String contentHash) {
+        return new PhotoMetadata(image.mediaType(), size, contentHash, image.width(), image.height());
+    }
+}
@@ -0,0 +1,28 @@
+package org.userservice.service.photo;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "photo.normalization")
+public class PhotoNormalizationProperties {
+    private boolean enabled = false;
+    /**
+     * Наибольшая длина стороны сохраняемого изображения в пикселях.
+     */
+    private int maxEdge = 2048;
+    /**
+     * Качество JPEG от 0 до 1.
+     */
+    private float quality = 0.85f;
+    private int threads = 2;
+    private int queueCapacity = 20;
+    /**
+     * Сколько загрузка ждёт обработки; по истечении сохраняется исходный файл.
+     */
+    private Duration maxWait = Duration.ofSeconds(10);
+}
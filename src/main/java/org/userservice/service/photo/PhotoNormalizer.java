@@ -0,0 +1,191 @@
+package org.userservice.service.photo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Нормализация загружаемых фотографий перед записью в хранилище.
+ * <p>
+ * Изображение уменьшается до {@code photo.normalization.max-edge} по большей стороне и заново
+ * кодируется в прогрессивный JPEG с качеством {@code quality}. Метаданные (EXIF, профили, миниатюры)
+ * при этом не переносятся, поэтому поворот из тега EXIF Orientation применяется к пикселям заранее:
+ * {@link ImageIO} его не учитывает, и без этого снимки с телефона сохранялись бы повёрнутыми.
+ * GIF и изображения с прозрачностью не трогаются, как и файлы без поворота, которые
+ * после перекодирования не стали меньше.
+ * <p>
+ * Декодирование идёт на отдельном пуле с ограниченной очередью. Если пул занят или не успел
+ * за {@code max-wait}, сохраняется исходный файл: нормализация - оптимизация, а не условие загрузки.
+ * <p>
+ * Метрики: {@code photo.normalization.bytes.saved} (экономия на загрузку), {@code photo.normalization.ratio}
+ * (доля от исходного размера), {@code photo.normalization.skipped} (reason = unsupported, not_smaller,
+ * busy, failed), {@code photo.normalization.queue.depth} и {@code photo.normalization.duration}.
+ */
+@Component
+@Slf4j
+public class PhotoNormalizer {
+
+    /**
+     * APP1 с EXIF не длиннее 64 КБ и идёт сразу после SOI (иногда после APP0).
+     */
+    private static final long EXIF_READ_LIMIT = 128 * 1024;
+
+    private final PhotoNormalizationProperties properties;
+    private final ThreadPoolExecutor executor;
+
+    private final DistributionSummary bytesSaved;
+    private final DistributionSummary ratio;
+    private final Timer duration;
+    private final MeterRegistry meterRegistry;
+
+    public PhotoNormalizer(PhotoNormalizationProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(properties.getThreads(), properties.getThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "photo-normalize-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.bytesSaved = DistributionSummary.builder("photo.normalization.bytes.saved")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.ratio = DistributionSummary.builder("photo.normalization.ratio")
+                .register(meterRegistry);
+        this.duration = Timer.builder("photo.normalization.duration").register(meterRegistry);
+        Gauge.builder("photo.normalization.queue.depth", executor, e -> e.getQueue().size())
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param file  загруженный файл
+     * @param image тип и размеры, определённые при валидации
+     * @return перекодированное изображение или пусто, если нужно сохранить исходный файл
+     */
+    public Optional<NormalizedPhoto> normalize(MultipartFile file, ImageInfo image) {
+        if (!properties.isEnabled()) {
+            return Optional.empty();
+        }
+        if (ImageHeaderParser.GIF.equals(image.mediaType())) {
+            skipped("unsupported");
+            return Optional.empty();
+        }
+        Future<Optional<NormalizedPhoto>> future;
+        try {
+            future = executor.submit(() -> duration.recordCallable(() -> encode(file, image)));
+        } catch (RejectedExecutionException e) {
+            skipped("busy");
+            return Optional.empty();
+        }
+        try {
+            return future.get(properties.getMaxWait().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            skipped("busy");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            skipped("busy");
+        } catch (ExecutionException e) {
+            log.warn("Could not normalize uploaded photo: {}", e.getCause().getMessage());
+            skipped("failed");
+        }
+        return Optional.empty();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private Optional<NormalizedPhoto> encode(MultipartFile file, ImageInfo image) throws IOException {
+        BufferedImage decoded;
+        try (InputStream inputStream = file.getInputStream()) {
+            decoded = ImageIO.read(inputStream);
+        }
+        if (decoded == null || decoded.getColorModel().hasAlpha()) {
+            skipped("unsupported");
+            return Optional.empty();
+        }
+        int orientation = ImageHeaderParser.NORMAL_ORIENTATION;
+        if (ImageHeaderParser.JPEG.equals(image.mediaType())) {
+            try (InputStream inputStream = file.getInputStream()) {
+                orientation = ImageHeaderParser.orientation(inputStream, EXIF_READ_LIMIT);
+            }
+        }
+        BufferedImage oriented = PhotoDerivativeService.orient(decoded, orientation);
+        BufferedImage scaled = PhotoDerivativeService.scale(oriented, properties.getMaxEdge(), false);
+        byte[] content = writeProgressiveJpeg(scaled);
+        boolean downscaled = Math.max(scaled.getWidth(), scaled.getHeight()) < Math.max(image.width(), image.height());
+        // Повёрнутый оригинал оставлять нельзя: копии и клиенты без поддержки EXIF покажут его набок
+        if (content.length >= file.getSize() && !downscaled && orientation == ImageHeaderParser.NORMAL_ORIENTATION) {
+            skipped("not_smaller");
+            return Optional.empty();
+        }
+        bytesSaved.record(Math.max(0, file.getSize() - content.length));
+        ratio.record((double) content.length / file.getSize());
+        return Optional.of(new NormalizedPhoto(content,
+                new ImageInfo(ImageHeaderParser.JPEG, scaled.getWidth(), scaled.getHeight())));
+    }
+
+    private byte[] writeProgressiveJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(properties.getQuality());
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.setOutput(output);
+            // Без метаданных: EXIF исходного файла в результат не попадает
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private void skipped(String reason) {
+        Counter.builder("photo.normalization.skipped")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * @param content перекодированное изображение
+     * @param image   его тип и размеры
+     */
+    public record NormalizedPhoto(byte[] content, ImageInfo image) {
+    }
+}
@@ -0,0 +1,149 @@
+package org.userservice.service.photo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.userservice.entity.PhotoObject;
+import org.userservice.repo.PhotoObjectRepository;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Счётчик ссылок на объекты фотографий, адресуемые по содержимому.
+ * <p>
+ * Все изменения счётчика идут под блокировкой строки {@code photo_objects}. Объект удаляется
+ * из хранилища не в транзакции, которая обнулила счётчик, а после её коммита, в отдельной
+ * транзакции и только если счётчик всё ещё ноль. Параллельная загрузка того же содержимого
+ * ждёт эту блокировку и, увидев переход счётчика с нуля на единицу, загружает объект заново,
+ * поэтому удаление не может снести объект, на который уже ссылаются. Первая ссылка на новый ключ
+ * тоже проходит через блокировку: строка сначала вставляется с нулевым счётчиком
+ * ({@code ON CONFLICT DO NOTHING}), и параллельные загрузки одного содержимого не падают
+ * на ограничении уникальности.
+ * <p>
+ * Фотографии, загруженные до появления таблицы, строк не имеют; их ключи уникальны,
+ * так что такой объект удаляется при освобождении единственной ссылки.
+ * <p>
+ * Метрики: {@code photo.objects.deduplicated} (загрузки без записи в хранилище)
+ * и {@code photo.objects.deleted}.
+ */
+@Service
+@Slf4j
+public class PhotoObjectService {
+
+    private static final int MAX_RETAIN_ATTEMPTS = 3;
+
+    private final PhotoObjectRepository repository;
+    private final FileStorage storage;
+    private final PhotoCache photoCache;
+    private final PhotoDerivativeService derivativeService;
+    private final TransactionTemplate purgeTransaction;
+
+    private final Counter deduplicated;
+    private final Counter deleted;
+
+    public PhotoObjectService(PhotoObjectRepository repository,
+                              FileStorage storage,
+                              PhotoCache photoCache,
+                              PhotoDerivativeService derivativeService,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.storage = storage;
+        this.photoCache = photoCache;
+        this.derivativeService = derivativeService;
+        this.purgeTransaction = new TransactionTemplate(transactionManager);
+        this.purgeTransaction.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+        this.deduplicated = Counter.builder("photo.objects.deduplicated").register(meterRegistry);
+        this.deleted = Counter.builder("photo.objects.deleted").register(meterRegistry);
+    }
+
+    /**
+     * Добавляет ссылку на объект. Блокировка строки держится до конца транзакции вызывающего,
+     * поэтому загрузку объекта нужно выполнить в той же транзакции.
+     *
+     * @param objectKey ключ объекта
+     * @return {@code true}, если объекта ещё нет в хранилище и его нужно загрузить
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean retain(String objectKey) {
+        for (int attempt = 1; ; attempt++) {
+            repository.insertIfAbsent(objectKey, Instant.now());
+            // Строку могло удалить освобождение, закоммиченное между вставкой и блокировкой
+            Optional<PhotoObject> existing = repository.findForUpdate(objectKey);
+            if (existing.isPresent()) {
+                PhotoObject object = existing.get();
+                object.setRefCount(object.getRefCount() + 1);
+                if (object.getRefCount() > 1) {
+                    deduplicated.increment();
+                    return false;
+                }
+                return true;
+            }
+            if (attempt == MAX_RETAIN_ATTEMPTS) {
+                throw new IllegalStateException("Photo object " + objectKey + " keeps disappearing");
+            }
+        }
+    }
+
+    /**
+     * Убирает ссылку на объект. Если ссылок не осталось, объект и его уменьшенные копии
+     * удаляются из хранилища после коммита.
+     *
+     * @param objectKey ключ объекта
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(String objectKey) {
+        Optional<PhotoObject> existing = repository.findForUpdate(objectKey);
+        if (existing.isPresent()) {
+            PhotoObject object = existing.get();
+            object.setRefCount(Math.max(0, object.getRefCount() - 1));
+            if (object.getRefCount() > 0) {
+                return;
+            }
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                purgeIfUnreferenced(objectKey);
+            }
+        });
+    }
+
+    /**
+     * Без блокировки проверяет, есть ли на объект ссылки. Годится только как подсказка,
+     * что загрузку можно пропустить: окончательно это решает {@link #retain(String)}.
+     *
+     * @param objectKey ключ объекта
+     * @return {@code true}, если объект сейчас используется
+     */
+    @Transactional(readOnly = true)
+    public boolean isReferenced(String objectKey) {
+        return repository.findById(objectKey).map(object -> object.getRefCount() > 0).orElse(false);
+    }
+
+    private void purgeIfUnreferenced(String objectKey) {
+        try {
+            purgeTransaction.executeWithoutResult(status -> {
+                Optional<PhotoObject> object = repository.findForUpdate(objectKey);
+                if (object.isPresent() && object.get().getRefCount() > 0) {
+                    return;
+                }
+                photoCache.invalidate(objectKey);
+                derivativeService.delete(objectKey);
+                storage.deleteFile(objectKey);
+                object.ifPresent(repository::delete);
+                deleted.increment();
+            });
+        } catch (Exception e) {
+            log.warn("Failed to delete unreferenced photo object {}: {}", objectKey, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package org.userservice.service.photo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.userservice.entity.PhotoObject;
+import org.userservice.repo.PhotoObjectRepository;
+import org.userservice.repo.UserPhotoRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Фоновое удаление объектов бакета, на которые не ссылается ни одна запись.
+ * <p>
+ * Бакет перечисляется постранично, ключи проверяются пачками по {@code batch-size} запросами
+ * с {@code IN}, так что память не зависит от размера бакета. Объект считается сиротой, если его ключ
+ * (для уменьшенной копии - ключ оригинала) не встречается ни в {@code user_photos}, ни среди
+ * объектов {@code photo_objects} с ненулевым счётчиком. Объекты моложе {@code grace-period}
+ * не трогаются: это могут быть загрузки, транзакция которых ещё не завершилась.
+ * <p>
+ * Перед удалением строки {@code photo_objects} сирот блокируются (отсутствующие создаются с нулевым
+ * счётчиком), а ссылки перепроверяются: параллельная загрузка того же содержимого дождётся
+ * окончания удаления и загрузит объект заново (см. {@link PhotoObjectService}).
+ * <p>
+ * Метрики: {@code photo.reconciler.scanned}, {@code photo.reconciler.orphans.deleted},
+ * {@code photo.reconciler.bytes.reclaimed}, {@code photo.reconciler.failures}
+ * и {@code photo.reconciler.run}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "photo.reconciler.enabled", havingValue = "true", matchIfMissing = true)
+public class PhotoReconciler {
+
+    // Ограничение числа параметров одного IN
+    private static final int MAX_IN_PARAMETERS = 1000;
+
+    private final FileStorage storage;
+    private final UserPhotoRepository userPhotoRepository;
+    private final PhotoObjectRepository photoObjectRepository;
+    private final PhotoDerivativeService derivativeService;
+    private final PhotoCache photoCache;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter scanned;
+    private final Counter deleted;
+    private final Counter bytesReclaimed;
+    private final Counter failures;
+    private final Timer run;
+
+    @Value("${photo.reconciler.batch-size:500}")
+    private int batchSize;
+
+    @Value("${photo.reconciler.grace-period:PT24H}")
+    private Duration gracePeriod;
+
+    public PhotoReconciler(FileStorage storage,
+                           UserPhotoRepository userPhotoRepository,
+                           PhotoObjectRepository photoObjectRepository,
+                           PhotoDerivativeService derivativeService,
+                           PhotoCache photoCache,
+                           TransactionTemplate transactionTemplate,
+                           MeterRegistry meterRegistry) {
+        this.storage = storage;
+        this.userPhotoRepository = userPhotoRepository;
+        this.photoObjectRepository = photoObjectRepository;
+        this.derivativeService = derivativeService;
+        this.photoCache = photoCache;
+        this.transactionTemplate = transactionTemplate;
+        this.scanned = Counter.builder("photo.reconciler.scanned").register(meterRegistry);
+        this.deleted = Counter.builder("photo.reconciler.orphans.deleted").register(meterRegistry);
+        this.bytesReclaimed = Counter.builder("photo.reconciler.bytes.reclaimed")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.failures = Counter.builder("photo.reconciler.failures").register(meterRegistry);
+        this.run = Timer.builder("photo.reconciler.run").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${photo.reconciler.interval:PT6H}",
+            initialDelayString = "${photo.reconciler.interval:PT6H}")
+    public void reconcile() {
+        run.record(this::reconcileAll);
+    }
+
+    private void reconcileAll() {
+        Instant cutoff = Instant.now().minus(gracePeriod);
+        long total = 0;
+        List<ListedObject> batch = new ArrayList<>(batchSize);
+        try (Stream<ListedObject> objects = storage.listObjects(batchSize)) {
+            Iterator<ListedObject> iterator = objects.iterator();
+            while (iterator.hasNext()) {
+                ListedObject object = iterator.next();
+                scanned.increment();
+                if (object.lastModified().isAfter(cutoff)) {
+                    continue;
+                }
+                batch.add(object);
+                if (batch.size() == batchSize) {
+                    total += reconcileBatch(batch);
+                    batch.clear();
+                }
+            }
+            total += reconcileBatch(batch);
+        } catch (Exception e) {
+            failures.increment();
+            log.warn("Photo reconciliation aborted after {} orphans: {}", total, e.getMessage());
+            return;
+        }
+        if (total > 0) {
+            log.info("Photo reconciliation deleted {} orphaned objects", total);
+        }
+    }
+
+    private int reconcileBatch(List<ListedObject> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        Map<String, List<String>> owners = ownersOf(batch);
+        Set<String> referenced = referenced(owners.values());
+        List<ListedObject> candidates = batch.stream()
+                .filter(object -> isOrphan(owners.get(object.objectName()), referenced))
+                .toList();
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+        List<ListedObject> removed;
+        try {
+            removed = transactionTemplate.execute(status -> removeOrphans(candidates, owners));
+        } catch (RuntimeException e) {
+            // Например, параллельная загрузка того же содержимого заняла ключ; пачка повторится при следующем запуске
+            failures.increment();
+            log.warn("Could not delete {} orphaned photo objects: {}", candidates.size(), e.getMessage());
+            return 0;
+        }
+        removed.forEach(object -> {
+            photoCache.invalidate(object.objectName());
+            derivativeService.forget(object.objectName());
+            bytesReclaimed.increment(object.size());
+        });
+        deleted.increment(removed.size());
+        return removed.size();
+    }
+
+    private List<ListedObject> removeOrphans(List<ListedObject> candidates, Map<String, List<String>> owners) {
+        List<String> originals = candidates.stream()
+                .map(ListedObject::objectName)
+                .filter(key -> derivativeService.originalCandidates(key).isEmpty())
+                .toList();
+        List<PhotoObject> locked = originals.stream().map(this::lockOrCreate).toList();
+        Set<String> referenced = referenced(candidates.stream().map(object -> owners.get(object.objectName())).toList());
+        List<ListedObject> orphans = candidates.stream()
+                .filter(object -> isOrphan(owners.get(object.objectName()), referenced))
+                .toList();
+        Set<String> failed = new HashSet<>(storage.removeObjects(orphans.stream().map(ListedObject::objectName).toList()));
+        failures.increment(failed.size());
+        photoObjectRepository.deleteAllInBatch(locked.stream()
+                .filter(object -> object.getRefCount() == 0)
+                .toList());
+        return orphans.stream().filter(object -> !failed.contains(object.objectName())).toList();
+    }
+
+    private PhotoObject lockOrCreate(String objectKey) {
+        return photoObjectRepository.findForUpdate(objectKey).orElseGet(() -> {
+            PhotoObject tombstone = new PhotoObject();
+            tombstone.setObjectKey(objectKey);
+            tombstone.setRefCount(0);
+            tombstone.setCreatedAt(Instant.now());
+            return photoObjectRepository.saveAndFlush(tombstone);
+        });
+    }
+
+    private Map<String, List<String>> ownersOf(List<ListedObject> batch) {
+        Map<String, List<String>> owners = new LinkedHashMap<>();
+        for (ListedObject object : batch) {
+            List<String> candidates = derivativeService.originalCandidates(object.objectName());
+            owners.put(object.objectName(), candidates.isEmpty() ? List.of(object.objectName()) : candidates);
+        }
+        return owners;
+    }
+
+    private Set<String> referenced(Collection<List<String>> ownerKeys) {
+        List<String> keys = ownerKeys.stream().flatMap(List::stream).distinct().toList();
+        Set<String> referenced = new HashSet<>();
+        for (int from = 0; from < keys.size(); from += MAX_IN_PARAMETERS) {
+            List<String> chunk = keys.subList(from, Math.min(keys.size(), from + MAX_IN_PARAMETERS));
+            referenced.addAll(userPhotoRepository.findExistingFilePaths(chunk));
+            referenced.addAll(photoObjectRepository.findReferencedKeys(chunk));
+        }
+        return referenced;
+    }
+
+    private static boolean isOrphan(List<String> ownerKeys, Set<String> referenced) {
+        return ownerKeys.stream().noneMatch(referenced::contains);
+    }
+}
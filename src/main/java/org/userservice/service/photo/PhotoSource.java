@@ -0,0 +1,94 @@
+package org.userservice.service.photo;
+
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.function.LongConsumer;
+
+/**
+ * Откуда будет отдана фотография: память вне кучи, файл локального кеша или MinIO.
+ */
+public sealed interface PhotoSource {
+
+    StoredObject metadata();
+
+    /**
+     * @param offset смещение первого байта
+     * @param length число байтов
+     * @return тело ответа с указанным диапазоном
+     */
+    StreamingResponseBody body(long offset, long length);
+
+    /**
+     * @return файл на локальном диске, который контейнер может отдать через sendfile
+     */
+    default Optional<Path> file() {
+        return Optional.empty();
+    }
+
+    record Memory(StoredObject metadata, ByteBuffer content, LongConsumer bytesServed) implements PhotoSource {
+        @Override
+        public StreamingResponseBody body(long offset, long length) {
+            ByteBuffer range = content.duplicate()
+                    .position(Math.toIntExact(offset))
+                    .limit(Math.toIntExact(offset + length));
+            return out -> {
+                WritableByteChannel target = Channels.newChannel(out);
+                while (range.hasRemaining()) {
+                    target.write(range);
+                }
+                bytesServed.accept(length);
+            };
+        }
+    }
+
+    record Disk(StoredObject metadata, Path path, LongConsumer bytesServed) implements PhotoSource {
+        @Override
+        public StreamingResponseBody body(long offset, long length) {
+            return out -> {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    WritableByteChannel target = Channels.newChannel(out);
+                    long position = offset;
+                    long end = offset + length;
+                    while (position < end) {
+                        position += channel.transferTo(position, end - position, target);
+                    }
+                }
+                bytesServed.accept(length);
+            };
+        }
+
+        @Override
+        public Optional<Path> file() {
+            return Optional.of(path);
+        }
+    }
+
+    /**
+     * Поток открывается сразу, чтобы ошибка хранилища превратилась в ответ с кодом ошибки,
+     * а не в оборванное тело.
+     */
+    record Remote(StoredObject metadata, RangeOpener opener, LongConsumer bytesServed) implements PhotoSource {
+        @Override
+        public StreamingResponseBody body(long offset, long length) {
+            InputStream content = opener.open(offset, length);
+            return out -> {
+                try (content) {
+                    bytesServed.accept(content.transferTo(out));
+                }
+            };
+        }
+    }
+
+    @FunctionalInterface
+    interface RangeOpener {
+        InputStream open(long offset, long length);
+    }
+}
@@ -0,0 +1,147 @@
+package org.userservice.service.photo;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import io.minio.S3Escaper;
+import io.minio.Signer;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.userservice.exception.FileStorageException;
+
+import java.security.GeneralSecurityException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Подписанные ссылки на объекты MinIO, вычисляемые целиком локально.
+ * <p>
+ * Дата подписи выравнивается на начало окна {@code minio.presign.window}, а срок действия
+ * продлевается на длину окна, так что в любой момент ссылка действует ещё не меньше
+ * {@code minio.presign.validity}. Поэтому в пределах окна ссылка на объект одинакова байт в байт
+ * на всех узлах, и браузеры и CDN могут кешировать изображение. Готовые ссылки хранятся
+ * в небольшом кеше по имени объекта.
+ * <p>
+ * Подпись строится {@link Signer#presignV4} так же, как в {@code MinioClient.getPresignedObjectUrl},
+ * но без обращения к клиенту и без запроса региона (он задан в {@code minio.region}).
+ * <p>
+ * Ссылки на запись ({@link #presignedPutUrl}) одноразовые по смыслу, поэтому подписываются текущим
+ * временем и не кешируются.
+ */
+@Component
+public class PresignedUrlGenerator {
+
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'")
+            .withZone(ZoneOffset.UTC);
+    private static final Duration MAX_EXPIRY = Duration.ofDays(7);
+
+    private final HttpUrl endpoint;
+    private final String host;
+    private final String bucket;
+    private final String region;
+    private final String accessKey;
+    private final String secretKey;
+    private final Duration window;
+    private final int expirySeconds;
+    private final Clock clock;
+    private final Cache<String, SignedUrl> cache;
+
+    public PresignedUrlGenerator(@Value("${minio.endpoint}") String endpoint,
+                                 @Value("${minio.bucket}") String bucket,
+                                 @Value("${minio.region:us-east-1}") String region,
+                                 @Value("${minio.access-key}") String accessKey,
+                                 @Value("${minio.secret-key}") String secretKey,
+                                 @Value("${minio.presign.validity:PT3H}") Duration validity,
+                                 @Value("${minio.presign.window:PT1H}") Duration window,
+                                 @Value("${minio.presign.cache-size:10000}") long cacheSize,
+                                 MeterRegistry meterRegistry) {
+        this(endpoint, bucket, region, accessKey, secretKey, validity, window, cacheSize, meterRegistry, Clock.systemUTC());
+    }
+
+    PresignedUrlGenerator(String endpoint, String bucket, String region, String accessKey, String secretKey,
+                          Duration validity, Duration window, long cacheSize, MeterRegistry meterRegistry,
+                          Clock clock) {
+        if (validity.plus(window).compareTo(MAX_EXPIRY) > 0) {
+            throw new IllegalArgumentException("minio.presign.validity + window must not exceed 7 days");
+        }
+        this.endpoint = HttpUrl.get(endpoint);
+        this.host = hostHeader(this.endpoint);
+        this.bucket = bucket;
+        this.region = region;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.window = window;
+        this.expirySeconds = Math.toIntExact(validity.plus(window).toSeconds());
+        this.clock = clock;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(window)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, cache, "minio.presigned.urls");
+    }
+
+    /**
+     * @param objectName имя объекта
+     * @return GET ссылка, одинаковая для всех вызовов в пределах текущего окна
+     */
+    public String presignedGetUrl(String objectName) {
+        Instant windowStart = windowStart(clock.instant());
+        SignedUrl cached = cache.getIfPresent(objectName);
+        if (cached != null && cached.windowStart().equals(windowStart)) {
+            return cached.url();
+        }
+        String url = sign(objectName, windowStart, expirySeconds, false);
+        cache.put(objectName, new SignedUrl(windowStart, url));
+        return url;
+    }
+
+    /**
+     * @param objectName имя объекта
+     * @param validity   срок действия ссылки, не больше 7 дней
+     * @return PUT ссылка; заголовки запроса, кроме {@code Host}, в подпись не входят
+     */
+    public String presignedPutUrl(String objectName, Duration validity) {
+        if (validity.compareTo(MAX_EXPIRY) > 0) {
+            throw new IllegalArgumentException("Presigned URL validity must not exceed 7 days");
+        }
+        return sign(objectName, clock.instant(), Math.toIntExact(validity.toSeconds()), true);
+    }
+
+    private String sign(String objectName, Instant signedAt, int expirySeconds, boolean upload) {
+        HttpUrl url = endpoint.newBuilder()
+                .addPathSegment(bucket)
+                .addEncodedPathSegments(S3Escaper.encodePath(objectName))
+                .build();
+        Request request = new Request.Builder()
+                .url(url)
+                .header("Host", host)
+                .header("x-amz-date", AMZ_DATE.format(signedAt))
+                .method(upload ? "PUT" : "GET", upload ? RequestBody.create(new byte[0]) : null)
+                .build();
+        try {
+            return Signer.presignV4(request, region, accessKey, secretKey, expirySeconds).toString();
+        } catch (GeneralSecurityException e) {
+            throw new FileStorageException("Error generating presigned URL", e);
+        }
+    }
+
+    private Instant windowStart(Instant now) {
+        long windowMillis = window.toMillis();
+        return Instant.ofEpochMilli(now.toEpochMilli() / windowMillis * windowMillis);
+    }
+
+    private static String hostHeader(HttpUrl url) {
+        return url.port() == HttpUrl.defaultPort(url.scheme()) ? url.host() : url.host() + ":" + url.port();
+    }
+
+    private record SignedUrl(Instant windowStart, String url) {
+    }
+}
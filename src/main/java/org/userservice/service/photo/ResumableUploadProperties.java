@@ -0,0 +1,28 @@
+package org.userservice.service.photo;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "photo.resumable-upload")
+public class ResumableUploadProperties {
+    /**
+     * Время жизни сессии с момента создания. Должно быть меньше {@code photo.reconciler.grace-period}:
+     * части брошенных сессий удаляет {@link PhotoReconciler}, и части живой сессии он трогать не должен.
+     */
+    private Duration sessionTtl = Duration.ofHours(12);
+    /**
+     * Наименьший кусок, кроме последнего. Каждый кусок - отдельный объект в хранилище и запись в сессии,
+     * так что без нижней границы файл можно прислать миллионом однобайтовых кусков.
+     */
+    private DataSize minChunkSize = DataSize.ofKilobytes(256);
+    /**
+     * Сколько кусков может быть в одной сессии.
+     */
+    private int maxParts = 64;
+}
@@ -0,0 +1,329 @@
+package org.userservice.service.photo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.userservice.dto.photo.UploadSessionDto;
+import org.userservice.entity.UserPhoto;
+import org.userservice.exception.BadRequestException;
+import org.userservice.exception.FileStorageException;
+import org.userservice.exception.InvalidFileException;
+import org.userservice.exception.ResourceNotFoundException;
+import org.userservice.exception.UploadOffsetConflictException;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Возобновляемая загрузка фотографии частями.
+ * <p>
+ * Клиент создаёт сессию с объявленным размером и отправляет файл кусками, каждый со своим смещением.
+ * Принятый кусок сразу сохраняется в хранилище отдельным объектом {@code uploads/<uploadId>/<offset>-<id>},
+ * поэтому после обрыва связи клиент узнаёт принятое смещение и продолжает с него, а не начинает заново.
+ * Состояние сессии (владелец, размер, смещение, список частей) хранится в hash {@code photo:upload:<uploadId>}
+ * в Redis с TTL {@code photo.resumable-upload.session-ttl}, так что продолжить можно на любом узле.
+ * Смещение продвигается скриптом Lua атомарно: из двух одновременных кусков с одним смещением принимается один.
+ * Повтор уже принятого куска (ответ на него потерялся) подтверждается без повторной записи.
+ * Куски, кроме последнего, не меньше {@code min-chunk-size}, а всего их не больше {@code max-parts}:
+ * иначе одна сессия могла бы наплодить в хранилище и в Redis сколько угодно крошечных частей.
+ * <p>
+ * При завершении части склеиваются в {@code incoming/<userId>/<uploadId>} через {@link FileStorage#composeFile},
+ * после чего объект проверяется и становится фотографией так же, как при прямой загрузке
+ * ({@link DirectUploadService#confirmUpload}). Части удаляются при завершении и отмене; части брошенных сессий
+ * удаляет {@link PhotoReconciler}, поэтому сессия живёт меньше его {@code grace-period}.
+ */
+@Service
+@Slf4j
+public class ResumableUploadService {
+    static final String SESSION_KEY_PREFIX = "photo:upload:";
+    private static final String PARTS_PREFIX = "uploads/";
+    private static final String USER_ID = "userId";
+    private static final String SIZE = "size";
+    private static final String OFFSET = "offset";
+    private static final String PARTS = "parts";
+    private static final String EXPIRES_AT = "expiresAt";
+    private static final String COMPLETING = "completing";
+
+    /**
+     * Добавляет часть, если смещение сессии равно ожидаемому. Возвращает {принята (1/0), текущее смещение};
+     * для несуществующей сессии смещение -1.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> APPEND_PART = new DefaultRedisScript<>("""
+            local offset = redis.call('HGET', KEYS[1], 'offset')
+            if not offset then
+              return {0, -1}
+            end
+            if offset ~= ARGV[1] then
+              return {0, tonumber(offset)}
+            end
+            local parts = redis.call('HGET', KEYS[1], 'parts')
+            if parts == '' then parts = ARGV[3] else parts = parts .. ',' .. ARGV[3] end
+            redis.call('HSET', KEYS[1], 'offset', ARGV[2], 'parts', parts)
+            return {1, tonumber(ARGV[2])}
+            """, List.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final FileStorage fileStorage;
+    private final DirectUploadService directUploadService;
+    private final ResumableUploadProperties properties;
+    private final Counter chunksAccepted;
+    private final Counter chunksRepeated;
+    private final Counter chunksConflicted;
+    private final Counter completed;
+    private final Counter aborted;
+
+    public ResumableUploadService(RedisTemplate<String, String> redisTemplate,
+                                  FileStorage fileStorage,
+                                  DirectUploadService directUploadService,
+                                  ResumableUploadProperties properties,
+                                  @Value("${photo.reconciler.grace-period:PT24H}") Duration reconcilerGracePeriod,
+                                  MeterRegistry meterRegistry) {
+        if (properties.getSessionTtl().compareTo(reconcilerGracePeriod) >= 0) {
+            throw new IllegalArgumentException(
+                    "photo.resumable-upload.session-ttl must be shorter than photo.reconciler.grace-period");
+        }
+        this.redisTemplate = redisTemplate;
+        this.fileStorage = fileStorage;
+        this.directUploadService = directUploadService;
+        this.properties = properties;
+        this.chunksAccepted = chunks(meterRegistry, "accepted");
+        this.chunksRepeated = chunks(meterRegistry, "repeated");
+        this.chunksConflicted = chunks(meterRegistry, "conflict");
+        this.completed = sessions(meterRegistry, "completed");
+        this.aborted = sessions(meterRegistry, "aborted");
+    }
+
+    /**
+     * @param userId ID пользователя
+     * @param size   размер файла в байтах
+     * @return новая сессия с нулевым смещением
+     * @throws InvalidFileException если размер превышает лимит загрузки
+     */
+    public UploadSessionDto createSession(UUID userId, long size) {
+        if (size <= 0) {
+            throw new InvalidFileException("File is empty");
+        }
+        if (size > FileValidationService.MAX_FILE_SIZE) {
+            throw new InvalidFileException("File size exceeds maximum limit of 5MB");
+        }
+        UUID uploadId = UUID.randomUUID();
+        Instant expiresAt = Instant.now().plus(properties.getSessionTtl());
+        String key = SESSION_KEY_PREFIX + uploadId;
+        hash().putAll(key, Map.of(
+                USER_ID, userId.toString(),
+                SIZE, Long.toString(size),
+                OFFSET, "0",
+                PARTS, "",
+                EXPIRES_AT, expiresAt.toString()));
+        redisTemplate.expireAt(key, expiresAt);
+        log.info("Resumable upload {} of {} bytes started for user {}", uploadId, size, userId);
+        return new UploadSessionDto(uploadId, size, 0, expiresAt);
+    }
+
+    /**
+     * @param userId   ID пользователя
+     * @param uploadId ID сессии
+     * @return состояние сессии; {@code offset} - с какого байта продолжать
+     * @throws ResourceNotFoundException если сессии нет, она истекла или принадлежит другому пользователю
+     */
+    public UploadSessionDto getSession(UUID userId, UUID uploadId) {
+        return load(userId, uploadId).toDto();
+    }
+
+    /**
+     * Принимает очередной кусок файла.
+     *
+     * @param userId   ID пользователя
+     * @param uploadId ID сессии
+     * @param offset   смещение куска в файле; должно совпадать с текущим смещением сессии
+     * @param content  содержимое куска
+     * @param length   длина куска в байтах
+     * @return состояние сессии после куска
+     * @throws UploadOffsetConflictException если смещение не совпадает с принятым сервисом
+     * @throws BadRequestException если кусок не последний и меньше {@code min-chunk-size}
+     *                             или превышен {@code max-parts}
+     */
+    public UploadSessionDto appendChunk(UUID userId, UUID uploadId, long offset, InputStream content, long length) {
+        Session session = load(userId, uploadId);
+        if (length <= 0) {
+            throw new BadRequestException("Chunk is empty");
+        }
+        if (offset != session.offset()) {
+            return repeatedOrConflict(session, offset, length, session.offset());
+        }
+        if (offset + length > session.size()) {
+            throw new BadRequestException("Chunk ends at " + (offset + length)
+                    + ", beyond the declared size " + session.size());
+        }
+        boolean last = offset + length == session.size();
+        long minChunkSize = properties.getMinChunkSize().toBytes();
+        if (!last && length < minChunkSize) {
+            throw new BadRequestException("Chunk of " + length + " bytes is smaller than " + minChunkSize
+                    + "; only the last chunk may be smaller");
+        }
+        int partNumber = session.parts().size() + 1;
+        if (partNumber > properties.getMaxParts() || (partNumber == properties.getMaxParts() && !last)) {
+            throw new BadRequestException("Upload " + uploadId + " is limited to " + properties.getMaxParts()
+                    + " chunks; the last one must complete the file");
+        }
+
+        String part = String.format("%010d-%s", offset, UUID.randomUUID().toString().substring(0, 8));
+        fileStorage.uploadFile(partKey(uploadId, part), content, length, "application/octet-stream");
+        List<?> result = redisTemplate.execute(APPEND_PART, List.of(SESSION_KEY_PREFIX + uploadId),
+                Long.toString(offset), Long.toString(offset + length), part);
+        long current = ((Number) result.get(1)).longValue();
+        if (((Number) result.get(0)).intValue() == 1) {
+            chunksAccepted.increment();
+            return new UploadSessionDto(uploadId, session.size(), current, session.expiresAt());
+        }
+        deleteQuietly(partKey(uploadId, part));
+        if (current < 0) {
+            throw notFound(uploadId);
+        }
+        return repeatedOrConflict(session, offset, length, current);
+    }
+
+    /**
+     * Склеивает принятые части и делает результат фотографией пользователя. Сессия при этом закрывается;
+     * если файл не прошёл проверку, закрывается и она, и загрузку нужно начинать заново.
+     *
+     * @param userId   ID пользователя
+     * @param uploadId ID сессии
+     * @return сохранённая сущность {@link UserPhoto}
+     * @throws UploadOffsetConflictException если файл принят не полностью
+     */
+    public UserPhoto complete(UUID userId, UUID uploadId) {
+        Session session = load(userId, uploadId);
+        if (session.offset() != session.size()) {
+            throw new UploadOffsetConflictException("Upload " + uploadId + " has " + session.offset()
+                    + " of " + session.size() + " bytes", session.offset());
+        }
+        String key = SESSION_KEY_PREFIX + uploadId;
+        if (!Boolean.TRUE.equals(hash().putIfAbsent(key, COMPLETING, Instant.now().toString()))) {
+            throw new BadRequestException("Upload " + uploadId + " is already being completed");
+        }
+
+        String target = DirectUploadService.INCOMING_PREFIX + userId + "/" + uploadId;
+        UserPhoto photo;
+        try {
+            fileStorage.composeFile(session.parts(), target);
+            photo = directUploadService.confirmUpload(userId, target);
+        } catch (InvalidFileException e) {
+            discard(session);
+            throw e;
+        } catch (RuntimeException e) {
+            // Части на месте, завершение можно повторить
+            hash().delete(key, COMPLETING);
+            throw e;
+        }
+        discard(session);
+        completed.increment();
+        return photo;
+    }
+
+    /**
+     * Отменяет загрузку и удаляет принятые части.
+     *
+     * @param userId   ID пользователя
+     * @param uploadId ID сессии
+     */
+    public void abort(UUID userId, UUID uploadId) {
+        discard(load(userId, uploadId));
+        aborted.increment();
+        log.info("Resumable upload {} aborted", uploadId);
+    }
+
+    private UploadSessionDto repeatedOrConflict(Session session, long offset, long length, long current) {
+        if (offset + length == current) {
+            chunksRepeated.increment();
+            return new UploadSessionDto(session.uploadId(), session.size(), current, session.expiresAt());
+        }
+        chunksConflicted.increment();
+        throw new UploadOffsetConflictException("Upload " + session.uploadId() + " expects offset " + current
+                + ", got " + offset, current);
+    }
+
+    private Session load(UUID userId, UUID uploadId) {
+        Map<String, String> fields = hash().entries(SESSION_KEY_PREFIX + uploadId);
+        if (fields.isEmpty() || !userId.toString().equals(fields.get(USER_ID))) {
+            throw notFound(uploadId);
+        }
+        long size = Long.parseLong(fields.get(SIZE));
+        long offset = Long.parseLong(fields.get(OFFSET));
+        String names = fields.get(PARTS);
+        List<String> partNames = names == null || names.isEmpty() ? List.of() : Arrays.asList(names.split(","));
+        List<StoredObject> parts = new ArrayList<>(partNames.size());
+        for (int i = 0; i < partNames.size(); i++) {
+            long start = partOffset(partNames.get(i));
+            long end = i + 1 < partNames.size() ? partOffset(partNames.get(i + 1)) : offset;
+            parts.add(new StoredObject(partKey(uploadId, partNames.get(i)), end - start, "application/octet-stream"));
+        }
+        return new Session(uploadId, size, offset, parts, Instant.parse(fields.get(EXPIRES_AT)));
+    }
+
+    private void discard(Session session) {
+        List<String> failed = fileStorage.removeObjects(session.parts().stream().map(StoredObject::objectName).toList());
+        if (!failed.isEmpty()) {
+            log.warn("{} parts of upload {} were not deleted", failed.size(), session.uploadId());
+        }
+        redisTemplate.delete(SESSION_KEY_PREFIX + session.uploadId());
+    }
+
+    private void deleteQuietly(String objectKey) {
+        try {
+            fileStorage.deleteFile(objectKey);
+        } catch (FileStorageException e) {
+            log.warn("Could not delete rejected upload part {}: {}", objectKey, e.getMessage());
+        }
+    }
+
+    private HashOperations<String, String, String> hash() {
+        return redisTemplate.opsForHash();
+    }
+
+    private static String partKey(UUID uploadId, String part) {
+        return PARTS_PREFIX + uploadId + "/" + part;
+    }
+
+    private static long partOffset(String part) {
+        return Long.parseLong(part.substring(0, part.indexOf('-')));
+    }
+
+    private static ResourceNotFoundException notFound(UUID uploadId) {
+        return new ResourceNotFoundException("Upload " + uploadId + " not found or expired");
+    }
+
+    private static Counter chunks(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("photo.resumable.chunks")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static Counter sessions(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("photo.resumable.sessions")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Состояние сессии; размеры частей восстанавливаются по смещениям соседних.
+     */
+    private record Session(UUID uploadId, long size, long offset, List<StoredObject> parts, Instant expiresAt) {
+        UploadSessionDto toDto() {
+            return new UploadSessionDto(uploadId, size, offset, expiresAt);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package org.userservice.service.photo;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.minio.errors.ErrorResponseException;
+import io.minio.errors.ServerException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Выполняет обращения к объектному хранилищу с повторами, ограничением параллельности и hedging.
+ * <p>
+ * Повторы идут с экспоненциальной задержкой и джиттером, но только пока не истёк {@link StorageDeadline}
+ * (вне HTTP-запроса - собственный бюджет вызова {@code photo.storage.resilience.deadline}); повторяются
+ * только сетевые ошибки и ответы 5xx. Каждая попытка занимает разрешение bulkhead {@code fileStorage}
+ * из resilience4j, так что медленное хранилище не забирает все потоки Tomcat.
+ * <p>
+ * Для идемпотентных чтений {@link #hedged} запускает вторую попытку, если первая не ответила за p95
+ * времени ответа этой операции, и берёт первый успешный ответ. Такие чтения ждут ответа не дольше
+ * крайнего срока; прочие вызовы выполняются в потоке вызывающего, и длительность одной попытки
+ * ограничивают таймауты HTTP-клиента.
+ * <p>
+ * Метрики: {@code photo.storage.calls}, {@code photo.storage.retries}, {@code photo.storage.deadline.exceeded},
+ * {@code photo.storage.bulkhead.rejected}, {@code photo.storage.hedges} (outcome = won, lost)
+ * и {@code photo.storage.attempt} (все с тегом operation), а также {@code photo.storage.hedge.queue.depth}.
+ */
+@Component
+@Slf4j
+public class StorageCallExecutor {
+
+    static final String BULKHEAD = "fileStorage";
+
+    private final StorageResilienceProperties properties;
+    private final Bulkhead bulkhead;
+    private final ThreadPoolExecutor hedgeExecutor;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, OperationMeters> meters = new ConcurrentHashMap<>();
+
+    public StorageCallExecutor(StorageResilienceProperties properties,
+                               BulkheadRegistry bulkheadRegistry,
+                               MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.bulkhead = bulkheadRegistry.bulkhead(BULKHEAD);
+        this.meterRegistry = meterRegistry;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.hedgeExecutor = new ThreadPoolExecutor(properties.getHedgeThreads(), properties.getHedgeThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getHedgeQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "storage-hedge-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        Gauge.builder("photo.storage.hedge.queue.depth", hedgeExecutor, e -> e.getQueue().size())
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hedgeExecutor.shutdownNow();
+    }
+
+    /**
+     * Выполняет вызов с повторами.
+     *
+     * @param operation имя операции для метрик
+     * @param call      обращение к хранилищу
+     * @return результат вызова
+     * @throws Exception ошибка последней попытки или {@link TimeoutException}, если истёк крайний срок
+     */
+    public <T> T call(String operation, StorageCall<T> call) throws Exception {
+        return execute(operation, call, properties.getMaxAttempts(), false);
+    }
+
+    /**
+     * Выполняет вызов один раз (например, загрузку из потока, который нельзя перечитать).
+     */
+    public <T> T callOnce(String operation, StorageCall<T> call) throws Exception {
+        return execute(operation, call, 1, false);
+    }
+
+    /**
+     * Выполняет идемпотентное чтение с повторами и hedging.
+     */
+    public <T> T hedged(String operation, StorageCall<T> call) throws Exception {
+        return execute(operation, call, properties.getMaxAttempts(), properties.isHedgingEnabled());
+    }
+
+    private <T> T execute(String operation, StorageCall<T> call, int maxAttempts, boolean hedge) throws Exception {
+        OperationMeters operationMeters = meters(operation);
+        operationMeters.calls.increment();
+        Instant deadline = StorageDeadline.current().orElseGet(() -> Instant.now().plus(properties.getDeadline()));
+        Duration backoff = properties.getInitialBackoff();
+        for (int attempt = 1; ; attempt++) {
+            if (!Instant.now().isBefore(deadline)) {
+                operationMeters.deadlineExceeded.increment();
+                throw new TimeoutException("Storage deadline exceeded before " + operation);
+            }
+            try {
+                return hedge ? hedgedAttempt(operationMeters, call, deadline) : attempt(operationMeters, call);
+            } catch (Exception e) {
+                if (e instanceof TimeoutException) {
+                    operationMeters.deadlineExceeded.increment();
+                    throw e;
+                }
+                Duration pause = jitter(backoff);
+                if (attempt >= maxAttempts || !isRetryable(e)
+                        || Instant.now().plus(pause).isAfter(deadline)) {
+                    throw e;
+                }
+                log.warn("Storage {} failed (attempt {}), retrying in {} ms: {}",
+                        operation, attempt, pause.toMillis(), e.getMessage());
+                operationMeters.retries.increment();
+                sleep(pause);
+                backoff = min(backoff.multipliedBy(2), properties.getMaxBackoff());
+            }
+        }
+    }
+
+    private <T> T attempt(OperationMeters operationMeters, StorageCall<T> call) throws Exception {
+        if (!bulkhead.tryAcquirePermission()) {
+            operationMeters.bulkheadRejected.increment();
+            throw new StorageBusyException("Storage bulkhead is full");
+        }
+        long start = System.nanoTime();
+        try {
+            return call.execute();
+        } finally {
+            operationMeters.latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            bulkhead.onComplete();
+        }
+    }
+
+    private <T> T hedgedAttempt(OperationMeters operationMeters, StorageCall<T> call, Instant deadline)
+            throws Exception {
+        CompletionService<T> completion = new ExecutorCompletionService<>(hedgeExecutor);
+        List<Future<T>> attempts = new ArrayList<>(2);
+        try {
+            attempts.add(completion.submit(() -> attempt(operationMeters, call)));
+        } catch (RejectedExecutionException e) {
+            return attempt(operationMeters, call);
+        }
+        try {
+            Future<T> first = completion.poll(Math.min(hedgeDelay(operationMeters).toMillis(), remainingMillis(deadline)),
+                    TimeUnit.MILLISECONDS);
+            if (first == null && remainingMillis(deadline) > 0) {
+                try {
+                    attempts.add(completion.submit(() -> attempt(operationMeters, call)));
+                } catch (RejectedExecutionException ignored) {
+                    // пул занят - ждём только первую попытку
+                }
+            }
+            Exception failure = null;
+            for (int pending = attempts.size(); pending > 0; pending--) {
+                Future<T> done = first != null ? first : completion.poll(remainingMillis(deadline), TimeUnit.MILLISECONDS);
+                first = null;
+                if (done == null) {
+                    throw new TimeoutException("Storage deadline exceeded");
+                }
+                try {
+                    T result = done.get();
+                    if (attempts.size() > 1) {
+                        (done == attempts.get(0) ? operationMeters.hedgesLost : operationMeters.hedgesWon).increment();
+                    }
+                    return result;
+                } catch (ExecutionException e) {
+                    failure = e.getCause() instanceof Exception cause ? cause : e;
+                }
+            }
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        } finally {
+            attempts.forEach(attempt -> attempt.cancel(true));
+        }
+    }
+
+    private Duration hedgeDelay(OperationMeters operationMeters) {
+        Duration p95 = properties.getHedgeMaxDelay();
+        for (ValueAtPercentile percentile : operationMeters.latency.takeSnapshot().percentileValues()) {
+            if (percentile.percentile() == 0.95 && !Double.isNaN(percentile.value())) {
+                p95 = Duration.ofNanos((long) percentile.value(TimeUnit.NANOSECONDS));
+            }
+        }
+        return min(max(p95, properties.getHedgeMinDelay()), properties.getHedgeMaxDelay());
+    }
+
+    /**
+     * Повторяются только сбои сети и ответы 5xx; отсутствие объекта или отказ в доступе повтор не исправит.
+     */
+    static boolean isRetryable(Throwable e) {
+        if (e instanceof ErrorResponseException response) {
+            return response.response() != null && response.response().code() >= 500;
+        }
+        return e instanceof ServerException || e instanceof IOException;
+    }
+
+    private OperationMeters meters(String operation) {
+        return meters.computeIfAbsent(operation, name -> new OperationMeters(meterRegistry, name));
+    }
+
+    private static long remainingMillis(Instant deadline) {
+        return Math.max(0, Duration.between(Instant.now(), deadline).toMillis());
+    }
+
+    private static Duration jitter(Duration backoff) {
+        long millis = backoff.toMillis();
+        return Duration.ofMillis(millis / 2 + ThreadLocalRandom.current().nextLong(millis / 2 + 1));
+    }
+
+    private static void sleep(Duration pause) throws InterruptedException {
+        try {
+            Thread.sleep(pause.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    /**
+     * Обращение к хранилищу, которое может бросить проверяемое исключение клиента.
+     */
+    @FunctionalInterface
+    public interface StorageCall<T> {
+        T execute() throws Exception;
+    }
+
+    /**
+     * Bulkhead не выдал разрешение: хранилище уже обрабатывает максимум одновременных вызовов.
+     */
+    static class StorageBusyException extends Exception {
+        StorageBusyException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class OperationMeters {
+        final Counter calls;
+        final Counter retries;
+        final Counter deadlineExceeded;
+        final Counter bulkheadRejected;
+        final Counter hedgesWon;
+        final Counter hedgesLost;
+        final Timer latency;
+
+        OperationMeters(MeterRegistry meterRegistry, String operation) {
+            this.calls = counter(meterRegistry, "photo.storage.calls", operation);
+            this.retries = counter(meterRegistry, "photo.storage.retries", operation);
+            this.deadlineExceeded = counter(meterRegistry, "photo.storage.deadline.exceeded", operation);
+            this.bulkheadRejected = counter(meterRegistry, "photo.storage.bulkhead.rejected", operation);
+            this.hedgesWon = Counter.builder("photo.storage.hedges")
+                    .tag("operation", operation)
+                    .tag("outcome", "won")
+                    .register(meterRegistry);
+            this.hedgesLost = Counter.builder("photo.storage.hedges")
+                    .tag("operation", operation)
+                    .tag("outcome", "lost")
+                    .register(meterRegistry);
+            this.latency = Timer.builder("photo.storage.attempt")
+                    .tag("operation", operation)
+                    .publishPercentiles(0.95)
+                    .register(meterRegistry);
+        }
+
+        private static Counter counter(MeterRegistry meterRegistry, String name, String operation) {
+            return Counter.builder(name)
+                    .tag("operation", operation)
+                    .register(meterRegistry);
+        }
+    }
+}
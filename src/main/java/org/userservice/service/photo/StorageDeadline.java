@@ -0,0 +1,64 @@
+package org.userservice.service.photo;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Крайний срок обращений к хранилищу для текущего потока.
+ * <p>
+ * Бюджет открывает {@link StorageDeadlineInterceptor} на весь HTTP-запрос, поэтому повторы во всех вызовах
+ * хранилища (и повторы уровнем выше, например в {@code UserDetailsService.createProfile})
+ * расходуют один бюджет. Отсчёт начинается с первого обращения к хранилищу, а не с открытия:
+ * время приёма тела запроса (multipart или поток загрузки) бюджет не расходует.
+ * Вложенное открытие не продлевает уже действующий срок.
+ */
+public final class StorageDeadline {
+
+    private static final ThreadLocal<Budget> CURRENT = new ThreadLocal<>();
+
+    private StorageDeadline() {
+    }
+
+    /**
+     * @param budget бюджет времени, отсчитываемый от первого обращения к хранилищу
+     * @return область действия срока; закрывается в {@code try-with-resources}
+     */
+    public static Scope open(Duration budget) {
+        if (CURRENT.get() != null) {
+            return () -> {
+            };
+        }
+        CURRENT.set(new Budget(budget));
+        return CURRENT::remove;
+    }
+
+    /**
+     * Крайний срок текущей области; первый вызов запускает отсчёт.
+     */
+    static Optional<Instant> current() {
+        Budget budget = CURRENT.get();
+        return budget == null ? Optional.empty() : Optional.of(budget.deadline());
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final class Budget {
+        private final Duration budget;
+        private Instant deadline;
+
+        private Budget(Duration budget) {
+            this.budget = budget;
+        }
+
+        private Instant deadline() {
+            if (deadline == null) {
+                deadline = Instant.now().plus(budget);
+            }
+            return deadline;
+        }
+    }
+}
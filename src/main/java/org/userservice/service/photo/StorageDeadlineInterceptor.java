@@ -0,0 +1,52 @@
+package org.userservice.service.photo;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Открывает {@link StorageDeadline} на время обработки запроса контроллером.
+ * <p>
+ * Перехватчик вызывается после разбора multipart, а сам срок отсчитывается с первого обращения
+ * к хранилищу, так что медленная передача файла клиентом не съедает бюджет повторов.
+ */
+@Component
+public class StorageDeadlineInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String SCOPE_ATTRIBUTE = StorageDeadlineInterceptor.class.getName() + ".scope";
+
+    private final StorageResilienceProperties properties;
+
+    public StorageDeadlineInterceptor(StorageResilienceProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        request.setAttribute(SCOPE_ATTRIBUTE, StorageDeadline.open(properties.getDeadline()));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        close(request);
+    }
+
+    /**
+     * Асинхронный обработчик продолжит работу в другом потоке, а этот поток вернётся в пул Tomcat.
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        close(request);
+    }
+
+    private static void close(HttpServletRequest request) {
+        if (request.getAttribute(SCOPE_ATTRIBUTE) instanceof StorageDeadline.Scope scope) {
+            request.removeAttribute(SCOPE_ATTRIBUTE);
+            scope.close();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.userservice.service.photo;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "photo.storage.resilience")
+public class StorageResilienceProperties {
+    /**
+     * Общий бюджет времени на обращения к хранилищу в рамках одного HTTP-запроса, считая от первого
+     * обращения (или одного вызова вне запроса). Все повторы укладываются в него.
+     */
+    private Duration deadline = Duration.ofSeconds(5);
+    private int maxAttempts = 3;
+    private Duration initialBackoff = Duration.ofMillis(100);
+    private Duration maxBackoff = Duration.ofSeconds(1);
+    private boolean hedgingEnabled = true;
+    /**
+     * Задержка перед вторым чтением - p95 времени ответа, но в этих пределах.
+     */
+    private Duration hedgeMinDelay = Duration.ofMillis(50);
+    private Duration hedgeMaxDelay = Duration.ofSeconds(1);
+    private int hedgeThreads = 8;
+    private int hedgeQueueCapacity = 50;
+}
@@ -0,0 +1,16 @@
+package org.userservice.service.photo;
+
+/**
+ * Метаданные объекта в хранилище, достаточные для заголовков ответа без чтения содержимого.
+ *
+ * @param objectName  ключ объекта
+ * @param size        размер в байтах
+ * @param contentType MIME-тип, сохранённый при загрузке
+ * @param etag        ETag объекта, если хранилище его ведёт, иначе {@code null}
+ */
+public record StoredObject(String objectName, long size, String contentType, String etag) {
+
+    public StoredObject(String objectName, long size, String contentType) {
+        this(objectName, size, contentType, null);
+    }
+}
@@ -3,7 +3,6 @@ package org.userservice.service.photo;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.userservice.entity.User;
 import org.userservice.entity.UserDetails;
@@ -11,6 +10,9 @@ import org.userservice.entity.UserPhoto;
 import org.userservice.repo.UserDetailsRepository;
 import org.userservice.repo.UserPhotoRepository;
 import org.userservice.repo.UserRepository;
+
+import java.time.Instant;
+import java.util.Optional;
 import java.util.UUID;
 
 @Service
@@ -21,7 +23,7 @@ public class UserPhotoCrudService {
     private final UserPhotoRepository userPhotoRepository;
 
     @Transactional
-    public UserPhoto updateOrCreateUserPhoto(UUID userId, String filePath) {
+    public UserPhoto updateOrCreateUserPhoto(UUID userId, String filePath, PhotoMetadata metadata) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
         UserDetails details = userDetailsRepository.findByUser(user)
@@ -29,12 +31,14 @@ public class UserPhotoCrudService {
         return userPhotoRepository.findByUserDetailsId(details.getId())
                 .map(existing -> {
                     existing.setFilePath(filePath);
+                    applyMetadata(existing, metadata);
                     return userPhotoRepository.save(existing);
                 })
                 .orElseGet(() -> {
                     UserPhoto newPhoto = new UserPhoto();
                     newPhoto.setUserDetails(details);
                     newPhoto.setFilePath(filePath);
+                    applyMetadata(newPhoto, metadata);
                     return userPhotoRepository.save(newPhoto);
                 });
     }
@@ -46,16 +50,27 @@ public class UserPhotoCrudService {
                 .orElseThrow(() -> new EntityNotFoundException("Photo not found"));
     }
 
-    @Transactional(propagation = Propagation.MANDATORY)
-    public UserPhoto createPhotoEntity(UserDetails userDetails, String filePath) {
-        UserPhoto photo = new UserPhoto();
-        photo.setFilePath(filePath);
-        photo.setUserDetails(userDetails);
-        return userPhotoRepository.save(photo);
+    /**
+     * В отличие от {@link #getPhotoForUser(UUID)} отсутствие фото не исключение, поэтому
+     * не помечает транзакцию вызывающего на откат.
+     */
+    @Transactional(readOnly = true)
+    public Optional<UserPhoto> findPhotoForUser(UUID userId) {
+        return userDetailsRepository.findByUserId(userId)
+                .flatMap(details -> userPhotoRepository.findByUserDetailsId(details.getId()));
     }
 
     @Transactional
     public void deleteUserPhoto(UserPhoto photo) {
         userPhotoRepository.delete(photo);
     }
+
+    private static void applyMetadata(UserPhoto photo, PhotoMetadata metadata) {
+        photo.setContentType(metadata.contentType());
+        photo.setSizeBytes(metadata.size());
+        photo.setContentHash(metadata.contentHash());
+        photo.setWidth(metadata.width());
+        photo.setHeight(metadata.height());
+        photo.setUploadedAt(Instant.now());
+    }
 }
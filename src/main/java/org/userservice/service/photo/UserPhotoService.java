@@ -3,16 +3,24 @@ package org.userservice.service.photo;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
-import org.userservice.entity.UserDetails;
 import org.userservice.entity.UserPhoto;
+import org.userservice.exception.FileStorageException;
 import org.userservice.exception.PhotoServiceException;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.UUID;
 
 
@@ -25,6 +33,7 @@ import java.util.UUID;
  * <ul>
  *     <li>Загрузка новой фотографии с валидацией и заменой предыдущей</li>
  *     <li>Получение фотографии по ID пользователя</li>
+ *     <li>Отдача уменьшенных копий (см. {@link PhotoDerivativeService})</li>
  *     <li>Создание сущности {@link UserPhoto}</li>
  *     <li>Удаление фотографии из хранилища и БД</li>
  *     <li>Генерация pre-signed URL для доступа к фотографии</li>
@@ -37,13 +46,20 @@ import java.util.UUID;
 @RequiredArgsConstructor
 @Transactional
 public class UserPhotoService {
-    private final MinioFileStorageService fileStorageService;
+    private static final String CONTENT_PREFIX = "cas/";
+
+    private final FileStorage fileStorageService;
     private final FileValidationService fileValidationService;
     private final UserPhotoCrudService userPhotoCrudService;
+    private final PhotoCache photoCache;
+    private final PhotoDerivativeService derivativeService;
+    private final PhotoObjectService photoObjectService;
+    private final PhotoNormalizer photoNormalizer;
 
     /**
      * Загружает фотографию пользователя, валидирует файл, сохраняет его в хранилище и обновляет запись в БД.
-     * При наличии предыдущей фотографии — она удаляется из хранилища.
+     * Ключ объекта вычисляется по содержимому, поэтому уже сохранённый кем-то файл повторно не загружается.
+     * Ссылка на предыдущую фотографию освобождается; объект удаляется, когда на него никто не ссылается.
      * @param userId ID пользователя
      * @param file   файл изображения
      * @return сохранённая сущность {@link UserPhoto}
@@ -51,28 +67,12 @@ public class UserPhotoService {
      */
     public UserPhoto uploadUserPhoto(UUID userId, MultipartFile file) {
         log.info("Uploading photo for user {}", userId);
-        fileValidationService.validateImageFile(file);
-        log.info("File validation passed");
-        String filePath = generateFileName(userId, file);
-        log.info("Generated file path: {}", filePath);
-        try (InputStream inputStream = file.getInputStream()) {
-            fileStorageService.uploadFile(filePath, inputStream, file.getSize(), file.getContentType());
-            log.info("File successfully uploaded to MinIO");
-            UserPhoto existingPhoto = null;
-            try {
-                existingPhoto = userPhotoCrudService.getPhotoForUser(userId);
-            } catch (EntityNotFoundException ignored) {
-            }
-            UserPhoto saved = userPhotoCrudService.updateOrCreateUserPhoto(userId, filePath);
-            log.info("Photo record saved in DB: {}", saved.getFilePath());
-            if (existingPhoto != null && !existingPhoto.getFilePath().equals(filePath)) {
-                try {
-                    fileStorageService.deleteFile(existingPhoto.getFilePath());
-                } catch (Exception e) {
-                    log.warn("Failed to delete old photo file: {}", existingPhoto.getFilePath(), e);
-                }
-            }
-            return saved;
+        ImageInfo image = fileValidationService.validateImageFile(file);
+        log.info("File validation passed: {} {}x{}", image.mediaType(), image.width(), image.height());
+        try {
+            PreparedPhoto photo = store(file, image);
+            log.info("Photo stored as {}", photo.key());
+            return replaceUserPhoto(userId, photo.key(), photo.metadata());
         } catch (IOException e) {
             log.error("IOException during upload", e);
             throw new PhotoServiceException("Error reading uploaded file", e);
@@ -94,40 +94,127 @@ public class UserPhotoService {
     }
 
     /**
-     * Загружает фото в MinIO без создания записи в БД. Используется как вспомогательный метод.
-     * @param filePath путь к файлу (ключ в хранилище)
-     * @param file     файл изображения
-     * @throws PhotoServiceException если произошла ошибка при загрузке
+     * Возвращает запись о фотографии пользователя, не обращаясь к хранилищу.
+     * @param userId ID пользователя
+     * @return сущность {@link UserPhoto}
+     * @throws EntityNotFoundException если фото не найдено
      */
-    public void uploadPhotoToStorage(String filePath, MultipartFile file) {
-        fileValidationService.validateImageFile(file);
-        try (InputStream inputStream = file.getInputStream()) {
-            fileStorageService.uploadFile(filePath, inputStream, file.getSize(), file.getContentType());
-        } catch (IOException e) {
-            throw new PhotoServiceException("Error uploading photo", e);
+    @Transactional(readOnly = true)
+    public UserPhoto getPhotoRecord(UUID userId) {
+        return userPhotoCrudService.getPhotoForUser(userId);
+    }
+
+    /**
+     * Возвращает источник содержимого фотографии: локальный кеш или хранилище.
+     * @param photo сущность {@link UserPhoto}
+     * @return источник с метаданными и телом ответа
+     */
+    public PhotoSource openPhoto(UserPhoto photo) {
+        return photoCache.get(photo.getFilePath(), fileStorageService, storedObjectOf(photo).orElse(null));
+    }
+
+    /**
+     * Метаданные того, что отдаст {@link #openPhoto(UserPhoto, int)}, без чтения содержимого. Для оригинала
+     * они берутся из записи в БД; хранилище опрашивается только для уменьшенной копии, которой нет в кеше,
+     * и для старых записей без метаданных.
+     * @param photo сущность {@link UserPhoto}
+     * @param size  желаемая длина большей стороны в пикселях или {@code null} для оригинала
+     * @return ключ, размер и MIME-тип отдаваемого объекта
+     */
+    public StoredObject describePhoto(UserPhoto photo, Integer size) {
+        Optional<String> derivative = size == null ? Optional.empty() : derivativeKey(photo, size);
+        if (derivative.isPresent()) {
+            String key = derivative.get();
+            try {
+                if (derivativeService.isAvailable(key, photo.getFilePath())) {
+                    return photoCache.cached(key)
+                            .map(PhotoSource::metadata)
+                            .orElseGet(() -> fileStorageService.statFile(key));
+                }
+            } catch (FileStorageException e) {
+                log.warn("Photo derivative {} unavailable, describing original: {}", key, e.getMessage());
+            }
         }
+        return storedObjectOf(photo).orElseGet(() -> fileStorageService.statFile(photo.getFilePath()));
     }
 
     /**
-     * Создаёт сущность {@link UserPhoto} в базе данных без загрузки файла в хранилище.
-     *
-     * @param userDetails сущность {@link UserDetails}
-     * @param filePath    путь к файлу
-     * @return созданная сущность {@link UserPhoto}
+     * @param photo сущность {@link UserPhoto}
+     * @return размер и MIME-тип оригинала из записи в БД или пусто, если запись создана до их появления
      */
-    public UserPhoto createPhotoEntity(UserDetails userDetails, String filePath) {
-        return userPhotoCrudService.createPhotoEntity(userDetails, filePath);
+    public static Optional<StoredObject> storedObjectOf(UserPhoto photo) {
+        if (photo.getSizeBytes() == null || photo.getContentType() == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new StoredObject(photo.getFilePath(), photo.getSizeBytes(), photo.getContentType()));
+    }
+
+    /**
+     * Возвращает уменьшенную копию фотографии, если она уже построена, иначе оригинал.
+     * Какой объект отдан, видно по {@code metadata().objectName()}.
+     * @param photo сущность {@link UserPhoto}
+     * @param size  желаемая длина большей стороны в пикселях
+     * @return источник с метаданными и телом ответа
+     */
+    public PhotoSource openPhoto(UserPhoto photo, int size) {
+        Optional<String> derivative = derivativeKey(photo, size);
+        if (derivative.isPresent()) {
+            String key = derivative.get();
+            try {
+                if (derivativeService.isAvailable(key, photo.getFilePath())) {
+                    return photoCache.get(key, fileStorageService);
+                }
+            } catch (FileStorageException e) {
+                log.warn("Photo derivative {} unavailable, serving original: {}", key, e.getMessage());
+            }
+        }
+        return openPhoto(photo);
+    }
+
+    /**
+     * @param photo сущность {@link UserPhoto}
+     * @param size  желаемая длина большей стороны в пикселях
+     * @return ключ копии подходящего размера (построенной или нет) или пусто, если подходит только оригинал
+     */
+    public Optional<String> derivativeKey(UserPhoto photo, int size) {
+        OptionalInt resolved = derivativeService.resolveSize(size);
+        return resolved.isPresent()
+                ? Optional.of(PhotoDerivativeService.derivativeKey(photo.getFilePath(), resolved.getAsInt()))
+                : Optional.empty();
+    }
+
+    /**
+     * Версия фотографии: имя объекта без префикса и расширения, то есть хеш содержимого
+     * ({@code cas/<sha256>}) или UUID прямой загрузки. Меняется вместе с содержимым,
+     * поэтому годится и как ETag, и как параметр {@code v} неизменяемой ссылки.
+     * @param photo сущность {@link UserPhoto}
+     * @return строка версии
+     */
+    public static String versionOf(UserPhoto photo) {
+        return versionOf(photo.getFilePath());
     }
 
     /**
-     * Удаляет фотографию пользователя из хранилища и БД.
+     * Версия конкретного объекта: имя без префикса и расширения. Для уменьшенной копии
+     * включает размер, поэтому копии и оригинал различаются по ETag.
+     * @param filePath ключ объекта
+     * @return строка версии
+     */
+    public static String versionOf(String filePath) {
+        int start = filePath.lastIndexOf('/') + 1;
+        int end = filePath.lastIndexOf('.');
+        return filePath.substring(start, end > start ? end : filePath.length());
+    }
+
+    /**
+     * Удаляет фотографию пользователя из БД; объект в хранилище удаляется, если на него больше никто не ссылается.
      * @param userId ID пользователя
      * @throws EntityNotFoundException если фотография не найдена
      */
     public void deleteUserPhoto(UUID userId) {
         UserPhoto userPhoto = userPhotoCrudService.getPhotoForUser(userId);
-        fileStorageService.deleteFile(userPhoto.getFilePath());
         userPhotoCrudService.deleteUserPhoto(userPhoto);
+        photoObjectService.release(userPhoto.getFilePath());
     }
 
     /**
@@ -140,16 +227,125 @@ public class UserPhotoService {
     }
 
     /**
-     * Генерирует уникальное имя файла с учётом ID пользователя и расширения файла.
+     * Ключ объекта по содержимому: {@code cas/<sha256>.<ext>}. Содержимое читается потоком,
+     * без загрузки в память целиком.
+     * @param content сохраняемое содержимое
+     * @param image   тип изображения, определённый при валидации
+     * @return ключ объекта
+     * @throws IOException если содержимое не удалось прочитать
+     */
+    public String contentKey(InputStreamSource content, ImageInfo image) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream inputStream = new DigestInputStream(content.getInputStream(), digest)) {
+            inputStream.transferTo(OutputStream.nullOutputStream());
+        }
+        return CONTENT_PREFIX + HexFormat.of().formatHex(digest.digest()) + image.extension();
+    }
+
+    /**
+     * Готовит фотографию к сохранению: нормализует изображение, если {@link PhotoNormalizer} его вернул,
+     * и вычисляет ключ по тому, что реально будет записано, поэтому одинаковые загрузки по-прежнему совпадают.
+     * @param file  файл изображения
+     * @param image тип изображения, определённый при валидации
+     * @return сохраняемое содержимое и его ключ
+     * @throws IOException если содержимое не удалось прочитать
+     */
+    public PreparedPhoto prepare(MultipartFile file, ImageInfo image) throws IOException {
+        Optional<PhotoNormalizer.NormalizedPhoto> normalized = photoNormalizer.normalize(file, image);
+        if (normalized.isPresent()) {
+            byte[] content = normalized.get().content();
+            log.info("Photo normalized from {} to {} bytes", file.getSize(), content.length);
+            ByteArrayResource resource = new ByteArrayResource(content);
+            return new PreparedPhoto(resource, content.length, normalized.get().image(),
+                    contentKey(resource, normalized.get().image()));
+        }
+        return new PreparedPhoto(file, file.getSize(), image, contentKey(file, image));
+    }
+
+    /**
+     * Делает уже записанный в хранилище объект фотографией пользователя. Если объект успели удалить
+     * как неиспользуемый, он записывается заново под блокировкой счётчика ссылок.
      * @param userId ID пользователя
-     * @param file   загружаемый файл
-     * @return уникальный путь к файлу
-     * @throws PhotoServiceException если имя файла отсутствует
+     * @param photo  подготовленная фотография
+     * @return сохранённая сущность {@link UserPhoto}
+     * @throws IOException если содержимое не удалось прочитать для повторной записи
+     */
+    public UserPhoto attachStoredPhoto(UUID userId, PreparedPhoto photo) throws IOException {
+        if (photoObjectService.retain(photo.key())) {
+            if (!fileStorageService.exists(photo.key())) {
+                upload(photo);
+            }
+            derivativeService.schedule(photo.key());
+        }
+        return replaceUserPhoto(userId, photo.key(), photo.metadata());
+    }
+
+    /**
+     * Делает фотографией пользователя объект, который клиент записал в хранилище сам и который уже
+     * проверен (см. {@link DirectUploadService}). Ключ такого объекта уникален, так что ссылка на него первая.
+     * @param userId    ID пользователя
+     * @param objectKey ключ объекта
+     * @param metadata  метаданные, полученные при проверке объекта
+     * @return сохранённая сущность {@link UserPhoto}
+     */
+    public UserPhoto attachUploadedObject(UUID userId, String objectKey, PhotoMetadata metadata) {
+        if (photoObjectService.retain(objectKey)) {
+            derivativeService.schedule(objectKey);
+        }
+        return replaceUserPhoto(userId, objectKey, metadata);
+    }
+
+    private PreparedPhoto store(MultipartFile file, ImageInfo image) throws IOException {
+        PreparedPhoto photo = prepare(file, image);
+        if (photoObjectService.retain(photo.key())) {
+            upload(photo);
+            log.info("File successfully uploaded to MinIO");
+            derivativeService.schedule(photo.key());
+        } else {
+            log.info("Identical photo already stored, upload skipped");
+        }
+        return photo;
+    }
+
+    private void upload(PreparedPhoto photo) throws IOException {
+        try (InputStream inputStream = photo.content().getInputStream()) {
+            // Тип по сигнатуре файла, а не заявленный клиентом: с ним фото и будет отдаваться
+            fileStorageService.uploadFile(photo.key(), inputStream, photo.size(), photo.image().mediaType());
+        }
+    }
+
+    /**
+     * Записывает новый ключ в фотографию пользователя и освобождает ссылку предыдущей записи.
+     * Ссылка на новый ключ к этому моменту уже добавлена, поэтому при повторной загрузке того же
+     * содержимого освобождение лишь возвращает счётчик к одной ссылке и объект не удаляет.
+     */
+    private UserPhoto replaceUserPhoto(UUID userId, String filePath, PhotoMetadata metadata) {
+        // Запись управляемая: после updateOrCreateUserPhoto в ней будет уже новый ключ
+        Optional<String> previousKey = userPhotoCrudService.findPhotoForUser(userId).map(UserPhoto::getFilePath);
+        UserPhoto saved = userPhotoCrudService.updateOrCreateUserPhoto(userId, filePath, metadata);
+        log.info("Photo record saved in DB: {}", saved.getFilePath());
+        previousKey.ifPresent(photoObjectService::release);
+        return saved;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Содержимое, которое будет записано в хранилище, и его ключ.
      */
-    public String generateFileName(UUID userId, MultipartFile file) {
-        String originalFilename = Optional.ofNullable(file.getOriginalFilename())
-                .orElseThrow(() -> new PhotoServiceException("Filename is missing"));
-        String extension = originalFilename.substring(originalFilename.lastIndexOf('.'));
-        return userId + "/" + UUID.randomUUID() + extension;
+    public record PreparedPhoto(InputStreamSource content, long size, ImageInfo image, String key) {
+
+        /**
+         * Ключ {@code cas/<sha256>.<ext>} содержит хеш содержимого, так что он берётся из ключа.
+         */
+        public PhotoMetadata metadata() {
+            return PhotoMetadata.of(image, size, versionOf(key));
+        }
     }
-}
\ No newline at end of file
+}
@@ -3,13 +3,13 @@ package org.userservice.utils;
 import org.springframework.stereotype.Component;
 import org.userservice.dto.photo.UserPhotoDto;
 import org.userservice.entity.UserPhoto;
-import org.userservice.service.photo.MinioFileStorageService;
+import org.userservice.service.photo.FileStorage;
 
 @Component
 public class UserPhotoMapper {
-    private final MinioFileStorageService fileStorageService;
+    private final FileStorage fileStorageService;
 
-    public UserPhotoMapper(MinioFileStorageService fileStorageService) {
+    public UserPhotoMapper(FileStorage fileStorageService) {
         this.fileStorageService = fileStorageService;
     }
 
@@ -18,7 +18,13 @@ public class UserPhotoMapper {
                 photo.getId(),
                 photo.getUserDetails().getUser().getId(),
                 photo.getFilePath(),
-                fileStorageService.generatePresignedUrl(photo.getFilePath())
+                fileStorageService.generatePresignedUrl(photo.getFilePath()),
+                photo.getContentType(),
+                photo.getSizeBytes(),
+                photo.getContentHash(),
+                photo.getWidth(),
+                photo.getHeight(),
+                photo.getUploadedAt()
         );
     }
 }
\ No newline at end of file
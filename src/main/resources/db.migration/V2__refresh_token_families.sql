@@ -0,0 +1,11 @@
+-- Refresh-токены хранятся как SHA-256 хеш (64 hex символа) и группируются в семейства ротации
+ALTER TABLE refresh_tokens ADD COLUMN IF NOT EXISTS family_id VARCHAR(36);
+UPDATE refresh_tokens SET family_id = id WHERE family_id IS NULL;
+ALTER TABLE refresh_tokens ALTER COLUMN family_id SET NOT NULL;
+
+DROP INDEX IF EXISTS idx_refresh_token_token;
+CREATE UNIQUE INDEX IF NOT EXISTS idx_refresh_token_token ON refresh_tokens(token);
+CREATE INDEX IF NOT EXISTS idx_refresh_token_family_id ON refresh_tokens(family_id);
+-- Ключ пагинации для фоновой очистки истёкших токенов
+CREATE INDEX IF NOT EXISTS idx_refresh_token_expiry_id ON refresh_tokens(expiry_date, id);
+DROP INDEX IF EXISTS idx_refresh_token_expiry_date;
@@ -0,0 +1,13 @@
+-- Объекты фотографий, адресуемые по содержимому, со счётчиком ссылок из user_photos
+CREATE TABLE IF NOT EXISTS photo_objects (
+    object_key VARCHAR(100) PRIMARY KEY,
+    ref_count INTEGER NOT NULL CHECK (ref_count >= 0),
+    created_at TIMESTAMP NOT NULL DEFAULT now()
+    );
+
+-- Уже загруженные фотографии становятся объектами с одной ссылкой
+INSERT INTO photo_objects (object_key, ref_count)
+SELECT file_path, COUNT(*) FROM user_photos GROUP BY file_path
+ON CONFLICT (object_key) DO NOTHING;
+
+CREATE INDEX IF NOT EXISTS idx_user_photos_file_path ON user_photos(file_path);
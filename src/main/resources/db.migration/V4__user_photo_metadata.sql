@@ -0,0 +1,13 @@
+-- Метаданные фотографии, чтобы HEAD и условные запросы обходились без хранилища
+ALTER TABLE user_photos
+    ADD COLUMN IF NOT EXISTS content_type VARCHAR(50),
+    ADD COLUMN IF NOT EXISTS size_bytes BIGINT,
+    ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64),
+    ADD COLUMN IF NOT EXISTS width INTEGER,
+    ADD COLUMN IF NOT EXISTS height INTEGER,
+    ADD COLUMN IF NOT EXISTS uploaded_at TIMESTAMP;
+
+-- Ключ объекта, адресуемого по содержимому, и есть его SHA-256; остальное у старых записей заполнится при следующей загрузке
+UPDATE user_photos
+SET content_hash = substring(file_path FROM 5 FOR 64)
+WHERE content_hash IS NULL AND file_path ~ '^cas/[0-9a-f]{64}\.';
@@ -0,0 +1,72 @@
+package org.userservice.config;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinioHttpMetricsTest {
+
+    @Test
+    void operation_shouldNameS3Requests() {
+        assertEquals("get_object", MinioHttpMetrics.operation(request("GET", "/photos/cas/a.jpg", null)));
+        assertEquals("list_objects", MinioHttpMetrics.operation(request("GET", "/photos?list-type=2", null)));
+        assertEquals("stat_object", MinioHttpMetrics.operation(request("HEAD", "/photos/cas/a.jpg", null)));
+        assertEquals("put_object", MinioHttpMetrics.operation(request("PUT", "/photos/cas/a.jpg", new byte[1])));
+        assertEquals("remove_objects", MinioHttpMetrics.operation(request("POST", "/photos?delete", new byte[1])));
+    }
+
+    @Test
+    void calls_shouldRecordConnectionReuseAndOutcome() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            int status = exchange.getRequestURI().getPath().endsWith("missing") ? 404 : 200;
+            byte[] body = "ok".getBytes();
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ConnectionPool pool = new ConnectionPool();
+        Dispatcher dispatcher = new Dispatcher();
+        OkHttpClient client = new OkHttpClient.Builder()
+                .connectionPool(pool)
+                .dispatcher(dispatcher)
+                .eventListenerFactory(new MinioHttpMetrics(meterRegistry, pool, dispatcher))
+                .build();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        try {
+            for (String path : new String[]{"/photos/a.jpg", "/photos/missing"}) {
+                try (Response response = client.newCall(new Request.Builder().url(base + path).build()).execute()) {
+                    response.body().bytes();
+                }
+            }
+        } finally {
+            server.stop(0);
+        }
+
+        assertEquals(1, meterRegistry.get("minio.http.connections").tag("state", "new").counter().count());
+        assertEquals(1, meterRegistry.get("minio.http.connections").tag("state", "reused").counter().count());
+        assertEquals(1, meterRegistry.get("minio.http.requests")
+                .tag("operation", "get_object").tag("outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get("minio.http.requests")
+                .tag("operation", "get_object").tag("outcome", "client_error").timer().count());
+    }
+
+    private static Request request(String method, String path, byte[] body) {
+        return new Request.Builder()
+                .url("http://minio:9000" + path)
+                .method(method, body == null ? null : RequestBody.create(body))
+                .build();
+    }
+}
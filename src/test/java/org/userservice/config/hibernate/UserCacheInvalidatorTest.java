@@ -0,0 +1,152 @@
+package org.userservice.config.hibernate;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.cache.spi.access.NaturalIdDataAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.userservice.entity.User;
+import org.userservice.repo.UserRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:user-cache")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserCacheInvalidatorTest {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+    private final RedisMessageListenerContainer listenerContainer = mock(RedisMessageListenerContainer.class);
+    private UserCacheInvalidator invalidator;
+    private User alice;
+    private User bob;
+
+    @BeforeEach
+    void setUp() {
+        invalidator = new UserCacheInvalidator(redisTemplate, listenerContainer, entityManagerFactory);
+        invalidator.init();
+        alice = cached("alice-" + UUID.randomUUID());
+        bob = cached("bob-" + UUID.randomUUID());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void evictAfterCommit_shouldBroadcastAndEvictOnlyChangedUserAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        invalidator.evictAfterCommit(alice.getId(), alice.getUserName());
+
+        verifyNoInteractions(redisTemplate);
+        assertTrue(naturalIdCached(alice));
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(redisTemplate).convertAndSend(UserCacheInvalidator.CHANNEL, alice.getId() + ":" + alice.getUserName());
+        assertFalse(entityCached(alice));
+        assertFalse(naturalIdCached(alice));
+        assertTrue(entityCached(bob));
+        assertTrue(naturalIdCached(bob));
+    }
+
+    @Test
+    void evictAfterCommit_shouldNotBroadcastOnRollback() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        invalidator.evictAfterCommit(alice.getId(), alice.getUserName());
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        verify(redisTemplate, never()).convertAndSend(anyString(), any());
+        assertTrue(entityCached(alice));
+        assertTrue(naturalIdCached(alice));
+    }
+
+    @Test
+    void message_shouldEvictUserOnThisNodeAndIgnoreGarbage() {
+        ArgumentCaptor<MessageListener> listener = ArgumentCaptor.forClass(MessageListener.class);
+        verify(listenerContainer).addMessageListener(listener.capture(), any(Topic.class));
+
+        listener.getValue().onMessage(message("not-a-uuid:" + alice.getUserName()), null);
+        assertTrue(entityCached(alice));
+
+        listener.getValue().onMessage(message(bob.getId().toString()), null);
+        assertFalse(entityCached(bob));
+        assertTrue(naturalIdCached(bob));
+
+        listener.getValue().onMessage(message(alice.getId() + ":" + alice.getUserName()), null);
+        assertFalse(entityCached(alice));
+        assertFalse(naturalIdCached(alice));
+        assertTrue(naturalIdCached(bob));
+    }
+
+    /**
+     * Сохраняет пользователя и читает его по имени, чтобы он попал в оба региона.
+     */
+    private User cached(String userName) {
+        User user = new User();
+        user.setUserName(userName);
+        user.setPasswordHash("hash");
+        user = userRepository.save(user);
+        userRepository.findByUserName(userName).orElseThrow();
+        assertTrue(entityCached(user));
+        assertTrue(naturalIdCached(user));
+        return user;
+    }
+
+    private boolean entityCached(User user) {
+        return entityManagerFactory.getCache().contains(User.class, user.getId());
+    }
+
+    private boolean naturalIdCached(User user) {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        EntityPersister persister = sessionFactory.getMappingMetamodel().getEntityDescriptor(User.class);
+        NaturalIdDataAccess naturalIdAccess = persister.getNaturalIdCacheAccessStrategy();
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            return naturalIdAccess.contains(naturalIdAccess.generateCacheKey(user.getUserName(), persister,
+                    (SharedSessionContractImplementor) session));
+        }
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(UserCacheInvalidator.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}
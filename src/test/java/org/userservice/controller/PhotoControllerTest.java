@@ -0,0 +1,158 @@
+package org.userservice.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.userservice.entity.UserPhoto;
+import org.userservice.service.photo.DirectUploadService;
+import org.userservice.service.photo.PhotoSource;
+import org.userservice.service.photo.StoredObject;
+import org.userservice.service.photo.UserPhotoService;
+import org.userservice.utils.UserPhotoMapper;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class PhotoControllerTest {
+
+    private static final UUID USER_ID = UUID.randomUUID();
+    private static final String OBJECT = "cas/abc123.jpg";
+    private static final String ETAG = "\"abc123\"";
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.US_ASCII);
+    private static final StoredObject METADATA = new StoredObject(OBJECT, CONTENT.length, "image/jpeg");
+
+    private final UserPhotoService photoService = mock(UserPhotoService.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        UserPhoto photo = new UserPhoto();
+        photo.setFilePath(OBJECT);
+        when(photoService.getPhotoRecord(USER_ID)).thenReturn(photo);
+        when(photoService.openPhoto(photo)).thenAnswer(invocation ->
+                new PhotoSource.Memory(METADATA, ByteBuffer.wrap(CONTENT).asReadOnlyBuffer(), bytes -> { }));
+        when(photoService.describePhoto(photo, null)).thenReturn(METADATA);
+        mockMvc = MockMvcBuilders.standaloneSetup(new PhotoController(photoService,
+                mock(DirectUploadService.class), mock(UserPhotoMapper.class))).build();
+    }
+
+    @Test
+    void getPhoto_shouldServeWholePhotoWithRevalidationForUnversionedLink() throws Exception {
+        perform(get("/api/photos/{userId}", USER_ID))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(CONTENT))
+                .andExpect(header().string(HttpHeaders.ETAG, ETAG))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, CONTENT.length))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"));
+    }
+
+    @Test
+    void getPhoto_shouldMarkOnlyCurrentVersionedLinkImmutable() throws Exception {
+        perform(get("/api/photos/{userId}", USER_ID).param("v", "abc123"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("max-age=31536000")))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("immutable")));
+
+        perform(get("/api/photos/{userId}", USER_ID).param("v", "stale"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"));
+    }
+
+    @Test
+    void getPhoto_shouldServeSingleRange() throws Exception {
+        perform(get("/api/photos/{userId}", USER_ID).header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("2345"))
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 4));
+    }
+
+    @Test
+    void getPhoto_shouldHonourRangeOnlyWhenIfRangeMatches() throws Exception {
+        perform(get("/api/photos/{userId}", USER_ID)
+                .header(HttpHeaders.RANGE, "bytes=7-")
+                .header(HttpHeaders.IF_RANGE, ETAG))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("789"));
+
+        perform(get("/api/photos/{userId}", USER_ID)
+                .header(HttpHeaders.RANGE, "bytes=7-")
+                .header(HttpHeaders.IF_RANGE, "\"other\""))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(CONTENT))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void getPhoto_shouldRejectRangeOutsidePhoto() throws Exception {
+        perform(get("/api/photos/{userId}", USER_ID).header(HttpHeaders.RANGE, "bytes=20-30"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+    }
+
+    @Test
+    void getPhoto_shouldAnswer304WithoutOpeningPhoto() throws Exception {
+        perform(get("/api/photos/{userId}", USER_ID)
+                .param("v", "abc123")
+                .header(HttpHeaders.IF_NONE_MATCH, ETAG))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, ETAG))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("immutable")));
+
+        verify(photoService, never()).openPhoto(any());
+    }
+
+    @Test
+    void headPhoto_shouldDescribeResponseWithoutBody() throws Exception {
+        perform(head("/api/photos/{userId}", USER_ID).header(HttpHeaders.RANGE, "bytes=0-3"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string(""))
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 0-3/10"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 4))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"));
+
+        perform(head("/api/photos/{userId}", USER_ID).param("v", "abc123"))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, CONTENT.length))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("immutable")));
+
+        perform(head("/api/photos/{userId}", USER_ID).header(HttpHeaders.RANGE, "bytes=10-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+        verify(photoService, never()).openPhoto(any());
+    }
+
+    @Test
+    void headPhoto_shouldAnswer304WithoutDescribingPhoto() throws Exception {
+        perform(head("/api/photos/{userId}", USER_ID).header(HttpHeaders.IF_NONE_MATCH, "\"old\", " + ETAG))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, not(containsString("immutable"))));
+
+        verify(photoService, never()).describePhoto(any(), any());
+    }
+
+    /**
+     * Тело отдаётся {@code StreamingResponseBody}, то есть асинхронно; дожидаемся его, если запрос ушёл в async.
+     */
+    private ResultActions perform(MockHttpServletRequestBuilder request) throws Exception {
+        ResultActions actions = mockMvc.perform(request);
+        MvcResult result = actions.andReturn();
+        return result.getRequest().isAsyncStarted() ? mockMvc.perform(asyncDispatch(result)) : actions;
+    }
+}
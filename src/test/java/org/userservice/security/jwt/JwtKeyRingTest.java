@@ -0,0 +1,92 @@
+package org.userservice.security.jwt;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtKeyRingTest {
+
+    private static final Instant NOW = Instant.parse("2026-10-01T12:00:00Z");
+    private static final Duration LIFETIME = Duration.ofMinutes(15);
+
+    @Test
+    void signingVersion_shouldPickNewestActiveKeyAndSkipPrePublishedOne() {
+        JwtKeyRing ring = ring(NOW,
+                hmac("old", Instant.EPOCH, null),
+                hmac("current", NOW.minus(Duration.ofDays(1)), null),
+                hmac("next", NOW.plus(Duration.ofDays(1)), null));
+
+        assertEquals("current", ring.signingVersion(NOW).id());
+        assertEquals("next", ring.signingVersion(NOW.plus(Duration.ofDays(2))).id());
+        assertEquals(List.of("next", "current", "old"),
+                ring.acceptedVersions(NOW).stream().map(JwtKeyRing.Version::id).toList());
+    }
+
+    @Test
+    void parser_shouldVerifyEachTokenWithKeyNamedInKid() {
+        JwtKeyRing.Version old = hmac("old", Instant.EPOCH, null);
+        JwtKeyRing.Version next = hmac("next", NOW.plus(Duration.ofDays(1)), null);
+        JwtKeyRing ring = ring(NOW, old, hmac("current", NOW.minus(Duration.ofDays(1)), null), next);
+
+        assertEquals("alice", ring.parser().parseSignedClaims(token(old, "alice")).getPayload().getSubject());
+        assertEquals("bob", ring.parser().parseSignedClaims(token(next, "bob")).getPayload().getSubject());
+        String unknown = token(hmac("unknown", Instant.EPOCH, null), "eve");
+        assertThrows(SignatureException.class, () -> ring.parser().parseSignedClaims(unknown));
+    }
+
+    @Test
+    void parser_shouldRejectTokensOfRetiredKey() {
+        JwtKeyRing.Version retiring = hmac("retiring", Instant.EPOCH, NOW.plus(Duration.ofHours(1)));
+        JwtKeyRing.Version current = hmac("current", NOW.minus(Duration.ofDays(1)), null);
+        String token = token(retiring, "alice");
+
+        assertEquals("alice", ring(NOW, retiring, current).parser().parseSignedClaims(token).getPayload().getSubject());
+        JwtKeyRing later = ring(NOW.plus(Duration.ofHours(2)), retiring, current);
+        assertThrows(SignatureException.class, () -> later.parser().parseSignedClaims(token));
+        assertEquals(List.of("current"),
+                later.acceptedVersions(NOW.plus(Duration.ofHours(2))).stream().map(JwtKeyRing.Version::id).toList());
+    }
+
+    @Test
+    void parser_shouldVerifyTokensWithoutKidWithDefaultKey() {
+        JwtKeyRing.Version legacy = hmac(JwtKeyRing.DEFAULT_KEY_ID, Instant.EPOCH, null);
+        JwtKeyRing ring = ring(NOW, legacy, hmac("current", NOW.minus(Duration.ofDays(1)), null));
+        String withoutKid = Jwts.builder().subject("alice").signWith((SecretKey) legacy.signingKey(), Jwts.SIG.HS256).compact();
+
+        assertEquals("alice", ring.parser().parseSignedClaims(withoutKid).getPayload().getSubject());
+    }
+
+    @Test
+    void constructor_shouldRejectRingWithoutKeyThatCanSignNow() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ring(NOW, hmac("future", NOW.plus(Duration.ofDays(1)), null)));
+        assertThrows(IllegalArgumentException.class,
+                () -> ring(NOW, hmac("retired", Instant.EPOCH, NOW.minus(Duration.ofDays(1)))));
+        assertThrows(IllegalArgumentException.class,
+                () -> ring(NOW, hmac("a", Instant.EPOCH, null), hmac("a", NOW.minus(Duration.ofDays(1)), null)));
+    }
+
+    private static JwtKeyRing ring(Instant now, JwtKeyRing.Version... versions) {
+        return new JwtKeyRing("access", List.of(versions), LIFETIME, Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private static JwtKeyRing.Version hmac(String id, Instant activeFrom, Instant retireAt) {
+        SecretKey key = Keys.hmacShaKeyFor(("secret-of-" + id + "-0123456789abcdefghijklmnop").getBytes(StandardCharsets.UTF_8));
+        return new JwtKeyRing.Version(id, key, key, Jwts.SIG.HS256, activeFrom, retireAt);
+    }
+
+    private static String token(JwtKeyRing.Version version, String subject) {
+        return version.sign(Jwts.builder().subject(subject)).compact();
+    }
+}
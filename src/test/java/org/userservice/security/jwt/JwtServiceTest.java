@@ -0,0 +1,115 @@
+package org.userservice.security.jwt;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.security.KeyPair;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtServiceTest {
+
+    private static final Authentication USER = new UsernamePasswordAuthenticationToken(
+            "alice", null, List.of(new SimpleGrantedAuthority("ROLE_USER")));
+
+    @ParameterizedTest
+    @EnumSource(value = JwtAlgorithm.class, names = {"ES256", "EdDSA"})
+    void asymmetricAlgorithm_shouldSignWithConfiguredKeyAndPublishIt(JwtAlgorithm algorithm) {
+        JwtService service = service(algorithm, keyVersion("k1", algorithm.generateKeyPair()));
+
+        String token = service.generateAccessToken(USER);
+
+        JwtPrincipal principal = service.parseAccessToken(token);
+        assertEquals("alice", principal.subject());
+        assertEquals(List.of(new SimpleGrantedAuthority("ROLE_USER")), principal.authorities());
+        assertTrue(service.validate(token, true));
+
+        List<Map<String, Object>> jwks = service.getPublicJwks();
+        assertEquals(1, jwks.size());
+        Map<String, Object> jwk = jwks.get(0);
+        assertEquals("k1", jwk.get("kid"));
+        assertEquals(algorithm.signatureAlgorithm().getId(), jwk.get("alg"));
+        assertEquals("sig", jwk.get("use"));
+        assertEquals(algorithm == JwtAlgorithm.ES256 ? "EC" : "OKP", jwk.get("kty"));
+        assertEquals(algorithm == JwtAlgorithm.ES256 ? "P-256" : "Ed25519", jwk.get("crv"));
+        assertFalse(jwk.containsKey("d"));
+    }
+
+    @Test
+    void asymmetricAlgorithm_shouldRejectTokenSignedByUnknownKey() {
+        JwtService issuer = service(JwtAlgorithm.ES256, keyVersion("k1", JwtAlgorithm.ES256.generateKeyPair()));
+        JwtService verifier = service(JwtAlgorithm.ES256, keyVersion("k1", JwtAlgorithm.ES256.generateKeyPair()));
+
+        assertFalse(verifier.validate(issuer.generateAccessToken(USER), true));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = JwtAlgorithm.class, names = {"ES256", "EdDSA"})
+    void init_shouldRefuseAsymmetricAlgorithmWithoutKeys(JwtAlgorithm algorithm) {
+        JwtProperties properties = properties(algorithm);
+        JwtService service = new JwtService(properties);
+
+        assertThrows(IllegalStateException.class, service::init);
+
+        properties.getAccess().setAllowEphemeralKeys(true);
+        service.init();
+        assertTrue(service.validate(service.generateAccessToken(USER), true));
+        assertEquals(1, service.getPublicJwks().size());
+    }
+
+    @Test
+    void generateAccessToken_shouldCarryUserIdOfAnyUserIdentityPrincipal() {
+        JwtService service = service(JwtAlgorithm.HS256);
+        UUID userId = UUID.randomUUID();
+        UserIdentity identity = () -> userId;
+
+        String token = service.generateAccessToken(new UsernamePasswordAuthenticationToken(identity, null, List.of()) {
+            @Override
+            public String getName() {
+                return "alice";
+            }
+        });
+
+        assertEquals(userId, service.parseAccessToken(token).userId());
+        assertNull(service.parseAccessToken(service.generateAccessToken(USER)).userId());
+    }
+
+    @Test
+    void getPublicJwks_shouldNotPublishHmacSecret() {
+        JwtService service = service(JwtAlgorithm.HS256);
+
+        assertTrue(service.validate(service.generateAccessToken(USER), true));
+        assertTrue(service.getPublicJwks().isEmpty());
+    }
+
+    private static JwtService service(JwtAlgorithm algorithm, JwtProperties.KeyVersion... keys) {
+        JwtProperties properties = properties(algorithm);
+        properties.getAccess().setKeys(List.of(keys));
+        JwtService service = new JwtService(properties);
+        service.init();
+        return service;
+    }
+
+    private static JwtProperties properties(JwtAlgorithm algorithm) {
+        JwtProperties properties = new JwtProperties();
+        properties.getAccess().setSecret("test-access-secret-test-access-secret-0123");
+        properties.getAccess().setAlgorithm(algorithm);
+        return properties;
+    }
+
+    private static JwtProperties.KeyVersion keyVersion(String id, KeyPair keyPair) {
+        JwtProperties.KeyVersion version = new JwtProperties.KeyVersion();
+        version.setId(id);
+        version.setPrivateKey(Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded()));
+        version.setPublicKey(Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()));
+        return version;
+    }
+}
@@ -0,0 +1,150 @@
+package org.userservice.security.jwt;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class TokenBlacklistServiceTest {
+
+    private static final String REVOKED = "eyJhbGciOiJIUzI1NiJ9.revoked.sig";
+    private static final String VALID = "eyJhbGciOiJIUzI1NiJ9.valid.sig";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> values = mock(ValueOperations.class);
+    private final RedisMessageListenerContainer listenerContainer = mock(RedisMessageListenerContainer.class);
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(values);
+    }
+
+    @Test
+    void isBlacklisted_shouldAnswerFilterNegativesWithoutRedis() {
+        scan(TokenBlacklistService.KEY_PREFIX + "*");
+        scan(TokenBlacklistService.LEGACY_KEY_PATTERN);
+        TokenBlacklistService service = service(Duration.ZERO);
+
+        service.blacklist(REVOKED);
+        verify(values).set(key(REVOKED), "revoked", Duration.ZERO);
+        verify(redisTemplate).convertAndSend(TokenBlacklistService.CHANNEL, TokenDigests.sha256(REVOKED));
+        when(redisTemplate.hasKey(key(REVOKED))).thenReturn(true);
+
+        assertTrue(service.isBlacklisted(REVOKED));
+        assertFalse(service.isBlacklisted(VALID));
+        verify(redisTemplate, never()).hasKey(key(VALID));
+        assertEquals(1, lookups("filter_negative"));
+        assertEquals(1, lookups("confirmed"));
+    }
+
+    @Test
+    void revocationFromAnotherNode_shouldReachFilterOverPubSub() {
+        scan(TokenBlacklistService.KEY_PREFIX + "*");
+        scan(TokenBlacklistService.LEGACY_KEY_PATTERN);
+        TokenBlacklistService service = service(Duration.ZERO);
+        when(redisTemplate.hasKey(key(REVOKED))).thenReturn(true);
+        assertFalse(service.isBlacklisted(REVOKED));
+
+        ArgumentCaptor<MessageListener> listener = ArgumentCaptor.forClass(MessageListener.class);
+        verify(listenerContainer).addMessageListener(listener.capture(), any(Topic.class));
+        listener.getValue().onMessage(new DefaultMessage(
+                TokenBlacklistService.CHANNEL.getBytes(StandardCharsets.US_ASCII),
+                TokenDigests.sha256(REVOKED).getBytes(StandardCharsets.US_ASCII)), null);
+
+        assertTrue(service.isBlacklisted(REVOKED));
+    }
+
+    @Test
+    void rebuildFilter_shouldLoadStoredDigestsAndFallBackToRedisUntilFirstBuild() {
+        when(redisTemplate.scan(any(ScanOptions.class))).thenThrow(new QueryTimeoutException("redis down"));
+        TokenBlacklistService service = service(Duration.ZERO);
+
+        assertFalse(service.isBlacklisted(VALID));
+        verify(redisTemplate).hasKey(key(VALID));
+
+        reset(redisTemplate);
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        scan(TokenBlacklistService.KEY_PREFIX + "*", key(REVOKED));
+        scan(TokenBlacklistService.LEGACY_KEY_PATTERN);
+        when(redisTemplate.hasKey(key(REVOKED))).thenReturn(true);
+        service.rebuildFilter();
+
+        assertTrue(service.isBlacklisted(REVOKED));
+        assertFalse(service.isBlacklisted(VALID));
+        verify(redisTemplate, never()).hasKey(key(VALID));
+    }
+
+    @Test
+    void legacyRawTokenKeys_shouldBeMigratedAndStillReadDuringRefreshLifetime() {
+        String legacyOnly = "eyJhbGciOiJIUzI1NiJ9.old-node.sig";
+        scan(TokenBlacklistService.KEY_PREFIX + "*");
+        scan(TokenBlacklistService.LEGACY_KEY_PATTERN, REVOKED, "eyJ-not-a-blacklist-entry");
+        when(values.get(REVOKED)).thenReturn("revoked");
+        when(redisTemplate.getExpire(REVOKED, TimeUnit.SECONDS)).thenReturn(120L);
+        when(redisTemplate.hasKey(legacyOnly)).thenReturn(true);
+
+        TokenBlacklistService service = service(Duration.ofDays(7));
+
+        verify(values).set(key(REVOKED), "revoked", Duration.ofSeconds(120));
+        verify(redisTemplate).delete(REVOKED);
+        verify(redisTemplate, never()).delete("eyJ-not-a-blacklist-entry");
+        assertTrue(service.isBlacklisted(legacyOnly));
+        assertFalse(service.isBlacklisted(VALID));
+    }
+
+    private TokenBlacklistService service(Duration refreshTtl) {
+        JwtProperties properties = new JwtProperties();
+        properties.getRefresh().setExpiration(refreshTtl);
+        TokenBlacklistService service = new TokenBlacklistService(redisTemplate, listenerContainer, properties, meterRegistry);
+        service.init();
+        return service;
+    }
+
+    private static String key(String token) {
+        return TokenBlacklistService.KEY_PREFIX + TokenDigests.sha256(token);
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.get("jwt.blacklist.lookups").tag("result", result).counter().count();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void scan(String pattern, String... keys) {
+        when(redisTemplate.scan(argThat((ScanOptions options) -> options != null && pattern.equals(options.getPattern()))))
+                .thenAnswer(invocation -> {
+                    Iterator<String> iterator = List.of(keys).iterator();
+                    Cursor<String> cursor = mock(Cursor.class);
+                    when(cursor.hasNext()).thenAnswer(i -> iterator.hasNext());
+                    when(cursor.next()).thenAnswer(i -> iterator.next());
+                    doAnswer(i -> {
+                        iterator.forEachRemaining(i.<Consumer<String>>getArgument(0));
+                        return null;
+                    }).when(cursor).forEachRemaining(any());
+                    return cursor;
+                });
+    }
+}
@@ -0,0 +1,162 @@
+package org.userservice.security.jwt;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.userservice.controller.AuthController;
+import org.userservice.security.interfaces.IUserOperations;
+import org.userservice.security.interfaces.RefreshTokenStrategy;
+import org.userservice.service.details.UserDetailsService;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class TokenRevocationServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-10-01T12:00:00Z");
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final HashOperations<String, Object, Object> hash = mock(HashOperations.class);
+    private final RedisMessageListenerContainer listenerContainer = mock(RedisMessageListenerContainer.class);
+    private final Map<Object, Object> stored = new HashMap<>();
+    private final JwtProperties properties = new JwtProperties();
+
+    @BeforeEach
+    void setUp() {
+        properties.getAccess().setExpiration(Duration.ofMinutes(15));
+        properties.getRefresh().setExpiration(Duration.ofDays(7));
+        when(redisTemplate.opsForHash()).thenReturn(hash);
+        when(hash.entries(TokenRevocationService.HASH_KEY)).thenAnswer(invocation -> new HashMap<>(stored));
+        doAnswer(invocation -> stored.put(invocation.getArgument(1), invocation.getArgument(2)))
+                .when(hash).put(eq(TokenRevocationService.HASH_KEY), any(), any());
+    }
+
+    @Test
+    void revokeAll_shouldRejectTokensIssuedUpToRevocation() {
+        TokenRevocationService service = service(NOW);
+
+        service.revokeAll("alice");
+
+        long revokedAt = NOW.toEpochMilli();
+        assertEquals(Long.toString(revokedAt), stored.get("alice"));
+        verify(redisTemplate).convertAndSend(TokenRevocationService.CHANNEL, revokedAt + ":alice");
+        assertTrue(service.isRevoked("alice", NOW.minusSeconds(60)));
+        assertTrue(service.isRevoked("alice", NOW));
+        assertFalse(service.isRevoked("alice", NOW.plusMillis(1)));
+        assertFalse(service.isRevoked("bob", NOW.minusSeconds(60)));
+    }
+
+    @Test
+    void onMessage_shouldApplyRevocationFromAnotherNodeAndIgnoreGarbage() {
+        TokenRevocationService service = service(NOW);
+        MessageListener listener = listener();
+
+        publish(listener, "not-a-number:alice");
+        publish(listener, NOW.toEpochMilli() + ":");
+        publish(listener, "no-separator");
+        assertFalse(service.isRevoked("alice", NOW.minusSeconds(60)));
+
+        publish(listener, NOW.toEpochMilli() + ":alice");
+        publish(listener, NOW.minusSeconds(3600).toEpochMilli() + ":alice");
+        assertTrue(service.isRevoked("alice", NOW.minusSeconds(60)));
+        assertTrue(service.isRevoked("alice", NOW));
+    }
+
+    @Test
+    void synchronize_shouldPickUpMissedEntriesAndPruneExpiredOnes() {
+        stored.put("alice", Long.toString(NOW.minusSeconds(60).toEpochMilli()));
+        stored.put("old", Long.toString(NOW.minus(Duration.ofDays(8)).toEpochMilli()));
+        stored.put("broken", "garbage");
+
+        TokenRevocationService service = service(NOW);
+
+        assertTrue(service.isRevoked("alice", NOW.minusSeconds(120)));
+        assertFalse(service.isRevoked("old", NOW.minus(Duration.ofDays(9))));
+        verify(hash).delete(TokenRevocationService.HASH_KEY, "old");
+
+        when(hash.entries(TokenRevocationService.HASH_KEY)).thenThrow(new QueryTimeoutException("redis down"));
+        service.synchronize();
+        assertTrue(service.isRevoked("alice", NOW.minusSeconds(120)));
+    }
+
+    @Test
+    void synchronize_shouldDropLocalEntriesOlderThanAnyToken() {
+        Instant later = NOW.plus(Duration.ofDays(8));
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(NOW.toEpochMilli());
+        when(clock.instant()).thenReturn(NOW, later);
+        TokenRevocationService service = new TokenRevocationService(redisTemplate, listenerContainer,
+                properties, new SimpleMeterRegistry(), clock);
+        service.init();
+        service.revokeAll("alice");
+        stored.clear();
+
+        service.synchronize();
+
+        assertFalse(service.isRevoked("alice", NOW.minusSeconds(60)));
+    }
+
+    @Test
+    void logout_shouldRevokeTokensOfAuthenticatedUser() throws Exception {
+        TokenRevocationService service = service(NOW);
+        JwtAuthService authService = new JwtAuthService(mock(AuthenticationManager.class),
+                mock(JwtService.class), mock(RefreshTokenStrategy.class), service);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new AuthController(authService,
+                mock(IUserOperations.class), mock(UserDetailsService.class), mock(JwtService.class))).build();
+
+        mockMvc.perform(post("/api/auth/logout"))
+                .andExpect(status().isUnauthorized());
+        verify(redisTemplate, never()).convertAndSend(anyString(), anyString());
+
+        mockMvc.perform(post("/api/auth/logout")
+                        .principal(new UsernamePasswordAuthenticationToken("alice", null)))
+                .andExpect(status().isNoContent());
+        assertTrue(service.isRevoked("alice", NOW.minusSeconds(60)));
+        assertFalse(service.isRevoked("bob", NOW.minusSeconds(60)));
+    }
+
+    private TokenRevocationService service(Instant now) {
+        TokenRevocationService service = new TokenRevocationService(redisTemplate, listenerContainer,
+                properties, new SimpleMeterRegistry(), Clock.fixed(now, ZoneOffset.UTC));
+        service.init();
+        return service;
+    }
+
+    private MessageListener listener() {
+        ArgumentCaptor<MessageListener> listener = ArgumentCaptor.forClass(MessageListener.class);
+        verify(listenerContainer).addMessageListener(listener.capture(), any(Topic.class));
+        return listener.getValue();
+    }
+
+    private static void publish(MessageListener listener, String payload) {
+        listener.onMessage(new DefaultMessage(
+                TokenRevocationService.CHANNEL.getBytes(StandardCharsets.US_ASCII),
+                payload.getBytes(StandardCharsets.UTF_8)), null);
+    }
+}
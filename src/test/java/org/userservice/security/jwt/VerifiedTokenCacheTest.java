@@ -0,0 +1,96 @@
+package org.userservice.security.jwt;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.userservice.security.service.AppUserDetails;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(classes = {VerifiedTokenCacheTest.TestConfig.class, JwtProperties.class, JwtService.class, VerifiedTokenCache.class})
+@TestPropertySource(properties = {
+        "jwt.access.secret=test-secret-test-secret-test-secret-0123",
+        "jwt.access.expiration=PT15M"
+})
+class VerifiedTokenCacheTest {
+
+    @MockitoSpyBean
+    private JwtService jwtService;
+
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        token = jwtService.generateAccessToken(new UsernamePasswordAuthenticationToken(
+                "alice", null, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+        clearInvocations(jwtService);
+    }
+
+    @Test
+    void verify_shouldParseTokenOnlyOnceForRepeatedRequests() {
+        Optional<JwtPrincipal> first = verifiedTokenCache.verify(token);
+        Optional<JwtPrincipal> second = verifiedTokenCache.verify(token);
+
+        assertTrue(first.isPresent());
+        assertEquals("alice", first.get().subject());
+        assertEquals(List.of(new SimpleGrantedAuthority("ROLE_USER")), first.get().authorities());
+        assertSame(first.get(), second.get());
+        verify(jwtService, times(1)).parseAccessToken(anyString());
+        assertTrue(meterRegistry.get("cache.gets").tag("cache", "jwt.verified.tokens").tag("result", "hit")
+                .functionCounter().count() >= 1);
+    }
+
+    @Test
+    void verify_shouldRejectTamperedTokenWithoutCachingIt() {
+        String tampered = token.substring(0, token.length() - 2) + "xx";
+
+        assertTrue(verifiedTokenCache.verify(tampered).isEmpty());
+        assertTrue(verifiedTokenCache.verify(tampered).isEmpty());
+        verify(jwtService, times(2)).parseAccessToken(tampered);
+    }
+
+    @Test
+    void verify_shouldCarryUserIdFromLoginPrincipal() {
+        UUID userId = UUID.randomUUID();
+        AppUserDetails details = new AppUserDetails(userId, "bob", "hash", List.of());
+        String withUid = jwtService.generateAccessToken(
+                new UsernamePasswordAuthenticationToken(details, null, details.getAuthorities()));
+
+        JwtPrincipal principal = verifiedTokenCache.verify(withUid).orElseThrow();
+
+        assertEquals(userId, principal.userId());
+        assertEquals("bob", principal.getName());
+        assertNull(verifiedTokenCache.verify(token).orElseThrow().userId());
+    }
+
+    @Configuration
+    @EnableConfigurationProperties
+    static class TestConfig {
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package org.userservice.security.password;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.userservice.config.hibernate.UserCacheInvalidator;
+import org.userservice.controller.AuthController;
+import org.userservice.dto.security.LoginRequest;
+import org.userservice.entity.User;
+import org.userservice.exception.GlobalExceptionHandler;
+import org.userservice.exception.PasswordHashingBusyException;
+import org.userservice.repo.UserRepository;
+import org.userservice.security.interfaces.IAuthService;
+import org.userservice.security.interfaces.IUserOperations;
+import org.userservice.security.jwt.JwtService;
+import org.userservice.security.service.CustomUserDetailsService;
+import org.userservice.service.details.UserDetailsService;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class BoundedPasswordEncoderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (encoder != null) {
+            encoder.shutdown();
+        }
+    }
+
+    @Test
+    void encode_shouldRejectImmediatelyWhenQueueIsFull() throws Exception {
+        encoder = blockingEncoder(Duration.ofSeconds(5));
+        CompletableFuture<String> active = CompletableFuture.supplyAsync(() -> encoder.encode("active"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("queued"));
+        awaitQueueDepth(1);
+
+        PasswordHashingBusyException busy = assertThrows(PasswordHashingBusyException.class,
+                () -> encoder.encode("rejected"));
+
+        assertEquals(Duration.ofSeconds(3), busy.getRetryAfter());
+        assertEquals(1, meterRegistry.get("security.password.rejected").counter().count());
+        release.countDown();
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder();
+        assertTrue(bcrypt.matches("active", active.get(5, TimeUnit.SECONDS)));
+        assertTrue(bcrypt.matches("queued", queued.get(5, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    void encode_shouldGiveUpAfterMaxWait() throws Exception {
+        encoder = blockingEncoder(Duration.ofMillis(100));
+        CompletableFuture<String> active = CompletableFuture.supplyAsync(() -> encoder.encode("active"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertThrows(PasswordHashingBusyException.class, () -> encoder.encode("waiting"));
+        ExecutionException timedOut = assertThrows(ExecutionException.class, () -> active.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(PasswordHashingBusyException.class, timedOut.getCause());
+        assertEquals(2, meterRegistry.get("security.password.rejected").counter().count());
+    }
+
+    @Test
+    void login_shouldAnswer503WithRetryAfterWhenHashingIsOverloaded() throws Exception {
+        encoder = blockingEncoder(Duration.ofSeconds(5));
+        CompletableFuture.runAsync(() -> encoder.encode("active"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture.runAsync(() -> encoder.encode("queued"));
+        awaitQueueDepth(1);
+        IAuthService authService = mock(IAuthService.class);
+        when(authService.login(any(LoginRequest.class))).thenAnswer(invocation -> {
+            encoder.matches("secret", "$2a$04$hash");
+            return null;
+        });
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new AuthController(authService,
+                        mock(IUserOperations.class), mock(UserDetailsService.class), mock(JwtService.class)))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+
+        mockMvc.perform(post("/api/auth/login")
+                        .contentType("application/json")
+                        .content("{\"username\":\"alice\",\"password\":\"secret\"}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "3"));
+    }
+
+    @Test
+    void authenticate_shouldRehashPasswordStoredWithLowerCost() {
+        encoder = new BoundedPasswordEncoder(properties(5, 1, Duration.ofSeconds(5)), meterRegistry);
+        User user = new User(UUID.randomUUID(), "alice", new BCryptPasswordEncoder(4).encode("secret"));
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByUserName("alice")).thenReturn(Optional.of(user));
+        UserCacheInvalidator cacheInvalidator = mock(UserCacheInvalidator.class);
+        DaoAuthenticationProvider provider = provider(new CustomUserDetailsService(userRepository, cacheInvalidator));
+
+        provider.authenticate(new UsernamePasswordAuthenticationToken("alice", "secret"));
+
+        assertTrue(user.getPasswordHash().startsWith("$2a$05$"));
+        assertTrue(encoder.matches("secret", user.getPasswordHash()));
+        assertFalse(encoder.upgradeEncoding(user.getPasswordHash()));
+        verify(userRepository).save(user);
+        verify(cacheInvalidator).evictAfterCommit(user.getId(), "alice");
+
+        clearInvocations(userRepository, cacheInvalidator);
+        String current = user.getPasswordHash();
+        provider.authenticate(new UsernamePasswordAuthenticationToken("alice", "secret"));
+
+        assertEquals(current, user.getPasswordHash());
+        verify(userRepository, never()).save(any());
+        verifyNoInteractions(cacheInvalidator);
+    }
+
+    @SuppressWarnings("deprecation")
+    private DaoAuthenticationProvider provider(CustomUserDetailsService userDetailsService) {
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setPasswordEncoder(encoder);
+        provider.setUserDetailsService(userDetailsService);
+        provider.setUserDetailsPasswordService(userDetailsService);
+        return provider;
+    }
+
+    /**
+     * Один поток и одно место в очереди; первый хеш держит поток, пока тест не отпустит {@link #release}.
+     */
+    private BoundedPasswordEncoder blockingEncoder(Duration maxWait) {
+        BCryptPasswordEncoder delegate = new BCryptPasswordEncoder(4) {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.encode(rawPassword);
+            }
+        };
+        return new BoundedPasswordEncoder(delegate, properties(4, 1, maxWait), meterRegistry);
+    }
+
+    private static PasswordHashingProperties properties(int strength, int queueCapacity, Duration maxWait) {
+        PasswordHashingProperties properties = new PasswordHashingProperties();
+        properties.setStrength(strength);
+        properties.setThreads(1);
+        properties.setQueueCapacity(queueCapacity);
+        properties.setMaxWait(maxWait);
+        properties.setRetryAfter(Duration.ofSeconds(3));
+        return properties;
+    }
+
+    private void awaitQueueDepth(int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("security.password.queue.depth").gauge().value() < depth) {
+            assertTrue(System.nanoTime() < deadline, "task was not queued");
+            Thread.sleep(10);
+        }
+    }
+}
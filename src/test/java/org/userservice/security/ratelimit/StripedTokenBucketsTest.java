@@ -0,0 +1,41 @@
+package org.userservice.security.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StripedTokenBucketsTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final StripedTokenBuckets buckets =
+            new StripedTokenBuckets(3, Duration.ofSeconds(10), 4, clock::get);
+
+    @Test
+    void allowsBurstUpToCapacityThenRejectsWithWait() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, buckets.tryAcquire("alice"));
+        }
+        long wait = buckets.tryAcquire("alice");
+        assertEquals(Duration.ofSeconds(10).toNanos(), wait);
+        assertEquals(0, buckets.tryAcquire("bob"));
+    }
+
+    @Test
+    void refillsOverTimeAndEvictsFullBuckets() {
+        for (int i = 0; i < 3; i++) {
+            buckets.tryAcquire("alice");
+        }
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertEquals(0, buckets.tryAcquire("alice"));
+        assertTrue(buckets.tryAcquire("alice") > 0);
+
+        assertEquals(0, buckets.evictIdle());
+        clock.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertEquals(1, buckets.evictIdle());
+        assertEquals(0, buckets.size());
+    }
+}
@@ -0,0 +1,175 @@
+package org.userservice.security.service;
+
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Pageable;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.userservice.dto.security.TokenResponse;
+import org.userservice.entity.RefreshToken;
+import org.userservice.entity.User;
+import org.userservice.repo.RefreshTokenRepository;
+import org.userservice.repo.UserRepository;
+import org.userservice.security.jwt.JwtProperties;
+import org.userservice.security.jwt.JwtService;
+import org.userservice.security.jwt.TokenDigests;
+import org.userservice.security.jwt.TokenRevocationService;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:refresh-tokens",
+        "jwt.use.refresh=true",
+        "jwt.use-refresh=true",
+        "jwt.refresh.store=database",
+        "jwt.refresh.purge.batch-size=2",
+        "jwt.access.secret=test-access-secret-test-access-secret-0123",
+        "jwt.refresh.secret=test-refresh-secret-test-refresh-secret-01"
+})
+@Import({PersistentRefreshTokenStrategy.class, RefreshTokenPurger.class, JwtService.class, JwtProperties.class,
+        PersistentRefreshTokenStrategyTest.TestConfig.class})
+class PersistentRefreshTokenStrategyTest {
+
+    @Autowired
+    private PersistentRefreshTokenStrategy strategy;
+
+    @Autowired
+    private RefreshTokenPurger purger;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockitoSpyBean
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockitoBean
+    private TokenRevocationService revocationService;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        User alice = new User();
+        alice.setUserName("alice");
+        alice.setPasswordHash("hash");
+        user = userRepository.save(alice);
+    }
+
+    @Test
+    void refresh_shouldRotateTokenWithinFamily() {
+        String first = login();
+
+        TokenResponse rotated = strategy.refresh(first);
+
+        assertNotEquals(first, rotated.refresh_token());
+        RefreshToken old = stored(first);
+        RefreshToken fresh = stored(rotated.refresh_token());
+        assertTrue(old.isRevoked());
+        assertFalse(fresh.isRevoked());
+        assertEquals(old.getFamilyId(), fresh.getFamilyId());
+    }
+
+    @Test
+    void refresh_shouldNotForkFamilyWhenRotationIsRetried() {
+        String first = login();
+        String rotated = strategy.refresh(first).refresh_token();
+
+        assertThrows(JwtException.class, () -> strategy.refresh(first));
+
+        entityManager.clear();
+        assertTrue(stored(rotated).isRevoked());
+        assertEquals(2, refreshTokenRepository.findAll().size());
+    }
+
+    @Test
+    void refresh_shouldRevokeWholeFamilyWhenRotatedTokenIsReused() {
+        String first = login();
+        String second = strategy.refresh(first).refresh_token();
+        String third = strategy.refresh(second).refresh_token();
+
+        assertThrows(JwtException.class, () -> strategy.refresh(first));
+
+        entityManager.clear();
+        for (String token : List.of(first, second, third)) {
+            assertTrue(stored(token).isRevoked());
+        }
+        assertThrows(JwtException.class, () -> strategy.refresh(second));
+        assertThrows(JwtException.class, () -> strategy.refresh(third));
+    }
+
+    @Test
+    void purgeExpired_shouldDeleteExpiredTokensPageByPage() {
+        Instant expired = Instant.now().minus(Duration.ofDays(1)).truncatedTo(ChronoUnit.SECONDS);
+        for (int i = 0; i < 5; i++) {
+            save(expired, "expired-" + i);
+        }
+        save(Instant.now().plus(Duration.ofDays(1)), "valid");
+        entityManager.flush();
+        entityManager.clear();
+
+        purger.purgeExpired();
+
+        assertEquals(List.of("valid"),
+                refreshTokenRepository.findAll().stream().map(RefreshToken::getFamilyId).toList());
+        verify(refreshTokenRepository, times(3)).findExpiredAfter(any(), any(), any(), any(Pageable.class));
+        assertEquals(5, meterRegistry.get("jwt.refresh.purged").counter().count());
+    }
+
+    private String login() {
+        TokenResponse response = strategy.createLoginResponse("access",
+                new UsernamePasswordAuthenticationToken("alice", null, List.of()));
+        return response.refresh_token();
+    }
+
+    private RefreshToken stored(String token) {
+        return refreshTokenRepository.findByTokenHash(TokenDigests.sha256(token)).orElseThrow();
+    }
+
+    private void save(Instant expiryDate, String familyId) {
+        RefreshToken token = new RefreshToken();
+        token.setId(UUID.randomUUID().toString());
+        token.setTokenHash(TokenDigests.sha256(UUID.randomUUID().toString()));
+        token.setUser(user);
+        token.setFamilyId(familyId);
+        token.setExpiryDate(expiryDate);
+        refreshTokenRepository.save(token);
+    }
+
+    @TestConfiguration
+    static class TestConfig {
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
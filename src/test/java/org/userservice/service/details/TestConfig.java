@@ -5,8 +5,8 @@ import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.userservice.service.photo.FileStorage;
 import org.userservice.service.photo.FileValidationService;
-import org.userservice.service.photo.MinioFileStorageService;
 import org.userservice.service.photo.UserPhotoCrudService;
 import org.userservice.service.photo.UserPhotoService;
 import org.userservice.utils.UserDetailsMapper;
@@ -43,8 +43,8 @@ public class TestConfig {
 
     @Bean
     @Primary
-    public MinioFileStorageService minioFileStorageService() {
-        return mock(MinioFileStorageService.class);
+    public FileStorage fileStorage() {
+        return mock(FileStorage.class);
     }
 
     @Bean
@@ -143,18 +143,16 @@ class UserDetailsServiceIntegrationTest {
         user.setId(userId);
         when(userCrudService.getUserById(userId)).thenReturn(user);
         when(userCrudService.getUserDetailsForUpdate(userId)).thenReturn(Optional.empty());
-        String filePath = "user_photos/" + userId + "_profile.jpg";
-        when(userPhotoService.generateFileName(eq(userId), any(MultipartFile.class)))
-                .thenReturn(filePath);
-        doThrow(new PhotoServiceException("MinIO error"))
-                .doNothing()
-                .when(userPhotoService).uploadPhotoToStorage(eq(filePath), any(MultipartFile.class));
+        String filePath = "cas/" + "0".repeat(64) + ".jpg";
         UserPhoto photo = new UserPhoto();
-        when(userPhotoService.createPhotoEntity(any(UserDetails.class), eq(filePath)))
+        photo.setFilePath(filePath);
+        when(userPhotoService.uploadUserPhoto(userId, photoFile))
+                .thenThrow(new PhotoServiceException("MinIO error"))
                 .thenReturn(photo);
         UserDetailsResponseDto result = userDetailsService.createProfile(userId, requestDto, photoFile);
         assertNotNull(result);
-        verify(userPhotoService, times(2)).uploadPhotoToStorage(anyString(), any(MultipartFile.class));
+        assertEquals(filePath, result.photoUrl());
+        verify(userPhotoService, times(2)).uploadUserPhoto(userId, photoFile);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,95 @@
+package org.userservice.service.photo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.MinioAsyncClient;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import okhttp3.Headers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import org.userservice.entity.UserPhoto;
+import org.userservice.exception.FileStorageException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class AsyncPhotoServiceTest {
+
+    private static final String ORIGINAL = "cas/abc.jpg";
+    private static final String DERIVATIVE = "cas/abc_128.jpg";
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path directory;
+
+    private final MinioAsyncClient minioAsyncClient = mock(MinioAsyncClient.class);
+    private final UserPhotoService userPhotoService = mock(UserPhotoService.class);
+    private PhotoCache photoCache;
+    private AsyncPhotoService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        PhotoCacheProperties properties = new PhotoCacheProperties();
+        properties.setDirectory(directory);
+        properties.setMaxObjectSize(DataSize.ofBytes(64));
+        photoCache = new PhotoCache(properties, new SimpleMeterRegistry());
+        photoCache.init();
+        service = new AsyncPhotoService(minioAsyncClient, userPhotoService, mock(FileValidationService.class),
+                mock(PhotoObjectService.class), photoCache, mock(FileStorage.class),
+                new StorageResilienceProperties(), Runnable::run);
+        ReflectionTestUtils.setField(service, "bucketName", "photos");
+
+        Headers headers = new Headers.Builder()
+                .add("Content-Length", String.valueOf(CONTENT.length))
+                .add("Content-Type", "image/jpeg")
+                .add("ETag", "\"etag\"")
+                .add("Last-Modified", "Thu, 01 Jan 2026 10:00:00 GMT")
+                .build();
+        when(minioAsyncClient.statObject(argThat((StatObjectArgs args) -> args != null && ORIGINAL.equals(args.object()))))
+                .thenReturn(CompletableFuture.completedFuture(new StatObjectResponse(headers, "photos", "", ORIGINAL)));
+        when(minioAsyncClient.statObject(argThat((StatObjectArgs args) -> args != null && DERIVATIVE.equals(args.object()))))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("NoSuchKey")));
+        when(minioAsyncClient.getObject(any(GetObjectArgs.class)))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(
+                        new GetObjectResponse(headers, "photos", "", ORIGINAL, new ByteArrayInputStream(CONTENT))));
+        when(userPhotoService.derivativeKey(any(UserPhoto.class), eq(128))).thenReturn(Optional.of(DERIVATIVE));
+    }
+
+    @Test
+    void openPhoto_shouldFallBackToOriginalAndLoadItIntoCache() throws Exception {
+        UserPhoto photo = new UserPhoto();
+        photo.setFilePath(ORIGINAL);
+
+        PhotoSource source = service.openPhoto(photo, 128).get();
+
+        assertInstanceOf(PhotoSource.Memory.class, source);
+        assertEquals(ORIGINAL, source.metadata().objectName());
+        assertSame(source, photoCache.cached(ORIGINAL).orElseThrow());
+        assertSame(source, service.openPhoto(photo, null).get());
+        verify(minioAsyncClient, times(1)).getObject(any(GetObjectArgs.class));
+    }
+
+    @Test
+    void openStream_shouldReportStorageErrorsAsFileStorageException() throws Exception {
+        when(minioAsyncClient.getObject(any(GetObjectArgs.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("connection reset")));
+
+        CompletableFuture<?> future = service.openStream(ORIGINAL, 0, CONTENT.length);
+
+        Exception e = assertThrows(Exception.class, future::join);
+        assertInstanceOf(FileStorageException.class, e.getCause());
+    }
+}
@@ -0,0 +1,130 @@
+package org.userservice.service.photo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.userservice.dto.photo.DirectUploadDto;
+import org.userservice.exception.FileStorageException;
+import org.userservice.exception.InvalidFileException;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class DirectUploadServiceTest {
+
+    private static final UUID USER_ID = UUID.randomUUID();
+
+    @TempDir
+    Path root;
+
+    private final UserPhotoService userPhotoService = mock(UserPhotoService.class);
+    private FilesystemFileStorage storage;
+    private DirectUploadService service;
+
+    @BeforeEach
+    void setUp() {
+        FilesystemStorageProperties storageProperties = new FilesystemStorageProperties();
+        storageProperties.setRoot(root);
+        storageProperties.setUrlSecret("secret");
+        storage = new FilesystemFileStorage(storageProperties);
+        storage.init();
+        ImageValidationProperties validationProperties = new ImageValidationProperties();
+        service = new DirectUploadService(storage, new FileValidationService(validationProperties),
+                validationProperties, userPhotoService, new DirectUploadProperties(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void confirmUpload_shouldMoveCheckedObjectUnderTypedKey() throws Exception {
+        DirectUploadDto upload = service.createUpload(USER_ID);
+        assertTrue(upload.objectKey().startsWith("incoming/" + USER_ID + "/"));
+        byte[] png = png();
+        storage.uploadFile(upload.objectKey(), new ByteArrayInputStream(png), png.length, "text/html");
+
+        service.confirmUpload(USER_ID, upload.objectKey());
+
+        String target = "direct/" + upload.objectKey().substring(upload.objectKey().lastIndexOf('/') + 1) + ".png";
+        verify(userPhotoService).attachUploadedObject(USER_ID, target,
+                new PhotoMetadata("image/png", png.length, null, 4, 3));
+        assertFalse(storage.exists(upload.objectKey()));
+        assertEquals(new StoredObject(target, png.length, "image/png"), storage.statFile(target));
+    }
+
+    @Test
+    void confirmUpload_shouldRejectForeignKeysAndDeleteInvalidContent() {
+        DirectUploadDto upload = service.createUpload(USER_ID);
+        byte[] html = "<html></html>".getBytes(StandardCharsets.UTF_8);
+        storage.uploadFile(upload.objectKey(), new ByteArrayInputStream(html), html.length, "image/png");
+
+        assertThrows(InvalidFileException.class, () -> service.confirmUpload(UUID.randomUUID(), upload.objectKey()));
+        assertThrows(InvalidFileException.class, () -> service.confirmUpload(USER_ID, "incoming/" + USER_ID + "/../x"));
+        assertTrue(storage.exists(upload.objectKey()));
+
+        assertThrows(InvalidFileException.class, () -> service.confirmUpload(USER_ID, upload.objectKey()));
+        assertFalse(storage.exists(upload.objectKey()));
+        verify(userPhotoService, never()).attachUploadedObject(any(), any(), any());
+    }
+
+    @Test
+    void confirmUpload_shouldValidateMovedObjectWhenStorageHasNoETag() throws Exception {
+        DirectUploadDto upload = service.createUpload(USER_ID);
+        byte[] png = png();
+        storage.uploadFile(upload.objectKey(), new ByteArrayInputStream(png), png.length, "image/png");
+        byte[] html = Arrays.copyOf("<html></html>".getBytes(StandardCharsets.UTF_8), png.length);
+        FilesystemFileStorage swapping = spy(storage);
+        doAnswer(invocation -> {
+            // Клиент перезаписывает объект по той же ссылке между проверкой и переносом
+            storage.uploadFile(upload.objectKey(), new ByteArrayInputStream(html), html.length, "image/png");
+            return invocation.callRealMethod();
+        }).when(swapping).moveFile(any(), any(), any(), any());
+        ImageValidationProperties validationProperties = new ImageValidationProperties();
+        DirectUploadService swapped = new DirectUploadService(swapping, new FileValidationService(validationProperties),
+                validationProperties, userPhotoService, new DirectUploadProperties(), new SimpleMeterRegistry());
+
+        assertThrows(InvalidFileException.class, () -> swapped.confirmUpload(USER_ID, upload.objectKey()));
+
+        String target = "direct/" + upload.objectKey().substring(upload.objectKey().lastIndexOf('/') + 1) + ".png";
+        assertFalse(storage.exists(target));
+        verify(userPhotoService, never()).attachUploadedObject(any(), any(), any());
+    }
+
+    @Test
+    void confirmUpload_shouldMoveOnlyValidatedVersionWhenStorageHasETag() throws Exception {
+        FileStorage minio = mock(FileStorage.class);
+        ImageValidationProperties validationProperties = new ImageValidationProperties();
+        DirectUploadService etagService = new DirectUploadService(minio, new FileValidationService(validationProperties),
+                validationProperties, userPhotoService, new DirectUploadProperties(), new SimpleMeterRegistry());
+        String objectKey = "incoming/" + USER_ID + "/" + UUID.randomUUID();
+        byte[] png = png();
+        when(minio.exists(objectKey)).thenReturn(true);
+        when(minio.statFile(objectKey)).thenReturn(
+                new StoredObject(objectKey, png.length, "image/png", "v1"),
+                new StoredObject(objectKey, png.length, "image/png", "v2"));
+        when(minio.openStream(eq(objectKey), eq(0L), anyLong())).thenAnswer(invocation -> new ByteArrayInputStream(png));
+        doThrow(new FileStorageException("PreconditionFailed", null))
+                .when(minio).moveFile(eq(objectKey), any(), eq("image/png"), eq("v1"));
+
+        assertThrows(InvalidFileException.class, () -> etagService.confirmUpload(USER_ID, objectKey));
+
+        verify(minio).moveFile(eq(objectKey), any(), eq("image/png"), eq("v1"));
+        verify(userPhotoService, never()).attachUploadedObject(any(), any(), any());
+    }
+
+    private static byte[] png() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,95 @@
+package org.userservice.service.photo;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.userservice.exception.FileStorageException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilesystemFileStorageTest {
+
+    private static final byte[] CONTENT = "photo-content".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path root;
+
+    private FilesystemStorageProperties properties;
+    private FilesystemFileStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        properties = new FilesystemStorageProperties();
+        properties.setRoot(root);
+        properties.setUrlSecret("secret");
+        storage = storage(Instant.parse("2026-01-01T10:00:00Z"));
+    }
+
+    @Test
+    void uploadFile_shouldStoreContentAndHideIncomingFiles() throws Exception {
+        storage.uploadFile("cas/abc.jpg", new ByteArrayInputStream(CONTENT), CONTENT.length, "image/jpeg");
+
+        assertArrayEquals(CONTENT, storage.getFile("cas/abc.jpg"));
+        assertEquals(new StoredObject("cas/abc.jpg", CONTENT.length, "image/jpeg"), storage.statFile("cas/abc.jpg"));
+        assertEquals(root.resolve("cas/abc.jpg"), storage.localFile("cas/abc.jpg").orElseThrow());
+        try (InputStream in = storage.openStream("cas/abc.jpg", 6, 4)) {
+            assertEquals("cont", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        try (Stream<ListedObject> listed = storage.listObjects(100)) {
+            assertEquals(List.of("cas/abc.jpg"), listed.map(ListedObject::objectName).toList());
+        }
+    }
+
+    @Test
+    void uploadFile_shouldRejectTruncatedContentAndPathTraversal() {
+        assertThrows(FileStorageException.class, () ->
+                storage.uploadFile("cas/short.jpg", new ByteArrayInputStream(CONTENT), CONTENT.length + 1, "image/jpeg"));
+        assertFalse(storage.exists("cas/short.jpg"));
+        assertThrows(FileStorageException.class, () -> storage.getFile("../outside.jpg"));
+    }
+
+    @Test
+    void composeFile_shouldConcatenatePartsInOrder() {
+        storage.uploadFile("uploads/u/0000000000-a", new ByteArrayInputStream(CONTENT, 0, 5), 5, "application/octet-stream");
+        storage.uploadFile("uploads/u/0000000005-b", new ByteArrayInputStream(CONTENT, 5, CONTENT.length - 5),
+                CONTENT.length - 5, "application/octet-stream");
+
+        storage.composeFile(List.of(
+                new StoredObject("uploads/u/0000000000-a", 5, "application/octet-stream"),
+                new StoredObject("uploads/u/0000000005-b", CONTENT.length - 5, "application/octet-stream")), "incoming/u/c");
+
+        assertArrayEquals(CONTENT, storage.getFile("incoming/u/c"));
+        assertTrue(storage.exists("uploads/u/0000000000-a"));
+    }
+
+    @Test
+    void generatePresignedUrl_shouldBeStableWithinWindowAndVerifiable() {
+        String first = storage.generatePresignedUrl("cas/abc.jpg");
+        String sameWindow = storage(Instant.parse("2026-01-01T10:59:00Z")).generatePresignedUrl("cas/abc.jpg");
+        assertEquals(first, sameWindow);
+
+        String query = URI.create(first).getQuery();
+        long expires = Long.parseLong(query.substring("expires=".length(), query.indexOf('&')));
+        String signature = query.substring(query.indexOf("signature=") + "signature=".length());
+        assertTrue(storage.verifySignature("cas/abc.jpg", expires, signature));
+        assertFalse(storage.verifySignature("cas/other.jpg", expires, signature));
+        assertFalse(storage(Instant.ofEpochSecond(expires + 1)).verifySignature("cas/abc.jpg", expires, signature));
+    }
+
+    private FilesystemFileStorage storage(Instant now) {
+        FilesystemFileStorage storage = new FilesystemFileStorage(properties, Clock.fixed(now, ZoneOffset.UTC));
+        storage.init();
+        return storage;
+    }
+}
@@ -0,0 +1,97 @@
+package org.userservice.service.photo;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageHeaderParserTest {
+
+    @Test
+    void parse_shouldReadDimensionsOfEveryFormat() throws IOException {
+        for (String format : new String[]{"jpg", "png", "gif"}) {
+            byte[] image = encode(format, 300, 200);
+
+            ImageInfo info = ImageHeaderParser.parse(new ByteArrayInputStream(image), 1024).orElseThrow();
+
+            assertEquals(new ImageInfo("image/" + (format.equals("jpg") ? "jpeg" : format), 300, 200), info);
+        }
+    }
+
+    @Test
+    void parse_shouldSkipLargeSegmentsBeforeFrameHeader() throws IOException {
+        byte[] image = encode("jpg", 40, 30);
+        byte[] exif = new byte[4 + 60_000];
+        exif[0] = (byte) 0xFF;
+        exif[1] = (byte) 0xE1;
+        exif[2] = (byte) ((exif.length - 2) >> 8);
+        exif[3] = (byte) (exif.length - 2);
+        ByteArrayOutputStream withExif = new ByteArrayOutputStream();
+        withExif.write(image, 0, 2);
+        withExif.write(exif);
+        withExif.write(image, 2, image.length - 2);
+
+        assertEquals(Optional.of(new ImageInfo("image/jpeg", 40, 30)),
+                ImageHeaderParser.parse(new ByteArrayInputStream(withExif.toByteArray()), 64 * 1024));
+        assertTrue(ImageHeaderParser.parse(new ByteArrayInputStream(withExif.toByteArray()), 1024).isEmpty());
+    }
+
+    @Test
+    void parse_shouldRejectUnknownContent() throws IOException {
+        assertTrue(ImageHeaderParser.parse(new ByteArrayInputStream("<svg/>".getBytes()), 1024).isEmpty());
+        assertTrue(ImageHeaderParser.parse(new ByteArrayInputStream(new byte[]{(byte) 0xFF}), 1024).isEmpty());
+    }
+
+    @Test
+    void orientation_shouldReadExifTagInBothByteOrders() throws IOException {
+        byte[] jpeg = encode("jpg", 40, 30);
+
+        assertEquals(6, ImageHeaderParser.orientation(
+                new ByteArrayInputStream(withOrientation(jpeg, 6, ByteOrder.BIG_ENDIAN)), 64 * 1024));
+        assertEquals(8, ImageHeaderParser.orientation(
+                new ByteArrayInputStream(withOrientation(jpeg, 8, ByteOrder.LITTLE_ENDIAN)), 64 * 1024));
+        assertEquals(ImageHeaderParser.NORMAL_ORIENTATION,
+                ImageHeaderParser.orientation(new ByteArrayInputStream(jpeg), 64 * 1024));
+        assertEquals(ImageHeaderParser.NORMAL_ORIENTATION,
+                ImageHeaderParser.orientation(new ByteArrayInputStream(encode("png", 40, 30)), 64 * 1024));
+    }
+
+    /**
+     * Вставляет после SOI сегмент APP1 с EXIF, в котором задан только тег Orientation.
+     */
+    static byte[] withOrientation(byte[] jpeg, int orientation, ByteOrder order) {
+        ByteBuffer tiff = ByteBuffer.allocate(26).order(order);
+        tiff.put(order == ByteOrder.BIG_ENDIAN ? new byte[]{'M', 'M'} : new byte[]{'I', 'I'});
+        tiff.putShort((short) 42).putInt(8);
+        tiff.putShort((short) 1);
+        tiff.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) orientation).putShort((short) 0);
+        tiff.putInt(0);
+        byte[] exif = {'E', 'x', 'i', 'f', 0, 0};
+        int length = 2 + exif.length + tiff.capacity();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, 2);
+        out.write(0xFF);
+        out.write(0xE1);
+        out.write(length >> 8);
+        out.write(length);
+        out.writeBytes(exif);
+        out.writeBytes(tiff.array());
+        out.write(jpeg, 2, jpeg.length - 2);
+        return out.toByteArray();
+    }
+
+    private static byte[] encode(String format, int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, out);
+        return out.toByteArray();
+    }
+}
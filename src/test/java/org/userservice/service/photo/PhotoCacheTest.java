@@ -0,0 +1,144 @@
+package org.userservice.service.photo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PhotoCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private final FileStorage storage = mock(FileStorage.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Runnable> demotions = new ArrayList<>();
+    private PhotoCacheProperties properties;
+    private PhotoCache photoCache;
+
+    @BeforeEach
+    void setUp() {
+        properties = new PhotoCacheProperties();
+        properties.setDirectory(directory);
+        properties.setMemoryMaxSize(DataSize.ofBytes(16));
+        properties.setMaxObjectSize(DataSize.ofBytes(12));
+        photoCache = new PhotoCache(properties, meterRegistry, demotions::add);
+        photoCache.init();
+        stub("a.jpg", "0123456789");
+        stub("b.jpg", "abcdefghij");
+    }
+
+    @Test
+    void get_shouldLoadOnceAndServeRangesFromMemory() throws Exception {
+        assertInstanceOf(PhotoSource.Memory.class, photoCache.get("a.jpg", storage));
+        PhotoSource hit = photoCache.get("a.jpg", storage);
+
+        assertInstanceOf(PhotoSource.Memory.class, hit);
+        assertEquals("2345", read(hit, 2, 4));
+        verify(storage, times(1)).statFile("a.jpg");
+        assertEquals(1, meterRegistry.get("photo.cache.requests").tag("result", "memory_hit").counter().count());
+    }
+
+    @Test
+    void get_shouldDemoteEvictedEntriesToDiskOffRequestThread() throws Exception {
+        photoCache.get("a.jpg", storage);
+        photoCache.get("b.jpg", storage);
+        assertEquals(1, demotions.size());
+        assertTrue(photoCache.cached("a.jpg").isEmpty());
+
+        demotions.forEach(Runnable::run);
+        PhotoSource demoted = photoCache.get("a.jpg", storage);
+
+        assertInstanceOf(PhotoSource.Disk.class, demoted);
+        assertEquals("0123456789", read(demoted, 0, 10));
+        verify(storage, times(1)).statFile("a.jpg");
+    }
+
+    @Test
+    void get_shouldLoadObjectOnceForConcurrentMisses() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        byte[] bytes = "concurrent".getBytes();
+        StoredObject metadata = new StoredObject("c.jpg", bytes.length, "image/jpeg");
+        when(storage.openStream(eq("c.jpg"), eq(0L), anyLong())).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new ByteArrayInputStream(bytes);
+        });
+        ExecutorService requests = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<PhotoSource>> results = new ArrayList<>();
+            results.add(requests.submit(() -> photoCache.get("c.jpg", storage, metadata)));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 3; i++) {
+                results.add(requests.submit(() -> photoCache.get("c.jpg", storage, metadata)));
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            PhotoSource first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<PhotoSource> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            requests.shutdownNow();
+        }
+        verify(storage, times(1)).openStream(eq("c.jpg"), eq(0L), anyLong());
+        assertEquals(bytes.length, meterRegistry.get("photo.cache.size").tag("tier", "memory").gauge().value());
+    }
+
+    @Test
+    void get_shouldDropDemotionWhenQueueIsFull() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        photoCache = new PhotoCache(properties, registry, task -> {
+            throw new RejectedExecutionException();
+        });
+        photoCache.get("a.jpg", storage);
+        photoCache.get("b.jpg", storage);
+
+        assertEquals(1, registry.get("photo.cache.demotions.dropped").counter().count());
+        assertEquals(10, registry.get("photo.cache.size").tag("tier", "memory").gauge().value());
+        assertInstanceOf(PhotoSource.Memory.class, photoCache.get("a.jpg", storage));
+        verify(storage, times(2)).statFile("a.jpg");
+    }
+
+    @Test
+    void invalidate_shouldForceReload() {
+        photoCache.get("a.jpg", storage);
+        photoCache.invalidate("a.jpg");
+        photoCache.get("a.jpg", storage);
+
+        verify(storage, times(2)).statFile("a.jpg");
+    }
+
+    private void stub(String objectName, String content) {
+        byte[] bytes = content.getBytes();
+        when(storage.statFile(objectName)).thenReturn(new StoredObject(objectName, bytes.length, "image/jpeg"));
+        when(storage.openStream(eq(objectName), eq(0L), anyLong()))
+                .thenAnswer(invocation -> new ByteArrayInputStream(bytes));
+    }
+
+    private static String read(PhotoSource source, long offset, long length) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        source.body(offset, length).writeTo(out);
+        return out.toString();
+    }
+}
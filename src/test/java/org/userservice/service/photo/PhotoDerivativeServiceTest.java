@@ -0,0 +1,95 @@
+package org.userservice.service.photo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PhotoDerivativeServiceTest {
+
+    private final FileStorage storage = mock(FileStorage.class);
+    private PhotoDerivativeService derivativeService;
+
+    @BeforeEach
+    void setUp() {
+        PhotoDerivativeProperties properties = new PhotoDerivativeProperties();
+        properties.setSizes(List.of(128, 48));
+        properties.setThreads(1);
+        derivativeService = new PhotoDerivativeService(properties, storage, mock(PhotoCache.class),
+                new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        derivativeService.shutdown();
+    }
+
+    @Test
+    void derivativeKey_shouldStayUnderUserPrefix() {
+        assertEquals("u/abc_48.jpg", PhotoDerivativeService.derivativeKey("u/abc.jpeg", 48));
+        assertEquals("u/abc_48.png", PhotoDerivativeService.derivativeKey("u/abc.gif", 48));
+    }
+
+    @Test
+    void resolveSize_shouldPickSmallestSufficientSize() {
+        assertEquals(OptionalInt.of(48), derivativeService.resolveSize(32));
+        assertEquals(OptionalInt.of(128), derivativeService.resolveSize(49));
+        assertTrue(derivativeService.resolveSize(512).isEmpty());
+    }
+
+    @Test
+    void schedule_shouldUploadScaledCopies() throws Exception {
+        ByteArrayOutputStream original = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB), "jpg", original);
+        when(storage.getFile("u/abc.jpg")).thenReturn(original.toByteArray());
+        ArgumentCaptor<InputStream> content = ArgumentCaptor.forClass(InputStream.class);
+
+        derivativeService.schedule("u/abc.jpg");
+
+        verify(storage, timeout(5000)).uploadFile(eq("u/abc_48.jpg"), content.capture(), anyLong(), eq("image/jpeg"));
+        verify(storage, timeout(5000)).uploadFile(eq("u/abc_128.jpg"), any(), anyLong(), eq("image/jpeg"));
+        BufferedImage thumbnail = ImageIO.read(content.getValue());
+        assertEquals(48, thumbnail.getWidth());
+        assertEquals(24, thumbnail.getHeight());
+        assertTrue(derivativeService.isAvailable("u/abc_48.jpg", "u/abc.jpg"));
+        verify(storage, never()).exists(any());
+    }
+
+    @Test
+    void isAvailable_shouldRememberMissingCopyAndQueueRebuildOnce() throws Exception {
+        ByteArrayOutputStream original = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB), "jpg", original);
+        CountDownLatch release = new CountDownLatch(1);
+        when(storage.getFile("u/lost.jpg")).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return original.toByteArray();
+        });
+
+        assertFalse(derivativeService.isAvailable("u/lost_48.jpg", "u/lost.jpg"));
+        assertFalse(derivativeService.isAvailable("u/lost_48.jpg", "u/lost.jpg"));
+        assertFalse(derivativeService.isAvailable("u/lost_128.jpg", "u/lost.jpg"));
+        verify(storage, times(1)).exists("u/lost_48.jpg");
+        release.countDown();
+
+        verify(storage, timeout(5000)).uploadFile(eq("u/lost_128.jpg"), any(), anyLong(), eq("image/jpeg"));
+        verify(storage, times(1)).getFile("u/lost.jpg");
+        assertTrue(derivativeService.isAvailable("u/lost_48.jpg", "u/lost.jpg"));
+        verify(storage, times(1)).exists("u/lost_48.jpg");
+    }
+}
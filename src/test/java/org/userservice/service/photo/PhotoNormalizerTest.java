@@ -0,0 +1,104 @@
+package org.userservice.service.photo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PhotoNormalizerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PhotoNormalizer normalizer;
+
+    @BeforeEach
+    void setUp() {
+        PhotoNormalizationProperties properties = new PhotoNormalizationProperties();
+        properties.setEnabled(true);
+        properties.setMaxEdge(500);
+        normalizer = new PhotoNormalizer(properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        normalizer.shutdown();
+    }
+
+    @Test
+    void normalize_shouldDownscaleAndReencodeAsJpeg() throws IOException {
+        byte[] png = encode(new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_RGB), "png", true);
+        MockMultipartFile file = new MockMultipartFile("file", "photo.png", "image/png", png);
+
+        PhotoNormalizer.NormalizedPhoto result = normalizer
+                .normalize(file, new ImageInfo(ImageHeaderParser.PNG, 2000, 1000))
+                .orElseThrow();
+
+        assertEquals(new ImageInfo(ImageHeaderParser.JPEG, 500, 250), result.image());
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(result.content()));
+        assertEquals(500, decoded.getWidth());
+        assertTrue(result.content().length < png.length);
+        assertEquals(1, meterRegistry.get("photo.normalization.bytes.saved").summary().count());
+    }
+
+    @Test
+    void normalize_shouldKeepTransparentImages() throws IOException {
+        byte[] png = encode(new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB), "png", false);
+        MockMultipartFile file = new MockMultipartFile("file", "logo.png", "image/png", png);
+
+        assertTrue(normalizer.normalize(file, new ImageInfo(ImageHeaderParser.PNG, 100, 100)).isEmpty());
+        assertEquals(1, meterRegistry.get("photo.normalization.skipped").tag("reason", "unsupported").counter().count());
+    }
+
+    @Test
+    void normalize_shouldApplyExifOrientationBeforeScaling() throws IOException {
+        BufferedImage landscape = new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = landscape.createGraphics();
+        graphics.setColor(Color.RED);
+        graphics.fillRect(0, 0, 100, 100);
+        graphics.setColor(Color.BLUE);
+        graphics.fillRect(100, 0, 100, 100);
+        graphics.dispose();
+        byte[] jpeg = ImageHeaderParserTest.withOrientation(encode(landscape, "jpg", false), 6, ByteOrder.BIG_ENDIAN);
+        MockMultipartFile file = new MockMultipartFile("file", "phone.jpg", "image/jpeg", jpeg);
+
+        PhotoNormalizer.NormalizedPhoto result = normalizer
+                .normalize(file, new ImageInfo(ImageHeaderParser.JPEG, 200, 100))
+                .orElseThrow();
+
+        // Поворот на 90° по часовой: левая (красная) половина оказывается сверху
+        assertEquals(new ImageInfo(ImageHeaderParser.JPEG, 100, 200), result.image());
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(result.content()));
+        assertEquals(100, decoded.getWidth());
+        assertEquals(200, decoded.getHeight());
+        assertTrue(new Color(decoded.getRGB(50, 20)).getRed() > 200);
+        assertTrue(new Color(decoded.getRGB(50, 180)).getBlue() > 200);
+        assertEquals(ImageHeaderParser.NORMAL_ORIENTATION,
+                ImageHeaderParser.orientation(new ByteArrayInputStream(result.content()), result.content().length));
+    }
+
+    private static byte[] encode(BufferedImage image, String format, boolean noise) throws IOException {
+        if (noise) {
+            Random random = new Random(42);
+            for (int y = 0; y < image.getHeight(); y += 2) {
+                for (int x = 0; x < image.getWidth(); x += 2) {
+                    image.setRGB(x, y, random.nextInt());
+                }
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+}
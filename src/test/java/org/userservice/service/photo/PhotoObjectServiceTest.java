@@ -0,0 +1,147 @@
+package org.userservice.service.photo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.userservice.repo.PhotoObjectRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:photo-objects;MODE=PostgreSQL")
+@Import({PhotoObjectService.class, PhotoObjectServiceTest.TestConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PhotoObjectServiceTest {
+
+    @Autowired
+    private PhotoObjectService service;
+
+    @Autowired
+    private PhotoObjectRepository repository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoBean
+    private FileStorage storage;
+
+    @MockitoBean
+    private PhotoCache photoCache;
+
+    @MockitoBean
+    private PhotoDerivativeService derivativeService;
+
+    @Test
+    void retain_shouldInsertFirstReferenceAndDeduplicateLaterOnes() {
+        assertTrue(inTransaction(() -> service.retain("cas/first")));
+        assertFalse(inTransaction(() -> service.retain("cas/first")));
+
+        assertEquals(2, repository.findById("cas/first").orElseThrow().getRefCount());
+    }
+
+    @Test
+    void retain_shouldNotFailWhenSameContentIsUploadedConcurrently() throws Exception {
+        int uploads = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(uploads);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < uploads; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return inTransaction(() -> service.retain("cas/concurrent"));
+                }));
+            }
+            start.countDown();
+            int uploaded = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(10, TimeUnit.SECONDS)) {
+                    uploaded++;
+                }
+            }
+            assertEquals(1, uploaded);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(uploads, repository.findById("cas/concurrent").orElseThrow().getRefCount());
+    }
+
+    @Test
+    void release_shouldPurgeUnreferencedObjectOnlyAfterCommit() {
+        inTransaction(() -> service.retain("cas/purged"));
+        inTransaction(() -> service.retain("cas/purged"));
+
+        inTransaction(() -> {
+            service.release("cas/purged");
+            return null;
+        });
+        verifyNoInteractions(storage);
+
+        inTransaction(() -> {
+            service.release("cas/purged");
+            verifyNoInteractions(storage);
+            return null;
+        });
+        verify(photoCache).invalidate("cas/purged");
+        verify(derivativeService).delete("cas/purged");
+        verify(storage).deleteFile("cas/purged");
+        assertTrue(repository.findById("cas/purged").isEmpty());
+    }
+
+    @Test
+    void release_shouldKeepObjectWhenTransactionRollsBack() {
+        inTransaction(() -> service.retain("cas/kept"));
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> {
+            service.release("cas/kept");
+            status.setRollbackOnly();
+        });
+
+        verifyNoInteractions(storage);
+        assertEquals(1, repository.findById("cas/kept").orElseThrow().getRefCount());
+    }
+
+    private <T> T inTransaction(Callable<T> action) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            try {
+                return action.call();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @TestConfiguration
+    static class TestConfig {
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.userservice.service.photo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.userservice.entity.PhotoObject;
+import org.userservice.repo.PhotoObjectRepository;
+import org.userservice.repo.UserPhotoRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class PhotoReconcilerTest {
+
+    private final FileStorage storage = mock(FileStorage.class);
+    private final UserPhotoRepository userPhotoRepository = mock(UserPhotoRepository.class);
+    private final PhotoObjectRepository photoObjectRepository = mock(PhotoObjectRepository.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PhotoReconciler reconciler;
+
+    @BeforeEach
+    void setUp() {
+        PhotoDerivativeProperties derivativeProperties = new PhotoDerivativeProperties();
+        derivativeProperties.setSizes(List.of(48));
+        PhotoDerivativeService derivativeService = new PhotoDerivativeService(derivativeProperties, storage,
+                mock(PhotoCache.class), meterRegistry);
+        reconciler = new PhotoReconciler(storage, userPhotoRepository, photoObjectRepository, derivativeService,
+                mock(PhotoCache.class), transactionTemplate, meterRegistry);
+        ReflectionTestUtils.setField(reconciler, "batchSize", 2);
+        ReflectionTestUtils.setField(reconciler, "gracePeriod", Duration.ofHours(1));
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(photoObjectRepository.findForUpdate(anyString())).thenReturn(Optional.empty());
+        when(photoObjectRepository.saveAndFlush(any(PhotoObject.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(storage.removeObjects(anyCollection())).thenReturn(List.of());
+    }
+
+    @Test
+    void reconcile_shouldDeleteOnlyOldUnreferencedObjects() {
+        Instant old = Instant.now().minus(Duration.ofDays(2));
+        when(storage.listObjects(2)).thenReturn(Stream.of(
+                new ListedObject("cas/a.jpg", 10, old),
+                new ListedObject("cas/a_48.jpg", 1, old),
+                new ListedObject("cas/b.jpg", 20, old),
+                new ListedObject("cas/b_48.jpg", 2, old),
+                new ListedObject("cas/c.jpg", 30, Instant.now())));
+        when(photoObjectRepository.findReferencedKeys(anyCollection()))
+                .thenAnswer(invocation -> invocation.<Collection<String>>getArgument(0).stream()
+                        .filter("cas/a.jpg"::equals)
+                        .toList());
+
+        reconciler.reconcile();
+
+        verify(storage).removeObjects(List.of("cas/b.jpg", "cas/b_48.jpg"));
+        verify(storage, times(1)).removeObjects(anyCollection());
+        assertEquals(22, meterRegistry.get("photo.reconciler.bytes.reclaimed").counter().count());
+        assertEquals(5, meterRegistry.get("photo.reconciler.scanned").counter().count());
+    }
+}
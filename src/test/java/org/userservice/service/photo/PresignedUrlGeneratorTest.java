@@ -0,0 +1,84 @@
+package org.userservice.service.photo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.MinioClient;
+import io.minio.http.Method;
+import okhttp3.HttpUrl;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PresignedUrlGeneratorTest {
+
+    private static final String OBJECT = "user id/photo ü+1.jpg";
+
+    @Test
+    void presignedGetUrl_shouldBeStableWithinWindowAndChangeAcrossWindows() {
+        Instant start = Instant.parse("2026-01-01T10:00:00Z");
+        String first = generator(start.plusSeconds(5)).presignedGetUrl(OBJECT);
+        String sameWindow = generator(start.plus(Duration.ofMinutes(59))).presignedGetUrl(OBJECT);
+        String nextWindow = generator(start.plus(Duration.ofMinutes(61))).presignedGetUrl(OBJECT);
+
+        assertEquals(first, sameWindow);
+        assertNotEquals(first, nextWindow);
+        HttpUrl url = HttpUrl.get(first);
+        assertEquals("20260101T100000Z", url.queryParameter("X-Amz-Date"));
+        assertEquals(String.valueOf(Duration.ofHours(4).toSeconds()), url.queryParameter("X-Amz-Expires"));
+    }
+
+    @Test
+    void presignedGetUrl_shouldMatchMinioClientSignature() throws Exception {
+        MinioClient client = MinioClient.builder()
+                .endpoint("http://minio:9000")
+                .credentials("access", "secret")
+                .region("us-east-1")
+                .build();
+        String expected = client.getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
+                .method(Method.GET)
+                .bucket("user-photos")
+                .object(OBJECT)
+                .expiry(Math.toIntExact(Duration.ofHours(4).toSeconds()))
+                .build());
+        Instant signedAt = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC)
+                .parse(HttpUrl.get(expected).queryParameter("X-Amz-Date"), Instant::from);
+
+        // окно в одну секунду совпадает с точностью X-Amz-Date, поэтому подписи должны совпасть полностью
+        PresignedUrlGenerator generator = new PresignedUrlGenerator("http://minio:9000", "user-photos", "us-east-1",
+                "access", "secret", Duration.ofHours(4).minusSeconds(1), Duration.ofSeconds(1), 100,
+                new SimpleMeterRegistry(), Clock.fixed(signedAt, ZoneOffset.UTC));
+
+        assertEquals(expected, generator.presignedGetUrl(OBJECT));
+    }
+
+    @Test
+    void presignedPutUrl_shouldMatchMinioClientSignature() throws Exception {
+        MinioClient client = MinioClient.builder()
+                .endpoint("http://minio:9000")
+                .credentials("access", "secret")
+                .region("us-east-1")
+                .build();
+        String expected = client.getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
+                .method(Method.PUT)
+                .bucket("user-photos")
+                .object(OBJECT)
+                .expiry(Math.toIntExact(Duration.ofMinutes(15).toSeconds()))
+                .build());
+        Instant signedAt = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC)
+                .parse(HttpUrl.get(expected).queryParameter("X-Amz-Date"), Instant::from);
+
+        assertEquals(expected, generator(signedAt).presignedPutUrl(OBJECT, Duration.ofMinutes(15)));
+    }
+
+    private static PresignedUrlGenerator generator(Instant now) {
+        return new PresignedUrlGenerator("http://minio:9000", "user-photos", "us-east-1", "access", "secret",
+                Duration.ofHours(3), Duration.ofHours(1), 100, new SimpleMeterRegistry(),
+                Clock.fixed(now, ZoneOffset.UTC));
+    }
+}
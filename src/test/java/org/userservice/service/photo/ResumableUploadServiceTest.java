@@ -0,0 +1,256 @@
+package org.userservice.service.photo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.util.unit.DataSize;
+import org.userservice.dto.photo.UploadSessionDto;
+import org.userservice.entity.UserPhoto;
+import org.userservice.exception.BadRequestException;
+import org.userservice.exception.FileStorageException;
+import org.userservice.exception.InvalidFileException;
+import org.userservice.exception.ResourceNotFoundException;
+import org.userservice.exception.UploadOffsetConflictException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ResumableUploadServiceTest {
+
+    private static final UUID USER_ID = UUID.randomUUID();
+    private static final byte[] CONTENT = "0123456789".getBytes();
+
+    @TempDir
+    Path root;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Map<String, Map<String, String>> redis = new HashMap<>();
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+    private final DirectUploadService directUploadService = mock(DirectUploadService.class);
+    private FilesystemFileStorage storage;
+    private ResumableUploadService service;
+
+    @BeforeEach
+    void setUp() {
+        FilesystemStorageProperties storageProperties = new FilesystemStorageProperties();
+        storageProperties.setRoot(root);
+        storageProperties.setUrlSecret("secret");
+        storage = new FilesystemFileStorage(storageProperties);
+        storage.init();
+        fakeRedis();
+        service = new ResumableUploadService(redisTemplate, storage, directUploadService,
+                properties(3), Duration.ofHours(24), meterRegistry);
+    }
+
+    @Test
+    void constructor_shouldRejectSessionsOutlivingReconcilerGracePeriod() {
+        ResumableUploadProperties properties = new ResumableUploadProperties();
+        properties.setSessionTtl(Duration.ofHours(24));
+
+        assertThrows(IllegalArgumentException.class, () -> new ResumableUploadService(redisTemplate, storage,
+                directUploadService, properties, Duration.ofHours(24), meterRegistry));
+    }
+
+    @Test
+    void appendChunk_shouldAcceptNextChunkAndConfirmRepeatWithoutStoringIt() throws Exception {
+        UploadSessionDto session = service.createSession(USER_ID, CONTENT.length);
+
+        assertEquals(4, append(session, 0, 4).offset());
+        assertEquals(4, append(session, 0, 4).offset());
+
+        assertEquals(4, service.getSession(USER_ID, session.uploadId()).offset());
+        assertEquals(1, parts(session).size());
+        assertEquals(1, chunks("accepted"));
+        assertEquals(1, chunks("repeated"));
+    }
+
+    @Test
+    void appendChunk_shouldReportAcceptedOffsetOnConflictAndRejectChunksPastDeclaredSize() throws Exception {
+        UploadSessionDto session = service.createSession(USER_ID, CONTENT.length);
+        append(session, 0, 4);
+
+        UploadOffsetConflictException conflict = assertThrows(UploadOffsetConflictException.class,
+                () -> append(session, 6, 4));
+        assertEquals(4, conflict.getOffset());
+        assertEquals(1, chunks("conflict"));
+
+        assertThrows(BadRequestException.class, () -> service.appendChunk(USER_ID, session.uploadId(), 4,
+                new ByteArrayInputStream(new byte[7]), 7));
+        assertEquals(1, parts(session).size());
+        assertThrows(ResourceNotFoundException.class, () -> service.getSession(UUID.randomUUID(), session.uploadId()));
+    }
+
+    @Test
+    void appendChunk_shouldRejectSmallIntermediateChunksButAcceptSmallLastOne() {
+        UploadSessionDto session = service.createSession(USER_ID, CONTENT.length);
+
+        assertThrows(BadRequestException.class, () -> append(session, 0, 3));
+        append(session, 0, 4);
+        append(session, 4, 4);
+
+        assertEquals(CONTENT.length, append(session, 8, 2).offset());
+    }
+
+    @Test
+    void appendChunk_shouldRequireLastAllowedPartToCompleteFile() throws Exception {
+        service = new ResumableUploadService(redisTemplate, storage, directUploadService,
+                properties(2), Duration.ofHours(24), meterRegistry);
+        UploadSessionDto session = service.createSession(USER_ID, CONTENT.length);
+        append(session, 0, 4);
+
+        assertThrows(BadRequestException.class, () -> append(session, 4, 4));
+        assertEquals(1, parts(session).size());
+
+        assertEquals(CONTENT.length, append(session, 4, 6).offset());
+    }
+
+    @Test
+    void complete_shouldComposePartsInOrderAndCleanUp() throws Exception {
+        UploadSessionDto session = service.createSession(USER_ID, CONTENT.length);
+        append(session, 0, 4);
+        assertThrows(UploadOffsetConflictException.class, () -> service.complete(USER_ID, session.uploadId()));
+        append(session, 4, 6);
+        String target = DirectUploadService.INCOMING_PREFIX + USER_ID + "/" + session.uploadId();
+        UserPhoto photo = new UserPhoto();
+        when(directUploadService.confirmUpload(USER_ID, target)).thenReturn(photo);
+
+        assertSame(photo, service.complete(USER_ID, session.uploadId()));
+
+        assertArrayEquals(CONTENT, storage.getFile(target));
+        assertTrue(parts(session).isEmpty());
+        assertTrue(redis.isEmpty());
+        assertEquals(1, meterRegistry.get("photo.resumable.sessions").tag("outcome", "completed").counter().count());
+    }
+
+    @Test
+    void complete_shouldRefuseConcurrentCompletionAndAllowRetryAfterStorageError() throws Exception {
+        UploadSessionDto session = service.createSession(USER_ID, CONTENT.length);
+        append(session, 0, CONTENT.length);
+        String key = ResumableUploadService.SESSION_KEY_PREFIX + session.uploadId();
+        redis.get(key).put("completing", Instant.now().toString());
+
+        assertThrows(BadRequestException.class, () -> service.complete(USER_ID, session.uploadId()));
+
+        redis.get(key).remove("completing");
+        when(directUploadService.confirmUpload(eq(USER_ID), anyString()))
+                .thenThrow(new FileStorageException("storage is down", new IOException("connection reset")))
+                .thenReturn(new UserPhoto());
+        assertThrows(FileStorageException.class, () -> service.complete(USER_ID, session.uploadId()));
+        assertFalse(redis.get(key).containsKey("completing"));
+        assertEquals(1, parts(session).size());
+
+        assertNotNull(service.complete(USER_ID, session.uploadId()));
+    }
+
+    @Test
+    void complete_shouldDiscardSessionWhenFileIsRejected() throws Exception {
+        UploadSessionDto session = service.createSession(USER_ID, CONTENT.length);
+        append(session, 0, CONTENT.length);
+        when(directUploadService.confirmUpload(eq(USER_ID), anyString()))
+                .thenThrow(new InvalidFileException("Unsupported image format"));
+
+        assertThrows(InvalidFileException.class, () -> service.complete(USER_ID, session.uploadId()));
+
+        assertTrue(parts(session).isEmpty());
+        assertThrows(ResourceNotFoundException.class, () -> service.getSession(USER_ID, session.uploadId()));
+    }
+
+    @Test
+    void abort_shouldDeletePartsAndSession() throws Exception {
+        UploadSessionDto session = service.createSession(USER_ID, CONTENT.length);
+        append(session, 0, 4);
+
+        assertThrows(ResourceNotFoundException.class, () -> service.abort(UUID.randomUUID(), session.uploadId()));
+        service.abort(USER_ID, session.uploadId());
+
+        assertTrue(parts(session).isEmpty());
+        assertThrows(ResourceNotFoundException.class, () -> service.getSession(USER_ID, session.uploadId()));
+        assertEquals(1, meterRegistry.get("photo.resumable.sessions").tag("outcome", "aborted").counter().count());
+    }
+
+    /**
+     * Нижняя граница куска - 4 байта, чтобы файл из {@link #CONTENT} делился на несколько частей.
+     */
+    private static ResumableUploadProperties properties(int maxParts) {
+        ResumableUploadProperties properties = new ResumableUploadProperties();
+        properties.setMinChunkSize(DataSize.ofBytes(4));
+        properties.setMaxParts(maxParts);
+        return properties;
+    }
+
+    private UploadSessionDto append(UploadSessionDto session, int offset, int length) {
+        return service.appendChunk(USER_ID, session.uploadId(), offset,
+                new ByteArrayInputStream(Arrays.copyOfRange(CONTENT, offset, offset + length)), length);
+    }
+
+    private List<Path> parts(UploadSessionDto session) throws Exception {
+        Path directory = root.resolve("uploads").resolve(session.uploadId().toString());
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.toList();
+        }
+    }
+
+    private double chunks(String outcome) {
+        return meterRegistry.get("photo.resumable.chunks").tag("outcome", outcome).counter().count();
+    }
+
+    /**
+     * Hash-операции и скрипт добавления части поверх карты в памяти, с той же семантикой, что в Redis.
+     */
+    @SuppressWarnings("unchecked")
+    private void fakeRedis() {
+        HashOperations<String, Object, Object> hash = mock(HashOperations.class);
+        when(redisTemplate.opsForHash()).thenReturn(hash);
+        when(hash.entries(anyString())).thenAnswer(i -> new HashMap<>(redis.getOrDefault(i.<String>getArgument(0), Map.of())));
+        doAnswer(i -> {
+            redis.computeIfAbsent(i.getArgument(0), k -> new HashMap<>()).putAll(i.getArgument(1));
+            return null;
+        }).when(hash).putAll(anyString(), any());
+        when(hash.putIfAbsent(anyString(), any(), any())).thenAnswer(i ->
+                redis.computeIfAbsent(i.getArgument(0), k -> new HashMap<>())
+                        .putIfAbsent(i.getArgument(1), i.getArgument(2)) == null);
+        when(hash.delete(anyString(), any())).thenAnswer(i -> {
+            Map<String, String> fields = redis.get(i.<String>getArgument(0));
+            return fields != null && fields.remove(i.<String>getArgument(1)) != null ? 1L : 0L;
+        });
+        when(redisTemplate.expireAt(anyString(), any(Instant.class))).thenReturn(true);
+        when(redisTemplate.delete(anyString())).thenAnswer(i -> redis.remove(i.<String>getArgument(0)) != null);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any(), any())).thenAnswer(i -> {
+            Map<String, String> session = redis.get(i.<List<String>>getArgument(1).get(0));
+            if (session == null) {
+                return List.of(0L, -1L);
+            }
+            if (!session.get("offset").equals(i.getArgument(2))) {
+                return List.of(0L, Long.parseLong(session.get("offset")));
+            }
+            String parts = session.get("parts");
+            session.put("parts", parts.isEmpty() ? i.getArgument(4) : parts + "," + i.getArgument(4));
+            session.put("offset", i.getArgument(3));
+            return List.of(1L, Long.parseLong(i.getArgument(3)));
+        });
+    }
+}
@@ -0,0 +1,86 @@
+package org.userservice.service.photo;
+
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StorageCallExecutorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private StorageResilienceProperties properties;
+    private StorageCallExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StorageResilienceProperties();
+        properties.setInitialBackoff(Duration.ofMillis(10));
+        properties.setHedgeMinDelay(Duration.ofMillis(20));
+        properties.setHedgeMaxDelay(Duration.ofMillis(20));
+        executor = new StorageCallExecutor(properties, BulkheadRegistry.ofDefaults(), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void call_shouldRetryTransientFailuresButNotPermanentOnes() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        String result = executor.call("stat", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IOException("connection reset");
+            }
+            return "ok";
+        });
+        assertEquals("ok", result);
+        assertEquals(2, meterRegistry.get("photo.storage.retries").tag("operation", "stat").counter().count());
+
+        AtomicInteger permanent = new AtomicInteger();
+        assertThrows(IllegalStateException.class, () -> executor.call("stat", () -> {
+            permanent.incrementAndGet();
+            throw new IllegalStateException("access denied");
+        }));
+        assertEquals(1, permanent.get());
+    }
+
+    @Test
+    void call_shouldStopRetryingWhenRequestDeadlineIsSpent() {
+        AtomicInteger attempts = new AtomicInteger();
+        try (StorageDeadline.Scope ignored = StorageDeadline.open(Duration.ZERO)) {
+            assertThrows(TimeoutException.class, () -> executor.call("delete", () -> {
+                attempts.incrementAndGet();
+                return null;
+            }));
+        }
+        assertEquals(0, attempts.get());
+        assertEquals(1, meterRegistry.get("photo.storage.deadline.exceeded").tag("operation", "delete").counter().count());
+    }
+
+    @Test
+    void hedged_shouldReturnSecondReadWhenFirstIsSlow() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger attempts = new AtomicInteger();
+        String result = executor.hedged("get", () -> {
+            if (attempts.incrementAndGet() == 1) {
+                release.await(5, TimeUnit.SECONDS);
+                return "slow";
+            }
+            return "fast";
+        });
+        release.countDown();
+        assertEquals("fast", result);
+        assertEquals(1, meterRegistry.get("photo.storage.hedges").tag("outcome", "won").counter().count());
+    }
+}
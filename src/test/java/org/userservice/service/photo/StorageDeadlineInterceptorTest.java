@@ -0,0 +1,127 @@
+package org.userservice.service.photo;
+
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.DelegatingServletInputStream;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class StorageDeadlineInterceptorTest {
+
+    private static final Duration DEADLINE = Duration.ofMillis(200);
+
+    private StorageCallExecutor executor;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        StorageResilienceProperties properties = new StorageResilienceProperties();
+        properties.setDeadline(DEADLINE);
+        executor = new StorageCallExecutor(properties, BulkheadRegistry.ofDefaults(), new SimpleMeterRegistry());
+        mockMvc = MockMvcBuilders.standaloneSetup(new UploadController(executor))
+                .addInterceptors(new StorageDeadlineInterceptor(properties))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void slowRequestBody_shouldNotSpendStorageDeadline() throws Exception {
+        byte[] body = "photo".getBytes(StandardCharsets.UTF_8);
+
+        mockMvc.perform(put("/upload").with(slowBody(body, DEADLINE.multipliedBy(2))))
+                .andExpect(status().isOk())
+                .andExpect(content().string("photo"));
+
+        assertTrue(StorageDeadline.current().isEmpty());
+    }
+
+    @RestController
+    static class UploadController {
+        private final StorageCallExecutor executor;
+
+        UploadController(StorageCallExecutor executor) {
+            this.executor = executor;
+        }
+
+        @PutMapping("/upload")
+        String upload(HttpServletRequest request) throws Exception {
+            byte[] body = request.getInputStream().readAllBytes();
+            return executor.callOnce("upload", () -> new String(body, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Тело запроса, первые байты которого приходят с задержкой, как от клиента на медленном канале.
+     */
+    private static RequestPostProcessor slowBody(byte[] body, Duration delay) {
+        return request -> {
+            MockHttpServletRequest slow = new MockHttpServletRequest(
+                    request.getServletContext(), request.getMethod(), request.getRequestURI()) {
+                @Override
+                public ServletInputStream getInputStream() {
+                    return new DelegatingServletInputStream(new DelayedInputStream(new ByteArrayInputStream(body), delay));
+                }
+            };
+            slow.setContent(body);
+            return slow;
+        };
+    }
+
+    private static final class DelayedInputStream extends FilterInputStream {
+        private Duration delay;
+
+        private DelayedInputStream(InputStream in, Duration delay) {
+            super(in);
+            this.delay = delay;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            awaitFirstBytes();
+            return super.read(b, off, len);
+        }
+
+        @Override
+        public int read() throws IOException {
+            awaitFirstBytes();
+            return super.read();
+        }
+
+        private void awaitFirstBytes() throws IOException {
+            if (delay != null) {
+                try {
+                    Thread.sleep(delay.toMillis());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+                delay = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package org.userservice.service.photo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.userservice.dto.details.UserDetailsRequestDto;
+import org.userservice.entity.User;
+import org.userservice.entity.UserDetails;
+import org.userservice.exception.FileStorageException;
+import org.userservice.exception.PhotoServiceException;
+import org.userservice.repo.PhotoObjectRepository;
+import org.userservice.repo.UserDetailsRepository;
+import org.userservice.repo.UserRepository;
+import org.userservice.service.details.UserCrudService;
+import org.userservice.service.details.UserDetailsService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:user-photo-refs;MODE=PostgreSQL")
+@Import({UserPhotoService.class, UserPhotoCrudService.class, PhotoObjectService.class,
+        UserDetailsService.class, UserCrudService.class, UserPhotoServiceRefCountTest.TestConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserPhotoServiceRefCountTest {
+
+    private static final ImageInfo JPEG = new ImageInfo("image/jpeg", 640, 480);
+
+    @Autowired
+    private UserPhotoService service;
+
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserDetailsRepository userDetailsRepository;
+
+    @Autowired
+    private PhotoObjectRepository photoObjectRepository;
+
+    @MockitoBean
+    private FileStorage storage;
+
+    @MockitoBean
+    private FileValidationService fileValidationService;
+
+    @MockitoBean
+    private PhotoCache photoCache;
+
+    @MockitoBean
+    private PhotoDerivativeService derivativeService;
+
+    @MockitoBean
+    private PhotoNormalizer photoNormalizer;
+
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setUserName("user-" + UUID.randomUUID());
+        user.setPasswordHash("hash");
+        user = userRepository.save(user);
+        UserDetails details = new UserDetails();
+        details.setUser(user);
+        userDetailsRepository.save(details);
+        userId = user.getId();
+        when(fileValidationService.validateImageFile(any())).thenReturn(JPEG);
+    }
+
+    @Test
+    void uploadUserPhoto_shouldReleasePreviousKeyAndKeepNewOne() {
+        String oldKey = service.uploadUserPhoto(userId, photo("old")).getFilePath();
+
+        String newKey = service.uploadUserPhoto(userId, photo("new")).getFilePath();
+
+        assertNotEquals(oldKey, newKey);
+        assertEquals(newKey, service.getPhotoRecord(userId).getFilePath());
+        assertEquals(1, photoObjectRepository.findById(newKey).orElseThrow().getRefCount());
+        assertTrue(photoObjectRepository.findById(oldKey).isEmpty());
+        verify(storage).deleteFile(oldKey);
+        verify(storage, never()).deleteFile(newKey);
+    }
+
+    @Test
+    void uploadUserPhoto_shouldKeepSingleReferenceWhenSameContentIsUploadedAgain() {
+        String key = service.uploadUserPhoto(userId, photo("same")).getFilePath();
+
+        assertEquals(key, service.uploadUserPhoto(userId, photo("same")).getFilePath());
+
+        assertEquals(1, photoObjectRepository.findById(key).orElseThrow().getRefCount());
+        verify(storage, times(1)).uploadFile(eq(key), any(InputStream.class), anyLong(), anyString());
+        verify(storage, never()).deleteFile(anyString());
+    }
+
+    @Test
+    void createProfile_shouldReplacePhotoAndLeaveNoReferenceBehindOnFailure() throws IOException {
+        UserDetailsRequestDto request = new UserDetailsRequestDto("John", "Doe", null, null, null, null);
+        String oldKey = userDetailsService.createProfile(userId, request, photo("old")).photoUrl();
+        doThrow(new FileStorageException("storage down", null))
+                .when(storage).uploadFile(anyString(), any(InputStream.class), anyLong(), anyString());
+
+        assertThrows(PhotoServiceException.class, () -> userDetailsService.createProfile(userId, request, photo("failed")));
+        verify(storage, times(3)).uploadFile(eq(service.contentKey(photo("failed"), JPEG)),
+                any(InputStream.class), anyLong(), anyString());
+
+        assertEquals(oldKey, service.getPhotoRecord(userId).getFilePath());
+        assertTrue(photoObjectRepository.findById(service.contentKey(photo("failed"), JPEG)).isEmpty());
+        assertEquals(1, photoObjectRepository.findById(oldKey).orElseThrow().getRefCount());
+
+        reset(storage);
+        String newKey = userDetailsService.createProfile(userId, request, photo("new")).photoUrl();
+
+        assertEquals(newKey, service.getPhotoRecord(userId).getFilePath());
+        assertEquals(1, photoObjectRepository.findById(newKey).orElseThrow().getRefCount());
+        assertTrue(photoObjectRepository.findById(oldKey).isEmpty());
+        verify(storage).deleteFile(oldKey);
+    }
+
+    /**
+     * База общая для всех тестов класса, поэтому содержимое уникально для пользователя.
+     */
+    private MockMultipartFile photo(String content) {
+        return new MockMultipartFile("file", "photo.jpg", "image/jpeg", (userId + content).getBytes());
+    }
+
+    @TestConfiguration
+    static class TestConfig {
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package org.userservice.service.photo;
 
-import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,6 +15,7 @@ import org.userservice.utils.UserPhotoMapper;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -24,11 +24,13 @@ import static org.mockito.Mockito.*;
 @SpringBootTest(classes = { UserPhotoServiceIntegrationTest.TestConfigForUserPhotoService.class, UserPhotoService.class })
 class UserPhotoServiceIntegrationTest {
 
+    private static final ImageInfo JPEG = new ImageInfo("image/jpeg", 640, 480);
+
     @Autowired
     private UserPhotoService userPhotoService;
 
     @Autowired
-    private MinioFileStorageService minioFileStorageService;
+    private FileStorage fileStorage;
 
     @Autowired
     private FileValidationService fileValidationService;
@@ -36,6 +38,9 @@ class UserPhotoServiceIntegrationTest {
     @Autowired
     private UserPhotoCrudService userPhotoCrudService;
 
+    @Autowired
+    private PhotoObjectService photoObjectService;
+
     private final UUID userId = UUID.randomUUID();
 
     private MultipartFile mockFile;
@@ -55,11 +60,11 @@ class UserPhotoServiceIntegrationTest {
 
     @Test
     void uploadUserPhoto_shouldUploadSuccessfully() {
-        doNothing().when(fileValidationService).validateImageFile(mockFile);
-        String expectedPattern = userId + "/.*\\.jpg";
-        when(userPhotoCrudService.getPhotoForUser(userId))
-                .thenThrow(new EntityNotFoundException("Photo not found"));
-        when(userPhotoCrudService.updateOrCreateUserPhoto(eq(userId), matches(expectedPattern)))
+        when(fileValidationService.validateImageFile(mockFile)).thenReturn(JPEG);
+        String expectedPattern = "cas/[0-9a-f]{64}\\.jpg";
+        when(photoObjectService.retain(matches(expectedPattern))).thenReturn(true);
+        when(userPhotoCrudService.findPhotoForUser(userId)).thenReturn(Optional.empty());
+        when(userPhotoCrudService.updateOrCreateUserPhoto(eq(userId), matches(expectedPattern), any(PhotoMetadata.class)))
                 .thenAnswer(invocation -> {
                     UserPhoto photo = new UserPhoto();
                     photo.setId(UUID.randomUUID());
@@ -70,33 +75,32 @@ class UserPhotoServiceIntegrationTest {
         assertNotNull(result);
         assertTrue(result.getFilePath().matches(expectedPattern));
         verify(fileValidationService).validateImageFile(mockFile);
-        verify(minioFileStorageService).uploadFile(
+        verify(fileStorage).uploadFile(
                 matches(expectedPattern),
                 any(InputStream.class),
                 eq(1024L),
                 eq("image/jpeg")
         );
-        verify(userPhotoCrudService).updateOrCreateUserPhoto(eq(userId), matches(expectedPattern));
+        verify(userPhotoCrudService).updateOrCreateUserPhoto(eq(userId), matches(expectedPattern),
+                eq(new PhotoMetadata("image/jpeg", 1024L, UserPhotoService.versionOf(result.getFilePath()), 640, 480)));
     }
 
     @Test
-    void uploadUserPhoto_shouldDeleteOldPhotoIfExists() {
-        String oldFilePath = userId + "/old.jpg";
-        UserPhoto oldPhoto = new UserPhoto();
-        oldPhoto.setId(UUID.randomUUID());
-        oldPhoto.setFilePath(oldFilePath);
-        doNothing().when(fileValidationService).validateImageFile(mockFile);
-        when(userPhotoCrudService.getPhotoForUser(userId)).thenReturn(oldPhoto);
-        String newFilePattern = userId + "/.*\\.jpg";
-        when(userPhotoCrudService.updateOrCreateUserPhoto(eq(userId), matches(newFilePattern)))
-                .thenAnswer(invocation -> {
-                    UserPhoto photo = new UserPhoto();
-                    photo.setId(UUID.randomUUID());
-                    photo.setFilePath(invocation.getArgument(1));
-                    return photo;
-                });
-        userPhotoService.uploadUserPhoto(userId, mockFile);
-        verify(minioFileStorageService).deleteFile(oldFilePath);
+    void uploadUserPhoto_shouldSkipStorageWhenContentAlreadyStored() throws IOException {
+        when(mockFile.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream("stock avatar".getBytes()));
+        when(fileValidationService.validateImageFile(mockFile)).thenReturn(JPEG);
+        String sharedKey = userPhotoService.contentKey(mockFile, JPEG);
+        when(photoObjectService.retain(sharedKey)).thenReturn(false);
+        when(userPhotoCrudService.findPhotoForUser(userId)).thenReturn(Optional.empty());
+        UserPhoto photo = new UserPhoto();
+        photo.setFilePath(sharedKey);
+        when(userPhotoCrudService.updateOrCreateUserPhoto(eq(userId), eq(sharedKey), any(PhotoMetadata.class))).thenReturn(photo);
+
+        UserPhoto result = userPhotoService.uploadUserPhoto(userId, mockFile);
+
+        assertEquals(sharedKey, result.getFilePath());
+        assertEquals(sharedKey, userPhotoService.contentKey(mockFile, JPEG));
+        verify(fileStorage, never()).uploadFile(eq(sharedKey), any(InputStream.class), anyLong(), anyString());
     }
 
     @Test
@@ -107,11 +111,23 @@ class UserPhotoServiceIntegrationTest {
         userPhoto.setId(UUID.randomUUID());
         userPhoto.setFilePath(filePath);
         when(userPhotoCrudService.getPhotoForUser(userId)).thenReturn(userPhoto);
-        when(minioFileStorageService.getFile(filePath)).thenReturn(expectedBytes);
+        when(fileStorage.getFile(filePath)).thenReturn(expectedBytes);
         byte[] result = userPhotoService.findPhotoByUserId(userId);
         assertArrayEquals(expectedBytes, result);
     }
 
+    @Test
+    void describePhoto_shouldAnswerFromRecordWithoutStorage() {
+        String filePath = "cas/" + userId + ".png";
+        UserPhoto userPhoto = new UserPhoto();
+        userPhoto.setFilePath(filePath);
+        userPhoto.setContentType("image/png");
+        userPhoto.setSizeBytes(2048L);
+
+        assertEquals(new StoredObject(filePath, 2048, "image/png"), userPhotoService.describePhoto(userPhoto, null));
+        verify(fileStorage, never()).statFile(filePath);
+    }
+
     @Test
     void deleteUserPhoto_shouldDeleteFromStorageAndDb() {
         String filePath = "user_photos/" + userId + ".jpg";
@@ -120,12 +136,13 @@ class UserPhotoServiceIntegrationTest {
         userPhoto.setFilePath(filePath);
         when(userPhotoCrudService.getPhotoForUser(userId)).thenReturn(userPhoto);
         userPhotoService.deleteUserPhoto(userId);
-        verify(minioFileStorageService).deleteFile(filePath);
         verify(userPhotoCrudService).deleteUserPhoto(userPhoto);
+        verify(photoObjectService).release(filePath);
     }
 
     @Test
     void uploadUserPhoto_whenIOException_throwsPhotoServiceException() throws IOException {
+        when(fileValidationService.validateImageFile(mockFile)).thenReturn(JPEG);
         when(mockFile.getInputStream()).thenThrow(new IOException("Disk full"));
         PhotoServiceException exception = assertThrows(PhotoServiceException.class, () -> {
             userPhotoService.uploadUserPhoto(userId, mockFile);
@@ -139,8 +156,8 @@ class UserPhotoServiceIntegrationTest {
 
         @Bean
         @Primary
-        public MinioFileStorageService minioFileStorageService() {
-            return mock(MinioFileStorageService.class);
+        public FileStorage fileStorage() {
+            return mock(FileStorage.class);
         }
 
         @Bean
@@ -155,6 +172,30 @@ class UserPhotoServiceIntegrationTest {
             return mock(UserPhotoCrudService.class);
         }
 
+        @Bean
+        @Primary
+        public PhotoCache photoCache() {
+            return mock(PhotoCache.class);
+        }
+
+        @Bean
+        @Primary
+        public PhotoDerivativeService photoDerivativeService() {
+            return mock(PhotoDerivativeService.class);
+        }
+
+        @Bean
+        @Primary
+        public PhotoObjectService photoObjectService() {
+            return mock(PhotoObjectService.class);
+        }
+
+        @Bean
+        @Primary
+        public PhotoNormalizer photoNormalizer() {
+            return mock(PhotoNormalizer.class);
+        }
+
         @Bean
         @Primary
         public UserPhotoMapper userPhotoMapper() {